@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.enumeration.DirectorFilmSort;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запросы к БД, через которые сервисы читают фильмы: выборка найденных индексами фильмов по id,
+ * страница каталога и загрузка фильмографии режиссёра в кэш.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmStorageBenchmark {
+
+    @Benchmark
+    public List<Film> filmsByIds(FilmorateState state) {
+        return state.filmStorage.findFilmsByIds(state.sampleFilmIds);
+    }
+
+    @Benchmark
+    public List<Film> filmsPage(FilmorateState state) {
+        return state.filmStorage.findAllFilms(state.scale / 2, 100);
+    }
+
+    @Benchmark
+    public List<Film> directorFilmsByLikes(FilmorateState state) {
+        return state.filmStorage.getFilmsByDirector(state.sampleDirectorId, DirectorFilmSort.LIKES, null, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.generator.DataGenerator;
+import ru.yandex.practicum.filmorate.generator.DatasetSize;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Общее состояние бенчмарков: контекст приложения без веб-сервера поверх H2 в памяти,
+ * заполненной синтетическими данными через DataGenerator.
+ * Масштаб задается параметром scale (количество пользователей), например: -p scale=10000,100000,1000000.
+ */
+@State(Scope.Benchmark)
+public class FilmorateState {
+
+    @Param({"10000"})
+    public int scale;
+
+    public FilmStorage filmStorage;
+    public FilmService filmService;
+    public UserService userService;
+    public List<Film> sampleFilms;
+    public List<Integer> sampleFilmIds;
+    public int sampleDirectorId;
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:filmorate-bench-" + scale + ";DB_CLOSE_DELAY=-1",
+                        "--logging.level.root=WARN",
+                        "--logging.level.ru.yandex.practicum.filmorate=WARN",
+                        "--logging.level.org.zalando.logbook=WARN");
+
+        context.getBean(DataGenerator.class).generate(DatasetSize.ofUsers(scale), 42L);
+
+        filmStorage = context.getBean("FilmStorageDbImpl", FilmStorage.class);
+        filmService = context.getBean(FilmService.class);
+        userService = context.getBean(UserService.class);
+        sampleFilms = context.getBean(PopularityIndex.class).getTopFilms(100, null, null);
+        sampleFilmIds = sampleFilms.stream().map(Film::getId).toList();
+        sampleDirectorId = sampleFilms.stream()
+                .flatMap(film -> film.getDirectors().stream())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public int randomUserId() {
+        return 1 + ThreadLocalRandom.current().nextInt(scale);
+    }
+}
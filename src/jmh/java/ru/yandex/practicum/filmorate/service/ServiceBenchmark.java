@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.benchmark.FilmorateState;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.PageDto;
+import ru.yandex.practicum.filmorate.dto.UserFriendDto;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лежит в пакете service, чтобы вызывать package-private FilmService.mapFilmListToDto.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    @Benchmark
+    public List<FilmDto> mapFilmListToDto(FilmorateState state) {
+        return state.filmService.mapFilmListToDto(state.sampleFilms);
+    }
+
+    @Benchmark
+    public List<FilmDto> popularFilms(FilmorateState state) {
+        return state.filmService.getPopularFilms(10, null, null);
+    }
+
+    @Benchmark
+    public List<FilmDto> popularFilmsByGenreAndYear(FilmorateState state) {
+        return state.filmService.getPopularFilms(10, 2, 1990);
+    }
+
+    @Benchmark
+    public PageDto<FilmDto> searchFilmsByTitleAndDirector(FilmorateState state) {
+        return state.filmService.searchFilms("tor 1", List.of("title", "director"), null, 100);
+    }
+
+    @Benchmark
+    public List<FilmDto> commonFilms(FilmorateState state) {
+        return state.filmService.findCommonFilms(state.randomUserId(), state.randomUserId());
+    }
+
+    @Benchmark
+    public List<FilmDto> recommendedFilms(FilmorateState state) {
+        return state.userService.findRecommendedFilms(state.randomUserId());
+    }
+
+    @Benchmark
+    public List<UserFriendDto> commonFriends(FilmorateState state) {
+        return state.userService.findCommonFriends(state.randomUserId(), state.randomUserId());
+    }
+}
@@ -0,0 +1,217 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Кеш справочников МПА, жанров и режиссёров.
+ * Справочники маленькие и почти не меняются, поэтому загружаются целиком при первом обращении
+ * и дальше считаются полными: id, которого нет в памяти, нет и в БД, повторного запроса не будет.
+ * МПА и жанры меняются только миграциями, режиссёры обновляются в кеше через DirectorService
+ * при создании, изменении и удалении. После записи в БД в обход сервисов кеш сбрасывается через invalidate.
+ */
+@Slf4j
+@Component
+public class DictionaryCache implements MeterBinder {
+    private static final String METRIC_NAME = "filmorate.dictionary.cache";
+
+    private final Dictionary<Mpa> mpa;
+    private final Dictionary<Genre> genres;
+    private final Dictionary<Director> directors;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DictionaryCache(MpaStorage mpaStorage, GenreStorage genreStorage, DirectorStorage directorStorage) {
+        this.mpa = new Dictionary<>("рейтингов МПА", mpaStorage::findAllMpa, Mpa::getId);
+        this.genres = new Dictionary<>("жанров", genreStorage::findAllGenre, Genre::getId);
+        this.directors = new Dictionary<>("режиссёров", directorStorage::findAllDirector, Director::getId);
+    }
+
+    // MPA
+
+    public Optional<Mpa> findMpaById(int mpaId) {
+        return find(mpa.get(), mpaId);
+    }
+
+    public List<Mpa> findAllMpa() {
+        return sortedById(mpa.get().values(), Mpa::getId);
+    }
+
+    // GENRE
+
+    public Optional<Genre> findGenreById(int genreId) {
+        return find(genres.get(), genreId);
+    }
+
+    public List<Genre> findGenresByIds(Collection<Integer> genreIds) {
+        return findMany(genres.get(), genreIds);
+    }
+
+    public List<Genre> findAllGenres() {
+        return sortedById(genres.get().values(), Genre::getId);
+    }
+
+    // DIRECTOR
+
+    public Optional<Director> findDirectorById(int directorId) {
+        return find(directors.get(), directorId);
+    }
+
+    public List<Director> findDirectorsByIds(Collection<Integer> directorIds) {
+        return findMany(directors.get(), directorIds);
+    }
+
+    /**
+     * Изменения режиссёров выполняются под той же блокировкой, что и загрузка справочника,
+     * иначе загрузка, начатая до удаления, вернула бы удалённого режиссёра в кеш.
+     */
+    public void putDirector(Director director) {
+        directors.update(byId -> byId.put(director.getId(), director));
+        log.debug("Режиссёр с id={} обновлён в кеше справочников", director.getId());
+    }
+
+    public void evictDirector(int directorId) {
+        directors.update(byId -> byId.remove(directorId));
+        log.debug("Режиссёр с id={} удалён из кеша справочников", directorId);
+    }
+
+    /**
+     * Справочники перечитываются из БД при следующем обращении. Чтения, уже взявшие справочник,
+     * дочитывают прежнюю полную копию.
+     */
+    public void invalidate() {
+        mpa.invalidate();
+        genres.invalidate();
+        directors.invalidate();
+        log.info("Кеш справочников сброшен");
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(METRIC_NAME + ".requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("Обращения к кешу справочников по id, найденному в справочнике")
+                .register(registry);
+        FunctionCounter.builder(METRIC_NAME + ".requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("Обращения к кешу справочников по id, которого нет в справочнике")
+                .register(registry);
+        Gauge.builder(METRIC_NAME + ".size", mpa, Dictionary::size).tag("dictionary", "mpa").register(registry);
+        Gauge.builder(METRIC_NAME + ".size", genres, Dictionary::size).tag("dictionary", "genre").register(registry);
+        Gauge.builder(METRIC_NAME + ".size", directors, Dictionary::size).tag("dictionary", "director").register(registry);
+    }
+
+    private <T> Optional<T> find(Map<Integer, T> cache, int id) {
+        T value = cache.get(id);
+        (value != null ? hits : misses).incrementAndGet();
+        return Optional.ofNullable(value);
+    }
+
+    /**
+     * Возвращает значения в порядке переданных id, без повторов и без отсутствующих в справочнике.
+     */
+    private <T> List<T> findMany(Map<Integer, T> cache, Collection<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Integer> uniqueIds = new LinkedHashSet<>(ids);
+        List<T> result = new ArrayList<>(uniqueIds.size());
+        for (Integer id : uniqueIds) {
+            T value = id == null ? null : cache.get(id);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        hits.addAndGet(result.size());
+        misses.addAndGet(uniqueIds.size() - result.size());
+        return result;
+    }
+
+    private <T> List<T> sortedById(Collection<T> values, Function<T, Integer> idGetter) {
+        List<T> result = new ArrayList<>(values);
+        result.sort(Comparator.comparing(idGetter));
+        return result;
+    }
+
+    /**
+     * Один справочник - неизменяемая карта id -> значение, null - ещё не загружен. Карта не меняется на месте,
+     * а заменяется целиком, поэтому чтение, взявшее её один раз, не увидит ни сброшенного, ни наполовину
+     * загруженного справочника. Загрузка, изменение и сброс выполняются под блокировкой справочника.
+     */
+    private static final class Dictionary<T> {
+        private final String name;
+        private final Supplier<List<T>> loader;
+        private final Function<T, Integer> idGetter;
+
+        private volatile Map<Integer, T> byId;
+
+        Dictionary(String name, Supplier<List<T>> loader, Function<T, Integer> idGetter) {
+            this.name = name;
+            this.loader = loader;
+            this.idGetter = idGetter;
+        }
+
+        Map<Integer, T> get() {
+            Map<Integer, T> loaded = byId;
+            if (loaded == null) {
+                synchronized (this) {
+                    loaded = byId;
+                    if (loaded == null) {
+                        Map<Integer, T> values = new HashMap<>();
+                        loader.get().forEach(value -> values.put(idGetter.apply(value), value));
+                        loaded = Map.copyOf(values);
+                        byId = loaded;
+                        log.debug("В кеш загружено {} {}", loaded.size(), name);
+                    }
+                }
+            }
+            return loaded;
+        }
+
+        /**
+         * Изменение под той же блокировкой, что и загрузка: загрузка, начатая до изменения, не вернёт
+         * прежнее значение. Незагруженный справочник не меняется - загрузка прочитает изменение из БД.
+         */
+        synchronized void update(Consumer<Map<Integer, T>> change) {
+            if (byId != null) {
+                Map<Integer, T> values = new HashMap<>(byId);
+                change.accept(values);
+                byId = Map.copyOf(values);
+            }
+        }
+
+        synchronized void invalidate() {
+            byId = null;
+        }
+
+        int size() {
+            Map<Integer, T> loaded = byId;
+            return loaded == null ? 0 : loaded.size();
+        }
+    }
+}
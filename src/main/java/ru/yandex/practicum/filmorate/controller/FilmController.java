@@ -1,16 +1,25 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.FilmRequest;
 import ru.yandex.practicum.filmorate.dto.FilmRequestUpdate;
+import ru.yandex.practicum.filmorate.dto.PageDto;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
+import ru.yandex.practicum.filmorate.index.SuggestIndex;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RequiredArgsConstructor
@@ -20,6 +29,7 @@ import java.util.List;
 public class FilmController {
 
     private final FilmService filmService;
+    private final FilmImportService filmImportService;
 
     @GetMapping("/{id}")
     public FilmDto findFilmById(@PathVariable("id") Integer id) {
@@ -28,9 +38,27 @@ public class FilmController {
     }
 
     @GetMapping
-    public List<FilmDto> findAll() {
-        log.info("Получен запрос GET /films для получения всех фильмов");
-        return filmService.findAll();
+    public List<FilmDto> findAll(@RequestParam(required = false) String cursor,
+                                 @RequestParam(required = false) Integer size,
+                                 HttpServletResponse response) {
+        if (cursor == null && size == null) {
+            log.info("Получен запрос GET /films для получения всех фильмов");
+            return filmService.findAll();
+        }
+        log.info("Получен запрос GET /films для получения страницы фильмов: cursor={}, size={}", cursor, size);
+        PageDto<FilmDto> page = filmService.findPage(cursor, size);
+        if (page.getNextCursor() != null) {
+            response.setHeader(PageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return page.getItems();
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportFilms(HttpServletResponse response) throws IOException {
+        log.info("Получен запрос GET /films/export для выгрузки всех фильмов");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        filmService.exportFilms(response.getOutputStream());
     }
 
     @PostMapping
@@ -40,6 +68,14 @@ public class FilmController {
         return filmService.createFilm(filmRequest);
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public void importFilms(InputStream body, HttpServletResponse response) throws IOException {
+        log.info("Получен запрос POST /films/bulk для массовой загрузки фильмов");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        filmImportService.importFilms(body, response.getOutputStream());
+    }
+
     @PutMapping
     public FilmDto updateFilm(@Valid @RequestBody FilmRequestUpdate filmRequestUpdate) {
         log.info("Получен запрос PUT /films для обновления фильма с id {}: {}", filmRequestUpdate.getId(), filmRequestUpdate);
@@ -69,10 +105,30 @@ public class FilmController {
         return filmService.getPopularFilms(count, genreId, year);
     }
 
+    @PostMapping("/popular/rebuild")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void rebuildPopularity() {
+        log.info("Получен запрос POST /films/popular/rebuild для пересчета популярности");
+        filmService.rebuildPopularity();
+    }
+
     @GetMapping("/director/{directorId}")
     public List<FilmDto> getFilmsByDirector(@PathVariable int directorId,
-                                            @RequestParam(name = "sortBy") String sortBy) {
-        return filmService.getFilmsByDirectorSorted(directorId, sortBy);
+                                            @RequestParam(name = "sortBy") String sortBy,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer size,
+                                            HttpServletResponse response) {
+        if (cursor == null && size == null) {
+            log.info("Получен запрос GET /films/director/{} для получения фильмов режиссера: sortBy={}", directorId, sortBy);
+            return filmService.getFilmsByDirectorSorted(directorId, sortBy);
+        }
+        log.info("Получен запрос GET /films/director/{} для получения страницы фильмов режиссера: sortBy={}, cursor={}, size={}",
+                directorId, sortBy, cursor, size);
+        PageDto<FilmDto> page = filmService.findPageByDirector(directorId, sortBy, cursor, size);
+        if (page.getNextCursor() != null) {
+            response.setHeader(PageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return page.getItems();
     }
 
     @GetMapping("/common")
@@ -90,9 +146,27 @@ public class FilmController {
     @GetMapping("/search")
     public List<FilmDto> searchFilms(
             @RequestParam String query,
-            @RequestParam(defaultValue = "title,director") List<String> by) {
-        log.info("Получен запрос GET /films/search с параметрами query={}, by={}", query, by);
-        return filmService.searchFilms(query, by);
+            @RequestParam(defaultValue = "title,director") List<String> by,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            HttpServletResponse response) {
+        if (cursor == null && size == null) {
+            log.info("Получен запрос GET /films/search с параметрами query={}, by={}", query, by);
+            return filmService.searchFilms(query, by);
+        }
+        log.info("Получен запрос GET /films/search с параметрами query={}, by={}, cursor={}, size={}", query, by, cursor, size);
+        PageDto<FilmDto> page = filmService.searchFilms(query, by, cursor, size);
+        if (page.getNextCursor() != null) {
+            response.setHeader(PageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return page.getItems();
+    }
+
+    @GetMapping("/search/suggest")
+    public List<SuggestionDto> suggest(@RequestParam String q,
+                                       @RequestParam(defaultValue = "10") @Positive @Max(SuggestIndex.MAX_LIMIT) int limit) {
+        log.debug("Получен запрос GET /films/search/suggest с параметрами q={}, limit={}", q, limit);
+        return filmService.suggest(q, limit);
     }
 
     @DeleteMapping("/{filmId}")
@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.annotation.Nullable;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -25,9 +26,14 @@ public class ReviewController {
     }
 
     @GetMapping
-    public List<ReviewDto> findAll(@RequestParam @Nullable Integer filmId, @RequestParam(defaultValue = "10") int count) {
+    public List<ReviewDto> findAll(@RequestParam @Nullable Integer filmId, @RequestParam(defaultValue = "10") int count,
+                                   @RequestParam @Nullable String cursor, HttpServletResponse response) {
         log.debug("Получен запрос GET /reviews для получения всех отзывов");
-        return reviewService.findAll(filmId, count);
+        PageDto<ReviewDto> page = reviewService.findAll(filmId, count, cursor);
+        if (page.getNextCursor() != null) {
+            response.setHeader(PageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return page.getItems();
     }
 
     @PostMapping
@@ -1,13 +1,18 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.dto.*;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.IOException;
 import java.util.List;
 
 @RequiredArgsConstructor
@@ -31,9 +36,27 @@ public class UserController {
     }
 
     @GetMapping
-    public List<UserDto> findAllUsers() {
-        log.debug("Получен запрос GET /users для получения списка пользователей");
-        return userService.findAllUsers();
+    public List<UserDto> findAllUsers(@RequestParam(required = false) String cursor,
+                                      @RequestParam(required = false) Integer size,
+                                      HttpServletResponse response) {
+        if (cursor == null && size == null) {
+            log.debug("Получен запрос GET /users для получения списка пользователей");
+            return userService.findAllUsers();
+        }
+        log.debug("Получен запрос GET /users для получения страницы пользователей: cursor={}, size={}", cursor, size);
+        PageDto<UserDto> page = userService.findPage(cursor, size);
+        if (page.getNextCursor() != null) {
+            response.setHeader(PageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return page.getItems();
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportUsers(HttpServletResponse response) throws IOException {
+        log.debug("Получен запрос GET /users/export для выгрузки всех пользователей");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        userService.exportUsers(response.getOutputStream());
     }
 
     @PutMapping
@@ -49,6 +72,13 @@ public class UserController {
         userService.removeUser(userId);
     }
 
+    @DeleteMapping(value = "/{userId}", params = "async=true")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void removeUserAsync(@PathVariable Integer userId) {
+        log.debug("Получен запрос DELETE /users/{}?async=true для фонового удаления пользователя", userId);
+        userService.removeUserAsync(userId);
+    }
+
     @PutMapping("/{userid}/friends/{friendId}")
     public void addFriendRequest(@PathVariable("userid") Integer userid, @PathVariable("friendId") Integer friendId) {
         log.debug("Получен запрос PUT /users/{}/friends/{} для добавления пользователя в друзья", userid, friendId);
@@ -67,6 +97,13 @@ public class UserController {
         return userService.findFriendsByUserId(userId);
     }
 
+    @GetMapping("/{userId}/friends/suggestions")
+    public List<FriendSuggestionDto> findFriendSuggestions(@PathVariable Integer userId,
+                                                           @RequestParam(defaultValue = "10") @Positive @Max(50) int limit) {
+        log.debug("Получен запрос GET /users/{}/friends/suggestions для получения рекомендаций друзей, limit={}", userId, limit);
+        return userService.findFriendSuggestions(userId, limit);
+    }
+
     @GetMapping("/{userId}/friends/common/{otherUserId}")
     public List<UserFriendDto> findCommonFriends(@PathVariable("userId") Integer userId, @PathVariable("otherUserId") Integer otherUserId) {
         log.debug("Получен запрос GET /users/{}/friends/common/{} для получения списка общих друзей", userId, otherUserId);
@@ -74,9 +111,17 @@ public class UserController {
     }
 
     @GetMapping("/{userId}/feed")
-    public List<UserEventDto> getFeed(@PathVariable Integer userId) {
-        log.debug("Получен запрос GET /users/{}/feed для получения ленты событий пользователя", userId);
-        return userService.findEventsByUserId(userId);
+    public List<UserEventDto> getFeed(@PathVariable Integer userId,
+                                      @RequestParam(required = false) Long since,
+                                      @RequestParam(required = false) Long before,
+                                      @RequestParam(required = false) Integer limit) {
+        if (since == null && before == null && limit == null) {
+            log.debug("Получен запрос GET /users/{}/feed для получения ленты событий пользователя", userId);
+            return userService.findEventsByUserId(userId);
+        }
+        log.debug("Получен запрос GET /users/{}/feed для получения страницы ленты: since={}, before={}, limit={}",
+                userId, since, before, limit);
+        return userService.findEventsByUserId(userId, since, before, limit);
     }
 
     @GetMapping("/{id}/recommendations")
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Data;
+import java.time.LocalDate;
+
+@Data
+public class FriendSuggestionDto {
+    private Integer id;
+    private String login;
+    private String email;
+    private String name;
+    private LocalDate birthday;
+    private Integer mutualFriends;
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.enumeration.SuggestionType;
+
+@Data
+@AllArgsConstructor
+public class SuggestionDto {
+    private SuggestionType type;
+    private Integer id;
+    private String text;
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.enumeration;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.Comparator;
+
+/**
+ * Порядок фильмов режиссёра: по лайкам (по убыванию), по году выпуска или по названию.
+ * При равенстве фильмы упорядочены по id.
+ */
+public enum DirectorFilmSort {
+    LIKES,
+    YEAR,
+    TITLE;
+
+    public static DirectorFilmSort of(String sortBy) {
+        for (DirectorFilmSort sort : values()) {
+            if (sort.name().equalsIgnoreCase(sortBy)) {
+                return sort;
+            }
+        }
+        throw new ValidationException("Неподдерживаемый параметр сортировки: " + sortBy);
+    }
+
+    /**
+     * Порядок по полям фильма; для LIKES число лайков берется из likesCount.
+     */
+    public Comparator<Film> comparator() {
+        Comparator<Film> byKey = switch (this) {
+            case LIKES -> Comparator.comparingInt(Film::getLikesCount).reversed();
+            case YEAR -> Comparator.comparing(Film::getReleaseDate);
+            case TITLE -> Comparator.comparing(Film::getName);
+        };
+        return byKey.thenComparing(Film::getId);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.enumeration;
+
+public enum ImportStatus {
+    CREATED,
+    REJECTED,
+    FAILED
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.enumeration;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Оценка отзыва пользователем и её вклад в полезность отзыва.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ReviewRating {
+    LIKE(1),
+    DISLIKE(-1),
+    NONE(0);
+
+    private final int useful;
+
+    public static ReviewRating of(Boolean isLike) {
+        if (isLike == null) {
+            return NONE;
+        }
+        return isLike ? LIKE : DISLIKE;
+    }
+}
@@ -0,0 +1,6 @@
+package ru.yandex.practicum.filmorate.enumeration;
+
+public enum SuggestionType {
+    FILM,
+    DIRECTOR
+}
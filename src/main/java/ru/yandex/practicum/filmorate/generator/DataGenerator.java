@@ -0,0 +1,312 @@
+package ru.yandex.practicum.filmorate.generator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.cache.DictionaryCache;
+import ru.yandex.practicum.filmorate.enumeration.EventOperation;
+import ru.yandex.practicum.filmorate.enumeration.EventType;
+import ru.yandex.practicum.filmorate.index.RebuildableIndex;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Генератор синтетических данных для нагрузочного тестирования.
+ * Популярность фильмов и количество лайков, друзей и оценок распределены по Ципфу.
+ * Строки пишутся пачками через JdbcTemplate.batchUpdate и добавляются к уже существующим данным
+ * с id после текущего максимума.
+ * После загрузки перестраиваются индексы в памяти и сбрасывается кеш справочников.
+ */
+@Slf4j
+@Component
+public class DataGenerator {
+    private static final int BATCH_SIZE = 10_000;
+    private static final int GENRE_COUNT = 6;
+    private static final int MPA_COUNT = 5;
+    private static final int MAX_GENRES_PER_FILM = 3;
+    private static final int FRIEND_STATUS_ID = 1;
+    private static final double POPULARITY_EXPONENT = 1.0;
+    private static final double DEGREE_EXPONENT = 1.2;
+    private static final int MAX_PICK_ATTEMPTS = 10;
+
+    private static final String INSERT_USER_QUERY = "INSERT INTO _user (id, login, email, name, birthday_dt) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_DIRECTOR_QUERY = "INSERT INTO _director (id, name) VALUES (?, ?)";
+    private static final String INSERT_FILM_QUERY = "INSERT INTO _film (id, name, description, duration, release_dt, mpa_id) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_FILM_GENRE_QUERY = "INSERT INTO _film_genre (film_id, genre_id) VALUES (?, ?)";
+    private static final String INSERT_FILM_DIRECTOR_QUERY = "INSERT INTO _film_director (film_id, director_id) VALUES (?, ?)";
+    private static final String INSERT_LIKE_QUERY = "INSERT INTO _like (user_id, film_id) VALUES (?, ?)";
+    private static final String INSERT_FRIEND_QUERY = "INSERT INTO _user_friend (user_id, friend_id, status_id) VALUES (?, ?, ?)";
+    private static final String INSERT_REVIEW_QUERY = "INSERT INTO _review (id, content, is_positive, user_id, film_id, useful) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_REVIEW_RATING_QUERY = "INSERT INTO _review_rating (review_id, user_id, is_like) VALUES (?, ?, ?)";
+    private static final String INSERT_EVENT_QUERY = "INSERT INTO _user_event (timestamp, user_id, event_type, operation, entity_id) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final List<RebuildableIndex> indexes;
+    private final DictionaryCache dictionaryCache;
+
+    public DataGenerator(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                         List<RebuildableIndex> indexes, DictionaryCache dictionaryCache) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.indexes = indexes;
+        this.dictionaryCache = dictionaryCache;
+    }
+
+    /**
+     * Загружает набор данных заданного размера. При одинаковом seed набор получается одинаковым.
+     * Во время загрузки в эти таблицы не должно быть других вставок.
+     */
+    public void generate(DatasetSize size, long seed) {
+        log.info("Генерация синтетических данных: {}, seed={}", size, seed);
+        long startedAt = System.currentTimeMillis();
+        Generation generation = new Generation(size, new Random(seed));
+
+        generation.insertUsers();
+        generation.insertDirectors();
+        generation.insertFilms();
+        generation.insertLikes();
+        generation.insertFriends();
+        generation.insertReviews();
+        generation.flushAll();
+        generation.restartIdentities();
+        log.info("Записано {} строк за {} мс", generation.rows, System.currentTimeMillis() - startedAt);
+
+        dictionaryCache.invalidate();
+        indexes.forEach(RebuildableIndex::rebuild);
+        log.info("Синтетические данные загружены, индексы перестроены за {} мс", System.currentTimeMillis() - startedAt);
+    }
+
+    private void restartIdentity(String table, int lastId) {
+        jdbc.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + (lastId + 1));
+    }
+
+    private int maxId(String table) {
+        Integer maxId = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Integer.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    /**
+     * Состояние одной загрузки: случайный генератор, смещения id и буферы пачек по таблицам.
+     */
+    private class Generation {
+        private final DatasetSize size;
+        private final Random random;
+        private final int userBase;
+        private final int filmBase;
+        private final int directorBase;
+        private final int reviewBase;
+        private final int[] filmByRank;
+        private final int[] userByRank;
+        private final ZipfDistribution filmPopularity;
+        private final ZipfDistribution userPopularity;
+
+        private final List<Object[]> events = new ArrayList<>(BATCH_SIZE);
+        private long timestamp = System.currentTimeMillis() - 365L * 24 * 60 * 60 * 1000;
+        private long rows;
+
+        Generation(DatasetSize size, Random random) {
+            this.size = size;
+            this.random = random;
+            userBase = maxId("_user");
+            filmBase = maxId("_film");
+            directorBase = maxId("_director");
+            reviewBase = maxId("_review");
+            filmByRank = shuffledIds(filmBase, size.films());
+            userByRank = shuffledIds(userBase, size.users());
+            filmPopularity = new ZipfDistribution(size.films(), POPULARITY_EXPONENT);
+            userPopularity = new ZipfDistribution(size.users(), POPULARITY_EXPONENT);
+        }
+
+        void insertUsers() {
+            List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = 1; i <= size.users(); i++) {
+                int userId = userBase + i;
+                batch.add(new Object[]{userId, "gen_login" + userId, "gen" + userId + "@filmorate.ru", "User " + userId,
+                        Date.valueOf(LocalDate.of(1960, 1, 1).plusDays(random.nextInt(18_000)))});
+                flushIfFull(INSERT_USER_QUERY, batch);
+            }
+            flush(INSERT_USER_QUERY, batch);
+        }
+
+        void insertDirectors() {
+            List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = 1; i <= size.directors(); i++) {
+                batch.add(new Object[]{directorBase + i, "Director " + (directorBase + i)});
+                flushIfFull(INSERT_DIRECTOR_QUERY, batch);
+            }
+            flush(INSERT_DIRECTOR_QUERY, batch);
+        }
+
+        void insertFilms() {
+            List<Object[]> films = new ArrayList<>(BATCH_SIZE);
+            List<Object[]> genres = new ArrayList<>(BATCH_SIZE);
+            List<Object[]> directors = new ArrayList<>(BATCH_SIZE);
+            for (int i = 1; i <= size.films(); i++) {
+                int filmId = filmBase + i;
+                films.add(new Object[]{filmId, "Film " + filmId, "Description of film " + filmId, 60 + random.nextInt(150),
+                        Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(27_000))),
+                        1 + random.nextInt(MPA_COUNT)});
+
+                int firstGenre = random.nextInt(GENRE_COUNT);
+                int genreCount = 1 + random.nextInt(MAX_GENRES_PER_FILM);
+                for (int g = 0; g < genreCount; g++) {
+                    genres.add(new Object[]{filmId, (firstGenre + g) % GENRE_COUNT + 1});
+                }
+                directors.add(new Object[]{filmId, directorBase + 1 + random.nextInt(size.directors())});
+
+                flushIfFull(INSERT_FILM_QUERY, films);
+                flushIfFull(INSERT_FILM_GENRE_QUERY, genres);
+                flushIfFull(INSERT_FILM_DIRECTOR_QUERY, directors);
+            }
+            flush(INSERT_FILM_QUERY, films);
+            flush(INSERT_FILM_GENRE_QUERY, genres);
+            flush(INSERT_FILM_DIRECTOR_QUERY, directors);
+        }
+
+        void insertLikes() {
+            ZipfDistribution likesPerUser = new ZipfDistribution(Math.min(size.maxLikesPerUser(), size.films()), DEGREE_EXPONENT);
+            List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+            Set<Integer> likedFilms = new HashSet<>();
+            for (int i = 1; i <= size.users(); i++) {
+                int userId = userBase + i;
+                pickDistinct(likedFilms, likesPerUser.sample(random), filmPopularity, filmByRank, 0);
+                for (Integer filmId : likedFilms) {
+                    batch.add(new Object[]{userId, filmId});
+                    addEvent(userId, EventType.LIKE, filmId);
+                    flushIfFull(INSERT_LIKE_QUERY, batch);
+                }
+            }
+            flush(INSERT_LIKE_QUERY, batch);
+        }
+
+        void insertFriends() {
+            if (size.users() < 2) {
+                return;
+            }
+            ZipfDistribution friendsPerUser = new ZipfDistribution(Math.min(size.maxFriendsPerUser(), size.users() - 1), DEGREE_EXPONENT);
+            List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+            Set<Integer> friends = new HashSet<>();
+            for (int i = 1; i <= size.users(); i++) {
+                int userId = userBase + i;
+                pickDistinct(friends, friendsPerUser.sample(random), userPopularity, userByRank, userId);
+                for (Integer friendId : friends) {
+                    batch.add(new Object[]{userId, friendId, FRIEND_STATUS_ID});
+                    addEvent(userId, EventType.FRIEND, friendId);
+                    flushIfFull(INSERT_FRIEND_QUERY, batch);
+                }
+            }
+            flush(INSERT_FRIEND_QUERY, batch);
+        }
+
+        void insertReviews() {
+            ZipfDistribution ratingsPerReview = new ZipfDistribution(Math.max(1, Math.min(size.maxRatingsPerReview(), size.users())), DEGREE_EXPONENT);
+            List<Object[]> reviews = new ArrayList<>(BATCH_SIZE);
+            List<Object[]> ratings = new ArrayList<>(BATCH_SIZE);
+            Set<Integer> raters = new HashSet<>();
+            // Пользователь пишет не больше одного отзыва на фильм
+            Set<Long> reviewedFilms = new HashSet<>();
+            for (int i = 1; i <= size.reviews(); i++) {
+                int reviewId = reviewBase + i;
+                int authorId;
+                int filmId;
+                do {
+                    authorId = userBase + 1 + random.nextInt(size.users());
+                    filmId = filmByRank[filmPopularity.sample(random) - 1];
+                } while (!reviewedFilms.add(((long) authorId << 32) | filmId));
+
+                raters.clear();
+                int ratingCount = ratingsPerReview.sample(random) - 1;
+                while (raters.size() < ratingCount) {
+                    raters.add(userBase + 1 + random.nextInt(size.users()));
+                }
+                int useful = 0;
+                for (Integer raterId : raters) {
+                    boolean isLike = random.nextInt(3) > 0;
+                    useful += isLike ? 1 : -1;
+                    ratings.add(new Object[]{reviewId, raterId, isLike});
+                }
+
+                reviews.add(new Object[]{reviewId, "Review " + reviewId + " of film " + filmId, random.nextBoolean(), authorId, filmId, useful});
+                addEvent(authorId, EventType.REVIEW, reviewId);
+                flushIfFull(INSERT_REVIEW_QUERY, reviews);
+                flushIfFull(INSERT_REVIEW_RATING_QUERY, ratings);
+            }
+            flush(INSERT_REVIEW_QUERY, reviews);
+            flush(INSERT_REVIEW_RATING_QUERY, ratings);
+        }
+
+        void flushAll() {
+            flush(INSERT_EVENT_QUERY, events);
+        }
+
+        /**
+         * Id пользователей, фильмов, режиссёров и отзывов задаются явно,
+         * поэтому счетчики автоинкремента сдвигаются за последнюю вставленную строку.
+         */
+        void restartIdentities() {
+            restartIdentity("_user", userBase + size.users());
+            restartIdentity("_film", filmBase + size.films());
+            restartIdentity("_director", directorBase + size.directors());
+            restartIdentity("_review", reviewBase + size.reviews());
+        }
+
+        /**
+         * Заполняет target различными id, выбранными по популярности. Если за разумное число
+         * попыток не удается набрать нужное количество (хвост распределения), набор получается меньше.
+         */
+        private void pickDistinct(Set<Integer> target, int count, ZipfDistribution distribution, int[] idByRank, int excludedId) {
+            target.clear();
+            int attempts = count * MAX_PICK_ATTEMPTS;
+            while (target.size() < count && attempts-- > 0) {
+                int id = idByRank[distribution.sample(random) - 1];
+                if (id != excludedId) {
+                    target.add(id);
+                }
+            }
+        }
+
+        private void addEvent(int userId, EventType eventType, int entityId) {
+            timestamp += 1 + random.nextInt(1000);
+            events.add(new Object[]{timestamp, userId, eventType.toString(), EventOperation.ADD.toString(), entityId});
+            flushIfFull(INSERT_EVENT_QUERY, events);
+        }
+
+        private int[] shuffledIds(int base, int count) {
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = base + i + 1;
+            }
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = ids[i];
+                ids[i] = ids[j];
+                ids[j] = tmp;
+            }
+            return ids;
+        }
+
+        private void flushIfFull(String sql, List<Object[]> batch) {
+            if (batch.size() >= BATCH_SIZE) {
+                flush(sql, batch);
+            }
+        }
+
+        private void flush(String sql, List<Object[]> batch) {
+            if (!batch.isEmpty()) {
+                // одна фиксация на пачку, а не на каждую строку в режиме autocommit
+                transactionTemplate.executeWithoutResult(status -> jdbc.batchUpdate(sql, batch));
+                rows += batch.size();
+                batch.clear();
+            }
+        }
+    }
+}
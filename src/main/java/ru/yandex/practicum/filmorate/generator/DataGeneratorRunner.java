@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.generator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Загрузка синтетических данных при старте приложения, включается флагом командной строки:
+ * --filmorate.generator.enabled=true --filmorate.generator.users=1000000 --filmorate.generator.seed=42
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.generator.enabled", havingValue = "true")
+public class DataGeneratorRunner implements ApplicationRunner {
+    private final DataGenerator dataGenerator;
+    private final int users;
+    private final long seed;
+
+    public DataGeneratorRunner(DataGenerator dataGenerator,
+                               @Value("${filmorate.generator.users:10000}") int users,
+                               @Value("${filmorate.generator.seed:42}") long seed) {
+        this.dataGenerator = dataGenerator;
+        this.users = users;
+        this.seed = seed;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Запуск генерации синтетических данных для {} пользователей", users);
+        dataGenerator.generate(DatasetSize.ofUsers(users), seed);
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.generator;
+
+/**
+ * Размеры синтетического набора данных.
+ * Количество лайков, друзей и оценок отзыва у каждого пользователя выбирается по Ципфу в пределах максимума.
+ */
+public record DatasetSize(int users,
+                          int films,
+                          int directors,
+                          int maxLikesPerUser,
+                          int maxFriendsPerUser,
+                          int reviews,
+                          int maxRatingsPerReview) {
+
+    /**
+     * Набор, в котором размеры остальных таблиц считаются от количества пользователей.
+     */
+    public static DatasetSize ofUsers(int users) {
+        return new DatasetSize(
+                users,
+                Math.max(100, users / 10),
+                Math.max(10, users / 100),
+                50,
+                50,
+                users / 2,
+                10);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.generator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Распределение Ципфа на рангах 1..n: вероятность ранга k пропорциональна 1 / k^exponent.
+ * Функция распределения считается один раз, выборка - бинарным поиском по ней.
+ */
+final class ZipfDistribution {
+    private final double[] cumulative;
+
+    ZipfDistribution(int n, double exponent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Количество рангов должно быть положительным: " + n);
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 1; rank <= n; rank++) {
+            sum += 1.0 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    /**
+     * Возвращает ранг от 1 до n.
+     */
+    int sample(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.min(index, cumulative.length - 1) + 1;
+    }
+}
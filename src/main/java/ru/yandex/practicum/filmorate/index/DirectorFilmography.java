@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.enumeration.DirectorFilmSort;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш фильмографий режиссёров: фильмы режиссёра в порядке одной из сортировок.
+ * Фильмография загружается одним запросом при первом обращении и сбрасывается, когда меняются
+ * фильмы режиссёра. При изменении лайков порядок по лайкам пересортировывается в памяти по индексу популярности.
+ * Число фильмографий в кэше ограничено; для остальных страница читается из БД.
+ */
+@Slf4j
+@Component
+public class DirectorFilmography implements RebuildableIndex {
+    private final FilmStorage filmStorage;
+    private final PopularityIndex popularityIndex;
+    private final int maxEntries;
+
+    private final Map<Key, List<Film>> filmsByKey = new ConcurrentHashMap<>();
+
+    public DirectorFilmography(@Qualifier("FilmStorageDbImpl") FilmStorage filmStorage,
+                               PopularityIndex popularityIndex,
+                               @Value("${filmorate.director-films.cache-size:10000}") int maxEntries) {
+        this.filmStorage = filmStorage;
+        this.popularityIndex = popularityIndex;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Фильмографии загружаются лениво, поэтому перестроение сводится к сбросу кэша.
+     */
+    @Override
+    public void rebuild() {
+        log.info("Сброс кэша фильмографий режиссёров, записей: {}", filmsByKey.size());
+        filmsByKey.clear();
+    }
+
+    /**
+     * Не более count фильмов режиссёра, идущих в порядке sort после фильма after (null - с начала).
+     * От after нужны только id и поле сортировки. Пусто, если кэш заполнен и фильмографию нужно читать из БД.
+     */
+    public Optional<List<Film>> findPage(int directorId, DirectorFilmSort sort, Film after, int count) {
+        Key key = new Key(directorId, sort);
+        List<Film> films = filmsByKey.get(key);
+        if (films == null) {
+            if (filmsByKey.size() >= maxEntries) {
+                return Optional.empty();
+            }
+            // Загрузка под блокировкой ключа: сброс этой фильмографии ждёт её окончания,
+            // поэтому изменение, записанное в БД во время загрузки, не останется в кэше
+            films = filmsByKey.computeIfAbsent(key, this::load);
+        }
+        int from = 0;
+        if (after != null) {
+            int index = Collections.binarySearch(films, after, sort.comparator());
+            from = index >= 0 ? index + 1 : -index - 1;
+        }
+        int to = (int) Math.min((long) from + count, films.size());
+        return Optional.of(films.subList(from, to));
+    }
+
+    /**
+     * Сбрасывает фильмографии режиссёров после создания, изменения или удаления их фильма.
+     */
+    public void invalidateDirectors(Collection<Integer> directorIds) {
+        for (Integer directorId : directorIds) {
+            for (DirectorFilmSort sort : DirectorFilmSort.values()) {
+                filmsByKey.remove(new Key(directorId, sort));
+            }
+        }
+    }
+
+    /**
+     * Переставляет фильм, лайки которого изменились, в порядке по лайкам у его режиссёров.
+     * Число лайков читается из индекса популярности под блокировкой фильмографии,
+     * поэтому при одновременных лайках последним применяется последнее значение.
+     */
+    public void updateLikes(int filmId, Collection<Integer> directorIds) {
+        for (Integer directorId : directorIds) {
+            filmsByKey.computeIfPresent(new Key(directorId, DirectorFilmSort.LIKES), (key, films) -> resort(films, filmId));
+        }
+    }
+
+    private List<Film> resort(List<Film> films, int filmId) {
+        int likes = popularityIndex.getLikes(filmId);
+        List<Film> result = new ArrayList<>(films.size());
+        for (Film film : films) {
+            result.add(film.getId() == filmId ? PopularityIndex.copy(film, likes) : film);
+        }
+        // Список уже упорядочен, кроме одного фильма, поэтому сортировка почти линейная
+        result.sort(DirectorFilmSort.LIKES.comparator());
+        return List.copyOf(result);
+    }
+
+    private List<Film> load(Key key) {
+        log.debug("Загрузка фильмографии режиссёра {} в порядке {}", key.directorId(), key.sort());
+        return List.copyOf(filmStorage.getFilmsByDirector(key.directorId(), key.sort(), null, Integer.MAX_VALUE));
+    }
+
+    private record Key(int directorId, DirectorFilmSort sort) {
+    }
+}
@@ -0,0 +1,227 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Граф дружбы в памяти: для каждого пользователя отсортированные массивы id друзей
+ * (исходящие заявки) и подписчиков (входящие). Массивы не изменяются на месте - при записи
+ * заменяются новыми, поэтому чтение идёт без блокировок. Проверка дружбы - бинарный поиск,
+ * общие друзья - слиянием двух отсортированных массивов.
+ * Рекомендации друзей (друзья друзей по числу общих друзей) кешируются по пользователю
+ * и сбрасываются при изменении связей, от которых зависят.
+ */
+@Slf4j
+@Component
+public class FriendshipGraph implements RebuildableIndex {
+    private static final int[] EMPTY = new int[0];
+    // Начиная с такого числа друзей подсчёт друзей друзей распараллеливается
+    private static final int PARALLEL_DEGREE_THRESHOLD = 256;
+
+    private final UserStorage userStorage;
+
+    private final Map<Integer, int[]> friendsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> followersByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, CachedSuggestions> suggestionsByUser = new ConcurrentHashMap<>();
+    // Увеличивается при каждом изменении графа; результат, посчитанный во время изменения, не кешируется
+    private final AtomicLong version = new AtomicLong();
+
+    public FriendshipGraph(@Qualifier("UserStorageDbImpl") UserStorage userStorage) {
+        this.userStorage = userStorage;
+    }
+
+    @Override
+    @PostConstruct
+    public synchronized void rebuild() {
+        log.info("Перестроение графа дружбы");
+        Map<Integer, List<Integer>> friends = new HashMap<>();
+        Map<Integer, List<Integer>> followers = new HashMap<>();
+        userStorage.forEachFriendship((userId, friendId) -> {
+            friends.computeIfAbsent(userId, k -> new ArrayList<>()).add(friendId);
+            followers.computeIfAbsent(friendId, k -> new ArrayList<>()).add(userId);
+        });
+
+        version.incrementAndGet();
+        friendsByUser.clear();
+        followersByUser.clear();
+        suggestionsByUser.clear();
+        friends.forEach((userId, ids) -> friendsByUser.put(userId, toSortedArray(ids)));
+        followers.forEach((userId, ids) -> followersByUser.put(userId, toSortedArray(ids)));
+        log.info("Граф дружбы перестроен: пользователей с друзьями {}", friendsByUser.size());
+    }
+
+    public boolean isFriend(int userId, int friendId) {
+        return Arrays.binarySearch(getFriends(userId), friendId) >= 0;
+    }
+
+    public int countFriends(int userId) {
+        return getFriends(userId).length;
+    }
+
+    /**
+     * Отсортированный массив id друзей; изменять его нельзя.
+     */
+    public int[] getFriends(int userId) {
+        return friendsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    public int[] findCommonFriends(int userId, int otherUserId) {
+        int[] first = getFriends(userId);
+        int[] second = getFriends(otherUserId);
+        int[] common = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, size);
+    }
+
+    /**
+     * Не более limit пользователей, которые являются друзьями друзей userId, но не его друзьями,
+     * в порядке убывания числа общих друзей, при равенстве - по id.
+     */
+    public List<FriendSuggestion> findFriendSuggestions(int userId, int limit) {
+        CachedSuggestions cached = suggestionsByUser.get(userId);
+        if (cached == null || cached.limit() < limit) {
+            long computedAt = version.get();
+            cached = new CachedSuggestions(limit, computeFriendSuggestions(userId, limit));
+            cacheSuggestions(userId, cached, computedAt);
+        }
+        List<FriendSuggestion> suggestions = cached.suggestions();
+        return suggestions.size() > limit ? suggestions.subList(0, limit) : suggestions;
+    }
+
+    public synchronized void addFriend(int userId, int friendId) {
+        version.incrementAndGet();
+        invalidateSuggestions(userId);
+        friendsByUser.compute(userId, (k, ids) -> insert(ids, friendId));
+        followersByUser.compute(friendId, (k, ids) -> insert(ids, userId));
+    }
+
+    public synchronized void removeFriend(int userId, int friendId) {
+        version.incrementAndGet();
+        invalidateSuggestions(userId);
+        friendsByUser.computeIfPresent(userId, (k, ids) -> delete(ids, friendId));
+        followersByUser.computeIfPresent(friendId, (k, ids) -> delete(ids, userId));
+    }
+
+    /**
+     * Удаляет пользователя вместе со всеми связями в обе стороны.
+     */
+    public synchronized void removeUser(int userId) {
+        version.incrementAndGet();
+        // Пользователь мог оказаться в рекомендациях у любого из друзей друзей
+        suggestionsByUser.clear();
+        for (int friendId : friendsByUser.getOrDefault(userId, EMPTY)) {
+            followersByUser.computeIfPresent(friendId, (k, ids) -> delete(ids, userId));
+        }
+        for (int followerId : followersByUser.getOrDefault(userId, EMPTY)) {
+            friendsByUser.computeIfPresent(followerId, (k, ids) -> delete(ids, userId));
+        }
+        friendsByUser.remove(userId);
+        followersByUser.remove(userId);
+    }
+
+    private List<FriendSuggestion> computeFriendSuggestions(int userId, int limit) {
+        int[] friends = getFriends(userId);
+        IntStream friendIds = Arrays.stream(friends);
+        if (friends.length >= PARALLEL_DEGREE_THRESHOLD) {
+            friendIds = friendIds.parallel();
+        }
+        Map<Integer, Integer> mutualByCandidate = friendIds.collect(HashMap::new, (counts, friendId) -> {
+            for (int candidateId : getFriends(friendId)) {
+                if (candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0) {
+                    counts.merge(candidateId, 1, Integer::sum);
+                }
+            }
+        }, (left, right) -> right.forEach((candidateId, count) -> left.merge(candidateId, count, Integer::sum)));
+
+        // Куча из limit лучших кандидатов, в вершине - худший из них
+        Comparator<FriendSuggestion> order = Comparator.comparingInt(FriendSuggestion::mutualFriends).reversed()
+                .thenComparingInt(FriendSuggestion::userId);
+        PriorityQueue<FriendSuggestion> top = new PriorityQueue<>(limit + 1, order.reversed());
+        mutualByCandidate.forEach((candidateId, count) -> {
+            top.add(new FriendSuggestion(candidateId, count));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+        List<FriendSuggestion> result = new ArrayList<>(top);
+        result.sort(order);
+        return result;
+    }
+
+    // Под тем же монитором, что и изменения графа, чтобы сброс не мог проскочить между проверкой и записью
+    private synchronized void cacheSuggestions(int userId, CachedSuggestions suggestions, long computedAt) {
+        if (version.get() == computedAt) {
+            suggestionsByUser.put(userId, suggestions);
+        }
+    }
+
+    // Рекомендации зависят от друзей пользователя и от друзей его друзей
+    private void invalidateSuggestions(int userId) {
+        suggestionsByUser.remove(userId);
+        for (int followerId : followersByUser.getOrDefault(userId, EMPTY)) {
+            suggestionsByUser.remove(followerId);
+        }
+    }
+
+    private static int[] insert(int[] ids, int id) {
+        if (ids == null) {
+            return new int[]{id};
+        }
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return ids;
+        }
+        position = -position - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        result[position] = id;
+        System.arraycopy(ids, position, result, position + 1, ids.length - position);
+        return result;
+    }
+
+    // null удаляет запись из карты
+    private static int[] delete(int[] ids, int id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        System.arraycopy(ids, position + 1, result, position, ids.length - position - 1);
+        return result;
+    }
+
+    private static int[] toSortedArray(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+    }
+
+    public record FriendSuggestion(int userId, int mutualFriends) {
+    }
+
+    private record CachedSuggestions(int limit, List<FriendSuggestion> suggestions) {
+    }
+}
@@ -0,0 +1,206 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс лайков в памяти: фильм -> пользователи и пользователь -> фильмы в виде сжатых битовых карт.
+ * Используется для рекомендаций: пересечение считается только с пользователями,
+ * у которых есть хотя бы один общий лайк, - и для общих фильмов двух пользователей.
+ * Обновляется через FilmService при изменении лайков.
+ */
+@Slf4j
+@Component
+public class LikeIndex implements RebuildableIndex {
+    private final FilmStorage filmStorage;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, RoaringBitmap> usersByFilm = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> filmsByUser = new HashMap<>();
+
+    public LikeIndex(@Qualifier("FilmStorageDbImpl") FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    @Override
+    @PostConstruct
+    public void rebuild() {
+        log.info("Перестроение индекса лайков");
+        Map<Integer, RoaringBitmap> newUsersByFilm = new HashMap<>();
+        Map<Integer, RoaringBitmap> newFilmsByUser = new HashMap<>();
+        filmStorage.forEachLike((userId, filmId) -> {
+            newUsersByFilm.computeIfAbsent(filmId, k -> new RoaringBitmap()).add(userId);
+            newFilmsByUser.computeIfAbsent(userId, k -> new RoaringBitmap()).add(filmId);
+        });
+        newUsersByFilm.values().forEach(RoaringBitmap::runOptimize);
+        newFilmsByUser.values().forEach(RoaringBitmap::runOptimize);
+
+        lock.writeLock().lock();
+        try {
+            usersByFilm.clear();
+            usersByFilm.putAll(newUsersByFilm);
+            filmsByUser.clear();
+            filmsByUser.putAll(newFilmsByUser);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс лайков перестроен: фильмов {}, пользователей {}", newUsersByFilm.size(), newFilmsByUser.size());
+    }
+
+    public void addLike(int userId, int filmId) {
+        lock.writeLock().lock();
+        try {
+            usersByFilm.computeIfAbsent(filmId, k -> new RoaringBitmap()).add(userId);
+            filmsByUser.computeIfAbsent(userId, k -> new RoaringBitmap()).add(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает false, если лайка в индексе не было.
+     */
+    public boolean removeLike(int userId, int filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFromBitmap(usersByFilm, filmId, userId);
+            return removeFromBitmap(filmsByUser, userId, filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            RoaringBitmap users = usersByFilm.remove(filmId);
+            if (users != null) {
+                IntIterator iterator = users.getIntIterator();
+                while (iterator.hasNext()) {
+                    removeFromBitmap(filmsByUser, iterator.next(), filmId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет все лайки пользователя и возвращает id фильмов, которые он лайкал.
+     */
+    public List<Integer> removeUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            RoaringBitmap films = filmsByUser.remove(userId);
+            if (films == null) {
+                return new ArrayList<>();
+            }
+            List<Integer> result = new ArrayList<>(films.getCardinality());
+            films.forEach((int filmId) -> {
+                removeFromBitmap(usersByFilm, filmId, userId);
+                result.add(filmId);
+            });
+            return result;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает id фильмов, которые лайкнули оба пользователя, по возрастанию id.
+     */
+    public List<Integer> findCommonFilmIds(int userId, int friendId) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap userFilms = filmsByUser.get(userId);
+            RoaringBitmap friendFilms = filmsByUser.get(friendId);
+            if (userFilms == null || friendFilms == null) {
+                return new ArrayList<>();
+            }
+            RoaringBitmap common = RoaringBitmap.and(userFilms, friendFilms);
+            List<Integer> result = new ArrayList<>(common.getCardinality());
+            common.forEach((int filmId) -> result.add(filmId));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает id фильмов, которые лайкнули пользователи с максимальным числом общих лайков
+     * с указанным пользователем, за исключением фильмов, уже лайкнутых им самим.
+     */
+    public List<Integer> findRecommendedFilmIds(int userId) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap userFilms = filmsByUser.get(userId);
+            if (userFilms == null || userFilms.isEmpty()) {
+                log.debug("У пользователя с ID {} нет лайков в индексе", userId);
+                return new ArrayList<>();
+            }
+
+            RoaringBitmap candidates = new RoaringBitmap();
+            IntIterator films = userFilms.getIntIterator();
+            while (films.hasNext()) {
+                RoaringBitmap users = usersByFilm.get(films.next());
+                if (users != null) {
+                    candidates.or(users);
+                }
+            }
+            candidates.remove(userId);
+
+            int maxIntersectionSize = 0;
+            RoaringBitmap similarUsers = new RoaringBitmap();
+            IntIterator candidateIterator = candidates.getIntIterator();
+            while (candidateIterator.hasNext()) {
+                int candidateId = candidateIterator.next();
+                int intersectionSize = RoaringBitmap.andCardinality(userFilms, filmsByUser.get(candidateId));
+                if (intersectionSize > maxIntersectionSize) {
+                    maxIntersectionSize = intersectionSize;
+                    similarUsers.clear();
+                    similarUsers.add(candidateId);
+                } else if (intersectionSize == maxIntersectionSize) {
+                    similarUsers.add(candidateId);
+                }
+            }
+            log.debug("Для пользователя с ID {} проверено {} кандидатов, максимум общих лайков: {}",
+                    userId, candidates.getCardinality(), maxIntersectionSize);
+
+            RoaringBitmap recommended = new RoaringBitmap();
+            IntIterator similarIterator = similarUsers.getIntIterator();
+            while (similarIterator.hasNext()) {
+                recommended.or(filmsByUser.get(similarIterator.next()));
+            }
+            recommended.andNot(userFilms);
+
+            List<Integer> result = new ArrayList<>(recommended.getCardinality());
+            recommended.forEach((int filmId) -> result.add(filmId));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean removeFromBitmap(Map<Integer, RoaringBitmap> bitmaps, int key, int value) {
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap == null || !bitmap.checkedRemove(value)) {
+            return false;
+        }
+        if (bitmap.isEmpty()) {
+            bitmaps.remove(key);
+        }
+        return true;
+    }
+}
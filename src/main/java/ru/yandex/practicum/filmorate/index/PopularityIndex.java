@@ -0,0 +1,256 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс популярности фильмов в памяти.
+ * Фильмы упорядочены по количеству лайков (по убыванию), при равенстве - по id,
+ * так же, как в запросе FilmStorageDbImpl.getPopularFilms. Дополнительно ведутся
+ * разделы по жанру и году выпуска, поэтому /films/popular обслуживается без обращения к БД.
+ * При старте счетчики likes_count пересчитываются по таблице _like и индекс строится заново.
+ * Индекс хранит собственные копии фильмов и отдаёт наружу тоже копии, поэтому изменение
+ * полученного фильма не влияет на порядок и разделы индекса.
+ */
+@Slf4j
+@Component
+public class PopularityIndex implements RebuildableIndex {
+    private static final Comparator<Entry> BY_POPULARITY = Comparator
+            .comparingInt(Entry::likes).reversed()
+            .thenComparingInt(Entry::filmId);
+
+    private final FilmStorage filmStorage;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Entry> entryByFilmId = new HashMap<>();
+    private final NavigableSet<Entry> all = new TreeSet<>(BY_POPULARITY);
+    private final Map<Integer, NavigableSet<Entry>> byGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byYear = new HashMap<>();
+
+    public PopularityIndex(@Qualifier("FilmStorageDbImpl") FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    @Override
+    @PostConstruct
+    public void rebuild() {
+        log.info("Перестроение индекса популярности фильмов");
+        filmStorage.rebuildLikesCount();
+        List<Film> films = filmStorage.findAllFilms();
+
+        lock.writeLock().lock();
+        try {
+            entryByFilmId.clear();
+            all.clear();
+            byGenre.clear();
+            byYear.clear();
+            films.forEach(film -> add(film, film.getLikesCount()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс популярности перестроен, фильмов в индексе: {}", films.size());
+    }
+
+    /**
+     * Добавляет фильм в индекс или заменяет его после изменения.
+     * Количество лайков берется из film.likesCount.
+     */
+    public void upsertFilm(Film film) {
+        lock.writeLock().lock();
+        try {
+            remove(film.getId());
+            add(film, film.getLikesCount());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Фильм с id={} обновлен в индексе популярности", film.getId());
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Фильм с id={} удален из индекса популярности", filmId);
+    }
+
+    public void changeLikes(int filmId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Entry entry = remove(filmId);
+            if (entry == null) {
+                log.warn("Фильм с id={} отсутствует в индексе популярности", filmId);
+                return;
+            }
+            add(entry.film(), Math.max(0, entry.likes() + delta));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getLikes(int filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entryByFilmId.get(filmId);
+            return entry == null ? 0 : entry.likes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Упорядочивает фильмы так же, как getTopFilms: по числу лайков (по убыванию), при равенстве - по id.
+     * Фильмы, которых нет в индексе, идут последними.
+     */
+    public List<Integer> sortByPopularity(Collection<Integer> filmIds) {
+        lock.readLock().lock();
+        try {
+            return filmIds.stream()
+                    .map(filmId -> entryByFilmId.getOrDefault(filmId, Entry.missing(filmId)))
+                    .sorted(BY_POPULARITY)
+                    .map(Entry::filmId)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Режиссёры фильма по данным индекса, чтобы не читать фильм из БД ради изменения лайка.
+     */
+    public List<Integer> getDirectorIds(int filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entryByFilmId.get(filmId);
+            if (entry == null || entry.film().getDirectors() == null) {
+                return Collections.emptyList();
+            }
+            return List.copyOf(entry.film().getDirectors());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает не более count самых популярных фильмов с учетом фильтров.
+     * Если заданы оба фильтра, перебирается меньший из двух разделов.
+     */
+    public List<Film> getTopFilms(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> source = all;
+            if (genreId != null) {
+                source = byGenre.getOrDefault(genreId, Collections.emptyNavigableSet());
+            }
+            if (year != null) {
+                NavigableSet<Entry> yearPartition = byYear.getOrDefault(year, Collections.emptyNavigableSet());
+                if (genreId == null || yearPartition.size() < source.size()) {
+                    source = yearPartition;
+                }
+            }
+
+            List<Film> result = new ArrayList<>(Math.min(count, source.size()));
+            for (Entry entry : source) {
+                if (result.size() >= count) {
+                    break;
+                }
+                if (entry.matches(genreId, year)) {
+                    result.add(copy(entry.film(), entry.likes()));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Film film, int likes) {
+        Entry entry = Entry.of(copy(film, likes));
+        entryByFilmId.put(entry.filmId(), entry);
+        all.add(entry);
+        for (Integer genreId : entry.genres()) {
+            byGenre.computeIfAbsent(genreId, k -> new TreeSet<>(BY_POPULARITY)).add(entry);
+        }
+        if (entry.year() != null) {
+            byYear.computeIfAbsent(entry.year(), k -> new TreeSet<>(BY_POPULARITY)).add(entry);
+        }
+    }
+
+    private Entry remove(int filmId) {
+        Entry entry = entryByFilmId.remove(filmId);
+        if (entry == null) {
+            return null;
+        }
+        all.remove(entry);
+        for (Integer genreId : entry.genres()) {
+            removeFromPartition(byGenre, genreId, entry);
+        }
+        if (entry.year() != null) {
+            removeFromPartition(byYear, entry.year(), entry);
+        }
+        return entry;
+    }
+
+    private void removeFromPartition(Map<Integer, NavigableSet<Entry>> partitions, Integer key, Entry entry) {
+        NavigableSet<Entry> partition = partitions.get(key);
+        if (partition != null) {
+            partition.remove(entry);
+            if (partition.isEmpty()) {
+                partitions.remove(key);
+            }
+        }
+    }
+
+    static Film copy(Film film, int likes) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setDuration(film.getDuration());
+        copy.setReleaseDate(film.getReleaseDate());
+        if (film.getMpa() != null) {
+            Mpa mpa = new Mpa();
+            mpa.setId(film.getMpa().getId());
+            mpa.setName(film.getMpa().getName());
+            copy.setMpa(mpa);
+        }
+        copy.setGenres(film.getGenres() == null ? new ArrayList<>() : new ArrayList<>(film.getGenres()));
+        copy.setDirectors(film.getDirectors() == null ? new ArrayList<>() : new ArrayList<>(film.getDirectors()));
+        copy.setLikesCount(likes);
+        return copy;
+    }
+
+    /**
+     * Жанры и год вычисляются один раз при добавлении фильма, а не при каждой проверке фильтра.
+     */
+    private record Entry(int filmId, int likes, Film film, Set<Integer> genres, Integer year) {
+
+        static Entry of(Film film) {
+            Set<Integer> genres = Set.copyOf(film.getGenres());
+            Integer year = film.getReleaseDate() == null ? null : film.getReleaseDate().getYear();
+            return new Entry(film.getId(), film.getLikesCount(), film, genres, year);
+        }
+
+        static Entry missing(int filmId) {
+            return new Entry(filmId, -1, null, Set.of(), null);
+        }
+
+        boolean matches(Integer genreId, Integer year) {
+            return (genreId == null || genres.contains(genreId)) && (year == null || year.equals(this.year));
+        }
+    }
+}
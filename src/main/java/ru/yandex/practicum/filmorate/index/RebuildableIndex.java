@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.index;
+
+/**
+ * Индекс в памяти, который строится по данным БД и может быть перестроен целиком,
+ * например после массовой загрузки данных в обход сервисов.
+ */
+public interface RebuildableIndex {
+    void rebuild();
+}
@@ -0,0 +1,273 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Поисковый индекс в памяти по названиям фильмов и именам режиссёров.
+ * Тексты приводятся к нижнему регистру и раскладываются на триграммы; поиск подстроки
+ * пересекает списки фильмов (режиссёров) по всем триграммам запроса и проверяет кандидатов,
+ * поэтому результат совпадает с LIKE '%query%'. Найденные фильмы упорядочиваются
+ * по количеству лайков из PopularityIndex.
+ */
+@Slf4j
+@Component
+public class SearchIndex implements RebuildableIndex {
+    private static final int GRAM_SIZE = 3;
+    private static final int REBUILD_CHUNK_SIZE = 1000;
+
+    private final FilmStorage filmStorage;
+    private final DirectorStorage directorStorage;
+    private final PopularityIndex popularityIndex;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private TextIndex titles = new TextIndex();
+    private TextIndex directorNames = new TextIndex();
+    private Map<Integer, RoaringBitmap> filmsByDirector = new HashMap<>();
+    private Map<Integer, Set<Integer>> directorsByFilm = new HashMap<>();
+
+    public SearchIndex(@Qualifier("FilmStorageDbImpl") FilmStorage filmStorage, DirectorStorage directorStorage,
+                       PopularityIndex popularityIndex) {
+        this.filmStorage = filmStorage;
+        this.directorStorage = directorStorage;
+        this.popularityIndex = popularityIndex;
+    }
+
+    @Override
+    @PostConstruct
+    public void rebuild() {
+        log.info("Перестроение поискового индекса");
+        TextIndex newTitles = new TextIndex();
+        TextIndex newDirectorNames = new TextIndex();
+        Map<Integer, RoaringBitmap> newFilmsByDirector = new HashMap<>();
+        Map<Integer, Set<Integer>> newDirectorsByFilm = new HashMap<>();
+
+        for (Director director : directorStorage.findAllDirector()) {
+            newDirectorNames.put(director.getId(), director.getName());
+        }
+        filmStorage.forEachFilmChunk(REBUILD_CHUNK_SIZE, films -> {
+            for (Film film : films) {
+                newTitles.put(film.getId(), film.getName());
+                linkDirectors(film, newFilmsByDirector, newDirectorsByFilm);
+            }
+        });
+        newFilmsByDirector.values().forEach(RoaringBitmap::runOptimize);
+
+        lock.writeLock().lock();
+        try {
+            titles = newTitles;
+            directorNames = newDirectorNames;
+            filmsByDirector = newFilmsByDirector;
+            directorsByFilm = newDirectorsByFilm;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс перестроен: фильмов {}, режиссёров {}", newTitles.size(), newDirectorNames.size());
+    }
+
+    /**
+     * Добавляет фильм в индекс или заменяет его название и режиссёров после изменения.
+     */
+    public void upsertFilm(Film film) {
+        lock.writeLock().lock();
+        try {
+            unlinkDirectors(film.getId());
+            titles.put(film.getId(), film.getName());
+            linkDirectors(film, filmsByDirector, directorsByFilm);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            unlinkDirectors(filmId);
+            titles.remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void upsertDirector(Director director) {
+        lock.writeLock().lock();
+        try {
+            directorNames.put(director.getId(), director.getName());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            directorNames.remove(directorId);
+            RoaringBitmap films = filmsByDirector.remove(directorId);
+            if (films != null) {
+                films.forEach((int filmId) -> {
+                    Set<Integer> directorIds = directorsByFilm.get(filmId);
+                    if (directorIds != null) {
+                        directorIds.remove(directorId);
+                    }
+                });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает фильмы, у которых название и/или имя одного из режиссёров содержит query,
+     * в порядке убывания количества лайков, при равенстве - по id. Вместе с id отдаётся число лайков,
+     * по которому шла сортировка, чтобы курсор страницы строился по тем же ключам.
+     */
+    public List<Match> findFilms(String query, boolean searchByTitle, boolean searchByDirector) {
+        String normalized = normalize(query);
+        RoaringBitmap found = new RoaringBitmap();
+        lock.readLock().lock();
+        try {
+            if (searchByTitle) {
+                found.or(titles.match(normalized));
+            }
+            if (searchByDirector) {
+                directorNames.match(normalized).forEach((int directorId) -> {
+                    RoaringBitmap films = filmsByDirector.get(directorId);
+                    if (films != null) {
+                        found.or(films);
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Match> matches = new ArrayList<>(found.getCardinality());
+        found.forEach((int filmId) -> matches.add(new Match(filmId, popularityIndex.getLikes(filmId))));
+        matches.sort(Comparator.comparingInt(Match::likes).reversed().thenComparingInt(Match::filmId));
+        return matches;
+    }
+
+    public record Match(int filmId, int likes) {
+    }
+
+    private void linkDirectors(Film film, Map<Integer, RoaringBitmap> filmsByDirector,
+                               Map<Integer, Set<Integer>> directorsByFilm) {
+        if (film.getDirectors() == null || film.getDirectors().isEmpty()) {
+            return;
+        }
+        Set<Integer> directorIds = new HashSet<>(film.getDirectors());
+        directorsByFilm.put(film.getId(), directorIds);
+        for (Integer directorId : directorIds) {
+            filmsByDirector.computeIfAbsent(directorId, k -> new RoaringBitmap()).add(film.getId());
+        }
+    }
+
+    private void unlinkDirectors(int filmId) {
+        Set<Integer> directorIds = directorsByFilm.remove(filmId);
+        if (directorIds == null) {
+            return;
+        }
+        for (Integer directorId : directorIds) {
+            RoaringBitmap films = filmsByDirector.get(directorId);
+            if (films != null) {
+                films.remove(filmId);
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Тексты по id и инвертированный список триграмма -> id.
+     */
+    private static final class TextIndex {
+        private final Map<Integer, String> textById = new HashMap<>();
+        private final Map<String, RoaringBitmap> idsByGram = new HashMap<>();
+
+        void put(int id, String text) {
+            remove(id);
+            String normalized = normalize(text);
+            textById.put(id, normalized);
+            for (String gram : grams(normalized)) {
+                idsByGram.computeIfAbsent(gram, k -> new RoaringBitmap()).add(id);
+            }
+        }
+
+        void remove(int id) {
+            String text = textById.remove(id);
+            if (text == null) {
+                return;
+            }
+            for (String gram : grams(text)) {
+                RoaringBitmap ids = idsByGram.get(gram);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        idsByGram.remove(gram);
+                    }
+                }
+            }
+        }
+
+        int size() {
+            return textById.size();
+        }
+
+        /**
+         * id, тексты которых содержат query. Запрос короче триграммы проверяется перебором.
+         */
+        RoaringBitmap match(String query) {
+            RoaringBitmap result = new RoaringBitmap();
+            if (query.length() < GRAM_SIZE) {
+                textById.forEach((id, text) -> {
+                    if (text.contains(query)) {
+                        result.add(id);
+                    }
+                });
+                return result;
+            }
+
+            List<RoaringBitmap> postings = new ArrayList<>();
+            for (String gram : grams(query)) {
+                RoaringBitmap ids = idsByGram.get(gram);
+                if (ids == null) {
+                    return result;
+                }
+                postings.add(ids);
+            }
+            postings.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+            RoaringBitmap candidates = postings.getFirst().clone();
+            for (int i = 1; i < postings.size() && !candidates.isEmpty(); i++) {
+                candidates.and(postings.get(i));
+            }
+            // Совпадение всех триграмм не гарантирует совпадения подстроки целиком
+            candidates.forEach((int id) -> {
+                if (textById.get(id).contains(query)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+
+        private static Set<String> grams(String text) {
+            Set<String> grams = new HashSet<>();
+            for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+                grams.add(text.substring(i, i + GRAM_SIZE));
+            }
+            return grams;
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.enumeration.SuggestionType;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Префиксное дерево слов из названий фильмов и имён режиссёров для подсказок при вводе.
+ * Каждое слово запроса сопоставляется с началом слов в дереве с допустимым числом опечаток
+ * (расстояние Дамерау-Левенштейна с перестановкой соседних букв считается построчно при обходе дерева,
+ * ветки без шанса на совпадение отсекаются).
+ * Подсказка должна подходить под все слова запроса; выше стоят точные совпадения, затем популярные фильмы.
+ * Каждый узел хранит MAX_LIMIT самых популярных записей своего поддерева, поэтому слово запроса,
+ * совпавшее с началом большого поддерева, не требует его обхода. Популярность фильмов обновляется
+ * через FilmService при изменении лайков.
+ */
+@Slf4j
+@Component
+public class SuggestIndex implements RebuildableIndex {
+    public static final int MAX_LIMIT = 50;
+    private static final int REBUILD_CHUNK_SIZE = 1000;
+
+    private final FilmStorage filmStorage;
+    private final DirectorStorage directorStorage;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Trie trie = new Trie();
+
+    public SuggestIndex(@Qualifier("FilmStorageDbImpl") FilmStorage filmStorage, DirectorStorage directorStorage) {
+        this.filmStorage = filmStorage;
+        this.directorStorage = directorStorage;
+    }
+
+    @Override
+    @PostConstruct
+    public void rebuild() {
+        log.info("Перестроение индекса подсказок");
+        Trie newTrie = new Trie();
+        for (Director director : directorStorage.findAllDirector()) {
+            newTrie.put(new Target(SuggestionType.DIRECTOR, director.getId()), director.getName(), 0);
+        }
+        filmStorage.forEachFilmChunk(REBUILD_CHUNK_SIZE, films -> {
+            for (Film film : films) {
+                newTrie.put(new Target(SuggestionType.FILM, film.getId()), film.getName(), film.getLikesCount());
+            }
+        });
+
+        lock.writeLock().lock();
+        try {
+            trie = newTrie;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс подсказок перестроен, записей: {}", newTrie.entryByTarget.size());
+    }
+
+    /**
+     * Добавляет фильм или заменяет его название; популярность берется из film.likesCount.
+     */
+    public void upsertFilm(Film film) {
+        upsert(new Target(SuggestionType.FILM, film.getId()), film.getName(), film.getLikesCount());
+    }
+
+    public void removeFilm(int filmId) {
+        remove(new Target(SuggestionType.FILM, filmId));
+    }
+
+    public void upsertDirector(Director director) {
+        upsert(new Target(SuggestionType.DIRECTOR, director.getId()), director.getName(), 0);
+    }
+
+    public void removeDirector(int directorId) {
+        remove(new Target(SuggestionType.DIRECTOR, directorId));
+    }
+
+    public void updateFilmLikes(int filmId, int likes) {
+        lock.writeLock().lock();
+        try {
+            trie.updateWeight(new Target(SuggestionType.FILM, filmId), likes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает не более limit подсказок для введённого текста, но не более MAX_LIMIT.
+     */
+    public List<Suggestion> suggest(String query, int limit) {
+        List<String> queryWords = words(query);
+        if (queryWords.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<Suggestion> suggestions;
+        lock.readLock().lock();
+        try {
+            suggestions = trie.suggest(queryWords);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        suggestions.sort(Comparator.comparingInt(Suggestion::distance)
+                .thenComparing(Comparator.comparingInt(Suggestion::weight).reversed())
+                .thenComparing(Suggestion::text, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Suggestion::type)
+                .thenComparingInt(Suggestion::id));
+        int count = Math.min(limit, MAX_LIMIT);
+        return suggestions.size() > count ? suggestions.subList(0, count) : suggestions;
+    }
+
+    private void upsert(Target target, String text, int weight) {
+        lock.writeLock().lock();
+        try {
+            trie.remove(target);
+            trie.put(target, text, weight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(Target target) {
+        lock.writeLock().lock();
+        try {
+            trie.remove(target);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int maxDistance(String word) {
+        if (word.length() <= 3) {
+            return 0;
+        }
+        return word.length() <= 6 ? 1 : 2;
+    }
+
+    private static List<String> words(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static int[] firstRow(String word) {
+        int[] row = new int[word.length() + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i;
+        }
+        return row;
+    }
+
+    /**
+     * Следующая строка матрицы расстояний от слова запроса до начала слова дерева, продолженного буквой letter.
+     */
+    private static int[] nextRow(String word, char letter, char previousLetter, int[] previousRow,
+                                 int[] beforePreviousRow) {
+        int columns = word.length() + 1;
+        int[] row = new int[columns];
+        row[0] = previousRow[0] + 1;
+        for (int i = 1; i < columns; i++) {
+            int insert = row[i - 1] + 1;
+            int delete = previousRow[i] + 1;
+            int replace = previousRow[i - 1] + (word.charAt(i - 1) == letter ? 0 : 1);
+            row[i] = Math.min(Math.min(insert, delete), replace);
+            if (beforePreviousRow != null && i > 1
+                    && word.charAt(i - 1) == previousLetter && word.charAt(i - 2) == letter) {
+                row[i] = Math.min(row[i], beforePreviousRow[i - 2] + 1);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Наименьшее значение, которое ещё может появиться в последнем столбце следующих строк.
+     * Перестановка в следующей строке может опираться на предыдущую строку.
+     */
+    private static int lowerBound(int[] row, int[] previousRow) {
+        return Math.min(Arrays.stream(row).min().orElse(0), Arrays.stream(previousRow).min().orElse(0) + 1);
+    }
+
+    public record Suggestion(SuggestionType type, int id, String text, int distance, int weight) {
+    }
+
+    private record Target(SuggestionType type, int id) {
+    }
+
+    private record Entry(String text, int weight) {
+    }
+
+    private record PathNode(Node node, Node parent, char letter, int depth) {
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final Set<Target> targets = new HashSet<>(1);
+        // Не более MAX_LIMIT лучших записей поддерева в порядке Trie.byRank
+        private final List<Target> top = new ArrayList<>(1);
+        // Количество слов в поддереве
+        private int size;
+    }
+
+    private static final class Trie {
+        private final Node root = new Node();
+        private final Map<Target, Entry> entryByTarget = new HashMap<>();
+        // Порядок записей внутри поддерева: по популярности, затем по тексту и id
+        private final Comparator<Target> byRank = Comparator
+                .comparingInt((Target target) -> entryByTarget.get(target).weight()).reversed()
+                .thenComparing(target -> entryByTarget.get(target).text(), Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Target::type)
+                .thenComparingInt(Target::id);
+
+        void put(Target target, String text, int weight) {
+            entryByTarget.put(target, new Entry(text, weight));
+            List<String> words = words(text);
+            for (String word : words) {
+                Node node = root;
+                for (int i = 0; i < word.length(); i++) {
+                    node = node.children.computeIfAbsent(word.charAt(i), k -> new Node());
+                    node.size++;
+                }
+                node.targets.add(target);
+            }
+            for (PathNode pathNode : deepestFirst(words)) {
+                pathNode.node().top.remove(target);
+                insertTop(pathNode.node(), target);
+            }
+        }
+
+        /**
+         * Убирает слова записи из дерева и пересчитывает лучшие записи по их путям; опустевшие узлы удаляются.
+         */
+        void remove(Target target) {
+            Entry entry = entryByTarget.get(target);
+            if (entry == null) {
+                return;
+            }
+            List<String> words = words(entry.text());
+            List<PathNode> path = deepestFirst(words);
+            for (String word : words) {
+                Node node = root;
+                for (int i = 0; i < word.length(); i++) {
+                    node = node.children.get(word.charAt(i));
+                    node.size--;
+                }
+                node.targets.remove(target);
+            }
+            // Дети пересчитываются раньше родителей, поэтому родитель собирается из уже исправленных списков
+            for (PathNode pathNode : path) {
+                if (pathNode.node().top.contains(target)) {
+                    recomputeTop(pathNode.node(), target);
+                }
+            }
+            for (PathNode pathNode : path) {
+                if (pathNode.node().size == 0) {
+                    pathNode.parent().children.remove(pathNode.letter());
+                }
+            }
+            entryByTarget.remove(target);
+        }
+
+        void updateWeight(Target target, int weight) {
+            Entry entry = entryByTarget.get(target);
+            if (entry == null || entry.weight() == weight) {
+                return;
+            }
+            boolean increased = weight > entry.weight();
+            entryByTarget.put(target, new Entry(entry.text(), weight));
+            for (PathNode pathNode : deepestFirst(words(entry.text()))) {
+                Node node = pathNode.node();
+                boolean wasFull = node.top.size() >= MAX_LIMIT;
+                boolean contained = node.top.remove(target);
+                if (increased || (contained && !wasFull)) {
+                    insertTop(node, target);
+                } else if (contained) {
+                    // Запись опустилась в полном списке: её место может занять запись, не попавшая в список
+                    recomputeTop(node, null);
+                }
+            }
+        }
+
+        List<Suggestion> suggest(List<String> queryWords) {
+            List<Map<Node, Integer>> matchesByWord = new ArrayList<>(queryWords.size());
+            for (String word : queryWords) {
+                Map<Node, Integer> matches = matchWord(word);
+                if (matches.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                matchesByWord.add(matches);
+            }
+            Map<Target, Integer> distanceByTarget = queryWords.size() == 1
+                    ? collectTop(matchesByWord.getFirst())
+                    : collectMatchingAll(queryWords, matchesByWord);
+
+            List<Suggestion> suggestions = new ArrayList<>(distanceByTarget.size());
+            for (Map.Entry<Target, Integer> match : distanceByTarget.entrySet()) {
+                Target target = match.getKey();
+                Entry entry = entryByTarget.get(target);
+                suggestions.add(new Suggestion(target.type(), target.id(), entry.text(), match.getValue(), entry.weight()));
+            }
+            return suggestions;
+        }
+
+        /**
+         * Узлы на путях слов без корня, каждый один раз, от самых глубоких к корню.
+         */
+        private List<PathNode> deepestFirst(List<String> words) {
+            Map<Node, PathNode> pathNodes = new IdentityHashMap<>();
+            for (String word : words) {
+                Node parent = root;
+                for (int i = 0; i < word.length(); i++) {
+                    Node node = parent.children.get(word.charAt(i));
+                    if (node == null) {
+                        break;
+                    }
+                    pathNodes.putIfAbsent(node, new PathNode(node, parent, word.charAt(i), i));
+                    parent = node;
+                }
+            }
+            List<PathNode> result = new ArrayList<>(pathNodes.values());
+            result.sort(Comparator.comparingInt(PathNode::depth).reversed());
+            return result;
+        }
+
+        private void insertTop(Node node, Target target) {
+            int position = Collections.binarySearch(node.top, target, byRank);
+            if (position < 0) {
+                position = -position - 1;
+            }
+            if (position < MAX_LIMIT) {
+                node.top.add(position, target);
+                if (node.top.size() > MAX_LIMIT) {
+                    node.top.removeLast();
+                }
+            }
+        }
+
+        /**
+         * Собирает лучшие записи узла заново из его собственных записей и лучших записей детей.
+         */
+        private void recomputeTop(Node node, Target excluded) {
+            Set<Target> candidates = new HashSet<>(node.targets);
+            for (Node child : node.children.values()) {
+                candidates.addAll(child.top);
+            }
+            if (excluded != null) {
+                candidates.remove(excluded);
+            }
+            List<Target> top = new ArrayList<>(candidates);
+            top.sort(byRank);
+            node.top.clear();
+            node.top.addAll(top.size() > MAX_LIMIT ? top.subList(0, MAX_LIMIT) : top);
+        }
+
+        /**
+         * Запрос из одного слова: лучшие записи поддеревьев совпавших узлов с наименьшим расстоянием.
+         * Запись, не попавшая в лучшие своего поддерева, уступает MAX_LIMIT записям с тем же или меньшим
+         * расстоянием, поэтому в ответ она не попала бы.
+         */
+        private Map<Target, Integer> collectTop(Map<Node, Integer> matches) {
+            Map<Target, Integer> result = new HashMap<>();
+            for (Map.Entry<Node, Integer> match : matches.entrySet()) {
+                for (Target target : match.getKey().top) {
+                    result.merge(target, match.getValue(), Math::min);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Запрос из нескольких слов: записи слова с самыми маленькими поддеревьями проверяются
+         * на совпадение с остальными словами запроса, расстояния по словам складываются.
+         */
+        private Map<Target, Integer> collectMatchingAll(List<String> queryWords, List<Map<Node, Integer>> matchesByWord) {
+            int selective = 0;
+            long selectiveSize = Long.MAX_VALUE;
+            for (int i = 0; i < matchesByWord.size(); i++) {
+                long size = matchesByWord.get(i).keySet().stream().mapToLong(node -> node.size).sum();
+                if (size < selectiveSize) {
+                    selective = i;
+                    selectiveSize = size;
+                }
+            }
+            Map<Target, Integer> candidates = new HashMap<>();
+            for (Map.Entry<Node, Integer> match : matchesByWord.get(selective).entrySet()) {
+                collectSubtree(match.getKey(), match.getValue(), candidates);
+            }
+
+            Map<Target, Integer> result = new HashMap<>();
+            for (Map.Entry<Target, Integer> candidate : candidates.entrySet()) {
+                List<String> targetWords = words(entryByTarget.get(candidate.getKey()).text());
+                Integer total = candidate.getValue();
+                for (int i = 0; i < queryWords.size() && total != null; i++) {
+                    if (i != selective) {
+                        OptionalInt distance = wordDistance(queryWords.get(i), targetWords);
+                        total = distance.isPresent() ? total + distance.getAsInt() : null;
+                    }
+                }
+                if (total != null) {
+                    result.put(candidate.getKey(), total);
+                }
+            }
+            return result;
+        }
+
+        private void collectSubtree(Node node, int distance, Map<Target, Integer> result) {
+            for (Target target : node.targets) {
+                result.merge(target, distance, Math::min);
+            }
+            for (Node child : node.children.values()) {
+                collectSubtree(child, distance, result);
+            }
+        }
+
+        /**
+         * Наименьшее расстояние от слова запроса до начала одного из слов записи, если оно допустимо.
+         */
+        private OptionalInt wordDistance(String word, List<String> targetWords) {
+            int maxDistance = maxDistance(word);
+            int best = Integer.MAX_VALUE;
+            for (String targetWord : targetWords) {
+                int[] beforePreviousRow = null;
+                int[] previousRow = firstRow(word);
+                char previousLetter = 0;
+                for (int i = 0; i < targetWord.length(); i++) {
+                    char letter = targetWord.charAt(i);
+                    int[] row = nextRow(word, letter, previousLetter, previousRow, beforePreviousRow);
+                    best = Math.min(best, row[word.length()]);
+                    if (lowerBound(row, previousRow) > maxDistance) {
+                        break;
+                    }
+                    beforePreviousRow = previousRow;
+                    previousRow = row;
+                    previousLetter = letter;
+                }
+            }
+            return best <= maxDistance ? OptionalInt.of(best) : OptionalInt.empty();
+        }
+
+        /**
+         * Узлы, начало слов в которых совпало со словом запроса, с расстоянием до него. Ниже совпавшего узла
+         * обход продолжается, только если расстояние в поддереве ещё может уменьшиться.
+         */
+        private Map<Node, Integer> matchWord(String word) {
+            int maxDistance = maxDistance(word);
+            Map<Node, Integer> result = new HashMap<>();
+            for (Map.Entry<Character, Node> child : root.children.entrySet()) {
+                matchNode(child.getValue(), child.getKey(), (char) 0, word, firstRow(word), null, Integer.MAX_VALUE,
+                        maxDistance, result);
+            }
+            return result;
+        }
+
+        private void matchNode(Node node, char letter, char previousLetter, String word, int[] previousRow,
+                               int[] beforePreviousRow, int prefixDistance, int maxDistance, Map<Node, Integer> result) {
+            int[] row = nextRow(word, letter, previousLetter, previousRow, beforePreviousRow);
+
+            // Запрос целиком сопоставлен с началом слова - всё поддерево подходит как продолжение
+            int distance = Math.min(prefixDistance, row[word.length()]);
+            if (distance <= maxDistance && distance < prefixDistance) {
+                result.put(node, distance);
+            }
+            int lowerBound = lowerBound(row, previousRow);
+            if (lowerBound > maxDistance || lowerBound >= distance) {
+                return;
+            }
+            for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+                matchNode(child.getValue(), child.getKey(), letter, word, row, previousRow, distance, maxDistance,
+                        result);
+            }
+        }
+    }
+}
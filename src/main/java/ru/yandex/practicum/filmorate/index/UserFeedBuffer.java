@@ -0,0 +1,160 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.*;
+
+/**
+ * Кольцевые буферы последних событий ленты по пользователям.
+ * Буфер пользователя загружается из БД при первом запросе ленты и дальше пополняется
+ * событиями, записанными UserEventWriter, поэтому запрос последней страницы ленты не обращается к БД.
+ * Число пользователей с буфером ограничено: при превышении вытесняется буфер, к которому дольше всего
+ * не обращались.
+ */
+@Slf4j
+@Component
+public class UserFeedBuffer implements RebuildableIndex {
+    private final UserStorage userStorage;
+    private final int capacity;
+    private final int maxUsers;
+
+    // Порядок доступа: первым идёт буфер, к которому дольше всего не обращались
+    private final Map<Integer, Ring> ringsByUser;
+
+    public UserFeedBuffer(@Qualifier("UserStorageDbImpl") UserStorage userStorage,
+                          @Value("${filmorate.feed.buffer-size:100}") int capacity,
+                          @Value("${filmorate.feed.buffer-users:10000}") int maxUsers) {
+        this.userStorage = userStorage;
+        this.capacity = capacity;
+        this.maxUsers = maxUsers;
+        this.ringsByUser = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Ring> eldest) {
+                return size() > UserFeedBuffer.this.maxUsers;
+            }
+        };
+    }
+
+    /**
+     * Буферы заполняются лениво, поэтому перестроение сводится к их сбросу.
+     */
+    @Override
+    public void rebuild() {
+        synchronized (ringsByUser) {
+            log.info("Сброс буферов ленты событий, пользователей: {}", ringsByUser.size());
+            ringsByUser.clear();
+        }
+    }
+
+    public boolean isBuffered(int userId) {
+        synchronized (ringsByUser) {
+            return ringsByUser.containsKey(userId);
+        }
+    }
+
+    /**
+     * Не более limit последних событий пользователя с timestamp больше since (если задан)
+     * в порядке возрастания времени. Пусто, если буфер не покрывает ответ и нужен запрос в БД.
+     */
+    public Optional<List<UserEvent>> findLatest(int userId, Long since, int limit) {
+        Ring ring;
+        synchronized (ringsByUser) {
+            ring = ringsByUser.computeIfAbsent(userId, id -> new Ring(capacity));
+        }
+        // Загрузка под блокировкой буфера, а не всей карты: append этого пользователя ждёт её окончания,
+        // запросы лент других пользователей - нет
+        synchronized (ring) {
+            if (!ring.loaded) {
+                ring.load(userStorage.findEventsByUserId(userId, null, null, capacity));
+            }
+            return Optional.ofNullable(ring.latest(since, limit));
+        }
+    }
+
+    /**
+     * Добавляет записанное в БД событие в буфер пользователя, если буфер уже загружен.
+     */
+    public void append(UserEvent event) {
+        Ring ring;
+        synchronized (ringsByUser) {
+            ring = ringsByUser.get(event.getUserId());
+        }
+        if (ring != null) {
+            ring.append(event);
+        }
+    }
+
+    public void removeUser(int userId) {
+        synchronized (ringsByUser) {
+            ringsByUser.remove(userId);
+        }
+    }
+
+    private static final class Ring {
+        private final UserEvent[] events;
+        private int next;
+        private int size;
+        private int maxEventId;
+        private boolean loaded;
+        // В буфере вся история пользователя - более старых событий в БД нет
+        private boolean complete;
+
+        Ring(int capacity) {
+            this.events = new UserEvent[capacity];
+        }
+
+        synchronized void load(List<UserEvent> stored) {
+            complete = stored.size() < events.length;
+            stored.forEach(this::add);
+            loaded = true;
+        }
+
+        synchronized void append(UserEvent event) {
+            // До загрузки событие будет прочитано из БД, после - могло попасть в буфер при загрузке
+            if (loaded && event.getEventId() > maxEventId) {
+                add(event);
+            }
+        }
+
+        synchronized void add(UserEvent event) {
+            maxEventId = Math.max(maxEventId, event.getEventId());
+            if (size == events.length) {
+                complete = false;
+            } else {
+                size++;
+            }
+            events[next] = event;
+            next = (next + 1) % events.length;
+        }
+
+        synchronized List<UserEvent> latest(Long since, int limit) {
+            List<UserEvent> result = new ArrayList<>(Math.min(limit, size));
+            for (int i = size - 1; i >= 0 && result.size() < limit; i--) {
+                UserEvent event = get(i);
+                if (since != null && event.getTimestamp() <= since) {
+                    break;
+                }
+                result.add(event);
+            }
+            // Страница не набрана: более старые события могут быть только в БД,
+            // если буфер не содержит всю историю и не дошёл до since
+            boolean reachedSince = result.size() < size;
+            if (result.size() < limit && !complete && !reachedSince) {
+                return null;
+            }
+            Collections.reverse(result);
+            return result;
+        }
+
+        // i-е событие от самого старого в буфере
+        private UserEvent get(int i) {
+            int start = size < events.length ? 0 : next;
+            return events[(start + i) % events.length];
+        }
+    }
+}
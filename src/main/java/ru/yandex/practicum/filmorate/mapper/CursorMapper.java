@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.mapper;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.stream.Collectors;
+
+/**
+ * Курсор страницы - ключи сортировки последней выданной записи, упакованные в непрозрачную строку.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CursorMapper {
+    private static final String SEPARATOR = ":";
+
+    public static String mapToCursor(int... keys) {
+        return encode(Arrays.stream(keys)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(SEPARATOR)));
+    }
+
+    /**
+     * Курсор из id записи и строкового ключа сортировки, например названия.
+     * Строковый ключ идёт последним, поэтому может содержать разделитель.
+     */
+    public static String mapToCursor(int id, String key) {
+        return encode(id + SEPARATOR + key);
+    }
+
+    public static int[] mapToKeys(String cursor, int keyCount) {
+        try {
+            return Arrays.stream(mapToStringKeys(cursor, keyCount)).mapToInt(Integer::parseInt).toArray();
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректный курсор страницы: " + cursor);
+        }
+    }
+
+    /**
+     * Ключи курсора строками; последний ключ забирает остаток курсора вместе с разделителями.
+     */
+    public static String[] mapToStringKeys(String cursor, int keyCount) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, keyCount);
+            if (parts.length != keyCount) {
+                throw new ValidationException("Некорректный курсор страницы: " + cursor);
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный курсор страницы: " + cursor);
+        }
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
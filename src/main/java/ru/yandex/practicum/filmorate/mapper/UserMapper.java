@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.mapper;
 
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import ru.yandex.practicum.filmorate.dto.FriendSuggestionDto;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.dto.UserRequest;
 import ru.yandex.practicum.filmorate.model.User;
@@ -29,4 +30,16 @@ public final class UserMapper {
         return dto;
     }
 
+    public static FriendSuggestionDto mapToFriendSuggestionDto(User user, int mutualFriends) {
+        FriendSuggestionDto dto = new FriendSuggestionDto();
+        dto.setId(user.getId());
+        dto.setLogin(user.getLogin());
+        dto.setEmail(user.getEmail());
+        dto.setName(user.getName());
+        dto.setBirthday(user.getBirthday());
+        dto.setMutualFriends(mutualFriends);
+
+        return dto;
+    }
+
 }
\ No newline at end of file
@@ -7,7 +7,7 @@ import java.time.LocalDate;
 import java.util.*;
 
 @Data
-@EqualsAndHashCode(exclude = {"id", "description"})
+@EqualsAndHashCode(exclude = {"id", "description", "likesCount"})
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class Film {
     Integer id;
@@ -18,6 +18,7 @@ public class Film {
     Mpa mpa;
     List<Integer> genres = new ArrayList<>();
     List<Integer> directors = new ArrayList<>();
+    int likesCount;
 
 
 }
\ No newline at end of file
@@ -1,27 +1,19 @@
 package ru.yandex.practicum.filmorate.rowMapper;
 
-import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
-import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Mpa;
-import ru.yandex.practicum.filmorate.storage.DirectorStorage;
-import ru.yandex.practicum.filmorate.storage.GenreStorage;
-import ru.yandex.practicum.filmorate.storage.MpaStorage;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.List;
 
-@RequiredArgsConstructor
+/**
+ * Маппит только строку _film. МПА, жанры и режиссёры заполняются пачкой
+ * в FilmStorageDbImpl, чтобы не делать запросы на каждую строку.
+ */
 @Component
 public class FilmRowMapper implements RowMapper<Film> {
-    private final MpaStorage mpaStorage;
-    private final GenreStorage genreStorage;
-    private final DirectorStorage directorStorage;
 
     @Override
     public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
@@ -31,25 +23,15 @@ public class FilmRowMapper implements RowMapper<Film> {
         film.setDescription(rs.getString("description"));
         film.setDuration(rs.getInt("duration"));
         film.setReleaseDate(rs.getDate("release_dt").toLocalDate());
+        film.setLikesCount(rs.getInt("likes_count"));
 
-
-        int mpaId = rs.getInt("mpa_id");
-        Mpa mpa = mpaStorage.findMpaById(mpaId)
-                .orElseThrow(() -> new NotFoundException("MPA рейтинг не найден по id: " + mpaId));
-        film.setMpa(mpa);
-
-        List<Integer> genres = genreStorage.getByFilmId(rs.getInt("id")).stream()
-                .map(Genre::getId)
-                .toList();
-
-        film.setGenres(genres);
-
-        List<Integer> directors = directorStorage.getByFilmId(rs.getInt("id")).stream()
-                .map(Director::getId)
-                .toList();
-
-        film.setDirectors(directors);
+        Integer mpaId = rs.getObject("mpa_id", Integer.class);
+        if (mpaId != null) {
+            Mpa mpa = new Mpa();
+            mpa.setId(mpaId);
+            film.setMpa(mpa);
+        }
 
         return film;
     }
-}
\ No newline at end of file
+}
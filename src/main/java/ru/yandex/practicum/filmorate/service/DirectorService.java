@@ -3,9 +3,13 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.cache.DictionaryCache;
 import ru.yandex.practicum.filmorate.dto.DirectorDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.DirectorFilmography;
+import ru.yandex.practicum.filmorate.index.SearchIndex;
+import ru.yandex.practicum.filmorate.index.SuggestIndex;
 import ru.yandex.practicum.filmorate.mapper.DirectorMapper;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.DirectorStorage;
@@ -17,6 +21,10 @@ import java.util.List;
 @RequiredArgsConstructor
 public class DirectorService {
     private final DirectorStorage directorStorage;
+    private final DictionaryCache dictionaryCache;
+    private final SearchIndex searchIndex;
+    private final SuggestIndex suggestIndex;
+    private final DirectorFilmography directorFilmography;
 
     public DirectorDto createDirector(DirectorDto directorDto) {
         log.info("Создание режиссёра: {}", directorDto);
@@ -28,6 +36,9 @@ public class DirectorService {
         Director director = new Director();
         director.setName(directorDto.getName());
         Director createdDirector = directorStorage.createDirector(director);
+        dictionaryCache.putDirector(createdDirector);
+        searchIndex.upsertDirector(createdDirector);
+        suggestIndex.upsertDirector(createdDirector);
         DirectorDto result = DirectorMapper.mapToDirectorDto(createdDirector);
         log.info("Режиссёр успешно создан: {}", result);
         return result;
@@ -54,6 +65,9 @@ public class DirectorService {
         director.setId(directorDto.getId());
         director.setName(directorDto.getName());
         Director updatedDirector = directorStorage.updateDirector(director);
+        dictionaryCache.putDirector(updatedDirector);
+        searchIndex.upsertDirector(updatedDirector);
+        suggestIndex.upsertDirector(updatedDirector);
         DirectorDto result = DirectorMapper.mapToDirectorDto(updatedDirector);
         log.info("Режиссёр успешно обновлён: {}", result);
         return result;
@@ -63,6 +77,10 @@ public class DirectorService {
     public void deleteDirector(int id) {
         log.info("Удаление режиссёра с id: {}", id);
         directorStorage.deleteDirector(id);
+        dictionaryCache.evictDirector(id);
+        searchIndex.removeDirector(id);
+        suggestIndex.removeDirector(id);
+        directorFilmography.invalidateDirectors(List.of(id));
         log.info("Режиссёр с id={} успешно удалён", id);
     }
 
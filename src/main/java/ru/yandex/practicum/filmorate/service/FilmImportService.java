@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.cache.DictionaryCache;
+import ru.yandex.practicum.filmorate.dto.FilmImportResult;
+import ru.yandex.practicum.filmorate.dto.FilmRequest;
+import ru.yandex.practicum.filmorate.enumeration.ImportStatus;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.DirectorFilmography;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.index.SearchIndex;
+import ru.yandex.practicum.filmorate.index.SuggestIndex;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.validation.FilmValidator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Массовая загрузка фильмов. Тело читается потоково (NDJSON или JSON-массив),
+ * фильмы проверяются по справочникам в памяти и пишутся пачками, каждая пачка - в своей транзакции.
+ * Результат по каждому фильму выводится строкой NDJSON после фиксации его пачки,
+ * поэтому в памяти одновременно находится не больше одной пачки.
+ */
+@Slf4j
+@Service
+public class FilmImportService {
+    private static final int CHUNK_SIZE = 1000;
+
+    private final FilmStorage filmStorage;
+    private final DictionaryCache dictionaryCache;
+    private final PopularityIndex popularityIndex;
+    private final SearchIndex searchIndex;
+    private final SuggestIndex suggestIndex;
+    private final DirectorFilmography directorFilmography;
+    private final ObjectMapper objectMapper;
+
+    public FilmImportService(@Qualifier("FilmStorageDbImpl") FilmStorage filmStorage, DictionaryCache dictionaryCache,
+                             PopularityIndex popularityIndex, SearchIndex searchIndex, SuggestIndex suggestIndex,
+                             DirectorFilmography directorFilmography, ObjectMapper objectMapper) {
+        this.filmStorage = filmStorage;
+        this.dictionaryCache = dictionaryCache;
+        this.popularityIndex = popularityIndex;
+        this.searchIndex = searchIndex;
+        this.suggestIndex = suggestIndex;
+        this.directorFilmography = directorFilmography;
+        this.objectMapper = objectMapper;
+    }
+
+    public void importFilms(InputStream body, OutputStream out) throws IOException {
+        ObjectReader reader = objectMapper.readerFor(FilmRequest.class);
+        Chunk chunk = new Chunk();
+        int index = 0;
+        int created = 0;
+
+        try (MappingIterator<FilmRequest> items = reader.readValues(body)) {
+            while (items.hasNextValue()) {
+                try {
+                    chunk.add(index, items.nextValue());
+                } catch (JsonParseException e) {
+                    log.warn("Ошибка разбора тела массовой загрузки на элементе {}: {}", index, e.getOriginalMessage());
+                    chunk.reject(index, ImportStatus.FAILED, "Некорректный JSON: " + e.getOriginalMessage());
+                    break;
+                } catch (JsonMappingException e) {
+                    chunk.reject(index, ImportStatus.REJECTED, "Некорректные данные фильма: " + e.getOriginalMessage());
+                }
+                index++;
+                if (chunk.size() >= CHUNK_SIZE) {
+                    created += chunk.flush(out);
+                }
+            }
+        } catch (JsonParseException e) {
+            log.warn("Ошибка разбора тела массовой загрузки на элементе {}: {}", index, e.getOriginalMessage());
+            chunk.reject(index, ImportStatus.FAILED, "Некорректный JSON: " + e.getOriginalMessage());
+        }
+        created += chunk.flush(out);
+        log.info("Массовая загрузка фильмов завершена: обработано {}, создано {}", index, created);
+    }
+
+    /**
+     * Пачка обработанных элементов: результаты в порядке поступления
+     * и прошедшие проверку фильмы, ожидающие записи.
+     */
+    private class Chunk {
+        private final List<FilmImportResult> results = new ArrayList<>(CHUNK_SIZE);
+        private final List<FilmImportResult> pendingResults = new ArrayList<>(CHUNK_SIZE);
+        private final List<Film> pendingFilms = new ArrayList<>(CHUNK_SIZE);
+
+        void add(int index, FilmRequest request) {
+            if (request == null) {
+                reject(index, ImportStatus.REJECTED, "Пустой элемент");
+                return;
+            }
+            try {
+                Film film = FilmMapper.mapToFilm(FilmValidator.validateFilmRequestNew(request, dictionaryCache));
+                FilmImportResult result = new FilmImportResult(index, null, null, null);
+                results.add(result);
+                pendingResults.add(result);
+                pendingFilms.add(film);
+            } catch (ValidationException | NotFoundException e) {
+                reject(index, ImportStatus.REJECTED, e.getMessage());
+            }
+        }
+
+        void reject(int index, ImportStatus status, String error) {
+            results.add(new FilmImportResult(index, status, null, error));
+        }
+
+        int size() {
+            return results.size();
+        }
+
+        /**
+         * Записывает ожидающие фильмы одной транзакцией, выводит результаты пачки и очищает её.
+         * Возвращает количество созданных фильмов.
+         */
+        int flush(OutputStream out) {
+            int created = 0;
+            if (!pendingFilms.isEmpty()) {
+                try {
+                    filmStorage.createFilms(pendingFilms);
+                    for (int i = 0; i < pendingFilms.size(); i++) {
+                        Film film = pendingFilms.get(i);
+                        popularityIndex.upsertFilm(film);
+                        searchIndex.upsertFilm(film);
+                        suggestIndex.upsertFilm(film);
+                        directorFilmography.invalidateDirectors(film.getDirectors());
+                        pendingResults.get(i).setStatus(ImportStatus.CREATED);
+                        pendingResults.get(i).setId(film.getId());
+                    }
+                    created = pendingFilms.size();
+                } catch (RuntimeException e) {
+                    log.error("Не удалось записать пачку из {} фильмов", pendingFilms.size(), e);
+                    for (FilmImportResult result : pendingResults) {
+                        result.setStatus(ImportStatus.FAILED);
+                        result.setError("Ошибка записи пачки: " + e.getMessage());
+                    }
+                }
+            }
+
+            NdjsonWriter.writeLines(objectMapper, out, results);
+
+            results.clear();
+            pendingResults.clear();
+            pendingFilms.clear();
+            return created;
+        }
+    }
+}
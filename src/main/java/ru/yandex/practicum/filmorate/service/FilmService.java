@@ -1,15 +1,28 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.cache.DictionaryCache;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.FilmRequest;
+import ru.yandex.practicum.filmorate.dto.PageDto;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
+import ru.yandex.practicum.filmorate.enumeration.DirectorFilmSort;
 import ru.yandex.practicum.filmorate.enumeration.EventOperation;
 import ru.yandex.practicum.filmorate.enumeration.EventType;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.DirectorFilmography;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.index.SearchIndex;
+import ru.yandex.practicum.filmorate.index.SuggestIndex;
+import ru.yandex.practicum.filmorate.index.UserFeedBuffer;
+import ru.yandex.practicum.filmorate.mapper.CursorMapper;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -17,32 +30,52 @@ import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.*;
 import ru.yandex.practicum.filmorate.validation.FilmValidator;
+import ru.yandex.practicum.filmorate.validation.PageValidator;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class FilmService {
+    private static final int EXPORT_CHUNK_SIZE = 500;
 
     private final FilmStorage filmStorage;
-    private final MpaStorage mpaStorage;
-    private final GenreStorage genreStorage;
-    private final DirectorStorage directorStorage;
     private final UserStorage userStorage;
-
-    private final Map<Integer, Mpa> allMpaRatings;
+    private final DictionaryCache dictionaryCache;
+    private final PopularityIndex popularityIndex;
+    private final LikeIndex likeIndex;
+    private final SearchIndex searchIndex;
+    private final SuggestIndex suggestIndex;
+    private final DirectorFilmography directorFilmography;
+    private final UserFeedBuffer userFeedBuffer;
+    private final UserEventWriter userEventWriter;
+    private final ObjectMapper objectMapper;
+    private final int maxPageSize;
 
     @Autowired
-    public FilmService(@Qualifier("FilmStorageDbImpl") FilmStorage filmStorage, MpaStorage mpaStorage, GenreStorage genreStorage, DirectorStorage directorStorage, @Qualifier("UserStorageDbImpl") UserStorage userStorage) {
+    public FilmService(@Qualifier("FilmStorageDbImpl") FilmStorage filmStorage, @Qualifier("UserStorageDbImpl") UserStorage userStorage,
+                       DictionaryCache dictionaryCache, PopularityIndex popularityIndex, LikeIndex likeIndex, SearchIndex searchIndex,
+                       SuggestIndex suggestIndex, DirectorFilmography directorFilmography,
+                       UserFeedBuffer userFeedBuffer, UserEventWriter userEventWriter, ObjectMapper objectMapper,
+                       @Value("${filmorate.page.max-size:1000}") int maxPageSize) {
         this.filmStorage = filmStorage;
-        this.mpaStorage = mpaStorage;
-        this.genreStorage = genreStorage;
-        this.directorStorage = directorStorage;
         this.userStorage = userStorage;
-
-        this.allMpaRatings = mpaStorage.findAllMpa().stream()
-                .collect(Collectors.toMap(Mpa::getId, m -> m));
+        this.dictionaryCache = dictionaryCache;
+        this.popularityIndex = popularityIndex;
+        this.likeIndex = likeIndex;
+        this.searchIndex = searchIndex;
+        this.suggestIndex = suggestIndex;
+        this.directorFilmography = directorFilmography;
+        this.userFeedBuffer = userFeedBuffer;
+        this.userEventWriter = userEventWriter;
+        this.objectMapper = objectMapper;
+        this.maxPageSize = maxPageSize;
 
         checkGenreCount(6);
         checkMpaCount(5);
@@ -59,61 +92,36 @@ public class FilmService {
     }
 
     private void checkDirectorById(int directorId) {
-        directorStorage.findDirectorById(directorId)
+        dictionaryCache.findDirectorById(directorId)
                 .orElseThrow(() -> new NotFoundException(String.format("Режиссер с id = %d не найден", directorId)));
     }
 
-    private List<FilmDto> mapFilmListToDto(List<Film> films) {
-        if (films == null || films.isEmpty()) {
-            return Collections.emptyList();
+    private FilmDto mapFilmToDto(Film film) {
+        Mpa filmMpa = null;
+        if (film.getMpa() != null && film.getMpa().getId() != null) {
+            filmMpa = dictionaryCache.findMpaById(film.getMpa().getId()).orElse(null);
         }
+        List<Genre> filmGenres = dictionaryCache.findGenresByIds(film.getGenres());
+        List<Director> filmDirectors = dictionaryCache.findDirectorsByIds(film.getDirectors());
 
-        List<Integer> filmIds = films.stream()
-                .map(Film::getId)
-                .filter(Objects::nonNull)
-                .toList();
+        return FilmMapper.mapToFilmDto(film, filmMpa, filmGenres, filmDirectors);
+    }
 
-        if (filmIds.isEmpty()) {
+    List<FilmDto> mapFilmListToDto(List<Film> films) {
+        if (films == null || films.isEmpty()) {
             return Collections.emptyList();
         }
 
-        Map<Integer, List<Genre>> genresMap = genreStorage.getGenresMapByFilmIds(filmIds);
-
-        Map<Integer, List<Director>> directorsMap = directorStorage.getDirectorsMapByFilmIds(filmIds);
-
-
         return films.stream()
-                .map(film -> {
-                    Mpa filmMpa = null;
-                    if (film.getMpa() != null && film.getMpa().getId() != null) {
-                        filmMpa = allMpaRatings.get(film.getMpa().getId());
-                    }
-                    List<Genre> filmGenres = genresMap.getOrDefault(film.getId(), Collections.emptyList());
-                    List<Director> filmDirectors = directorsMap.getOrDefault(film.getId(), Collections.emptyList());
-
-                    return FilmMapper.mapToFilmDto(film, filmMpa, filmGenres, filmDirectors);
-                })
+                .filter(film -> film.getId() != null)
+                .map(this::mapFilmToDto)
                 .collect(Collectors.toList());
     }
 
 
     public FilmDto findFilmById(int filmId) {
         log.info("Поиск фильма по id: {}", filmId);
-        Film film = getFilmById(filmId);
-
-        Mpa filmMpa = null;
-        if (film.getMpa() != null && film.getMpa().getId() != null) {
-            filmMpa = allMpaRatings.get(film.getMpa().getId());
-        }
-
-        List<Integer> genreIds = (film.getGenres() != null) ? new ArrayList<>(film.getGenres()) : Collections.emptyList();
-        List<Genre> filmGenres = genreStorage.findGenresByIds(genreIds);
-
-        List<Integer> directorIds = (film.getDirectors() != null) ? new ArrayList<>(film.getDirectors()) : Collections.emptyList();
-        List<Director> filmDirectors = directorStorage.findDirectorsByIds(directorIds);
-
-
-        return FilmMapper.mapToFilmDto(film, filmMpa, filmGenres, filmDirectors);
+        return mapFilmToDto(getFilmById(filmId));
     }
 
     public List<FilmDto> findAll() {
@@ -123,156 +131,332 @@ public class FilmService {
         return mapFilmListToDto(films);
     }
 
+    public PageDto<FilmDto> findPage(String cursor, Integer size) {
+        log.info("Получение страницы фильмов: cursor = {}, size = {}", cursor, size);
+        int pageSize = PageValidator.validatePageSize(size, maxPageSize);
+        int afterId = cursor == null ? 0 : CursorMapper.mapToKeys(cursor, 1)[0];
+        // Лишняя запись показывает, есть ли следующая страница
+        List<Film> films = filmStorage.findAllFilms(afterId, pageSize + 1);
+
+        String nextCursor = null;
+        if (films.size() > pageSize) {
+            films = films.subList(0, pageSize);
+            nextCursor = CursorMapper.mapToCursor(films.getLast().getId());
+        }
+        return new PageDto<>(mapFilmListToDto(films), nextCursor);
+    }
+
+    /**
+     * Выгружает весь каталог в NDJSON: фильмы читаются курсором и пишутся в поток пачками,
+     * так что в памяти одновременно находится не больше одной пачки.
+     */
+    public void exportFilms(OutputStream out) throws IOException {
+        log.info("Выгрузка всех фильмов");
+        try {
+            filmStorage.forEachFilmChunk(EXPORT_CHUNK_SIZE,
+                    films -> NdjsonWriter.writeLines(objectMapper, out, mapFilmListToDto(films)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     public FilmDto createFilm(FilmRequest filmRequest) {
         log.info("Создание фильма: {}", filmRequest);
-        FilmRequest validatedFilmRequest = FilmValidator.validateFilmRequestNew(filmRequest, mpaStorage, genreStorage, directorStorage);
+        FilmRequest validatedFilmRequest = FilmValidator.validateFilmRequestNew(filmRequest, dictionaryCache);
 
         Film film = FilmMapper.mapToFilm(validatedFilmRequest);
 
         film = filmStorage.createFilm(film);
 
-        return findFilmById(film.getId());
+        Film createdFilm = getFilmById(film.getId());
+        popularityIndex.upsertFilm(createdFilm);
+        searchIndex.upsertFilm(createdFilm);
+        suggestIndex.upsertFilm(createdFilm);
+        directorFilmography.invalidateDirectors(createdFilm.getDirectors());
+        return mapFilmToDto(createdFilm);
     }
 
     public FilmDto updateFilm(int filmId, FilmRequest filmRequest) {
         log.info("Обновление фильма с id {}: {}", filmId, filmRequest);
         Film existingFilm = getFilmById(filmId);
 
-        FilmRequest validatedFilmRequestForUpdate = FilmValidator.validateFilmRequestForUpdate(existingFilm, filmRequest, mpaStorage, genreStorage, directorStorage);
+        FilmRequest validatedFilmRequestForUpdate = FilmValidator.validateFilmRequestForUpdate(existingFilm, filmRequest, dictionaryCache);
 
         Film filmToPersist = FilmMapper.mapToFilm(validatedFilmRequestForUpdate);
         filmToPersist.setId(filmId);
 
         Film filmUpdated = filmStorage.updateFilm(filmToPersist);
 
-        return findFilmById(filmUpdated.getId());
+        Film persistedFilm = getFilmById(filmUpdated.getId());
+        popularityIndex.upsertFilm(persistedFilm);
+        searchIndex.upsertFilm(persistedFilm);
+        suggestIndex.upsertFilm(persistedFilm);
+        directorFilmography.invalidateDirectors(existingFilm.getDirectors());
+        directorFilmography.invalidateDirectors(persistedFilm.getDirectors());
+        return mapFilmToDto(persistedFilm);
     }
 
     public void addLikeToFilm(Integer filmId, Integer userId) {
-        getFilmById(filmId);
-        checkUserById(userId);
         log.info("Пользователь {} ставит лайк фильму {}", userId, filmId);
-        filmStorage.addLikeToFilm(filmId, userId);
-        userStorage.addEvent(userId, EventType.LIKE, EventOperation.ADD, filmId);
+        // Наличие фильма и пользователя проверяется тем же запросом, что ставит лайк
+        if (!filmStorage.addLikeToFilm(filmId, userId)) {
+            return;
+        }
+        popularityIndex.changeLikes(filmId, 1);
+        likeIndex.addLike(userId, filmId);
+        suggestIndex.updateFilmLikes(filmId, popularityIndex.getLikes(filmId));
+        directorFilmography.updateLikes(filmId, popularityIndex.getDirectorIds(filmId));
+        userEventWriter.addEvent(userId, EventType.LIKE, EventOperation.ADD, filmId);
     }
 
     public void removeLikeFromFilm(Integer filmId, Integer userId) {
         log.info("Пользователь {} удаляет лайк с фильма {}", userId, filmId);
-        getFilmById(filmId);
-        checkUserById(userId);
-        filmStorage.removeLikeFromFilm(filmId, userId);
-        userStorage.addEvent(userId, EventType.LIKE, EventOperation.REMOVE, filmId);
+        if (!filmStorage.removeLikeFromFilm(filmId, userId)) {
+            return;
+        }
+        popularityIndex.changeLikes(filmId, -1);
+        likeIndex.removeLike(userId, filmId);
+        suggestIndex.updateFilmLikes(filmId, popularityIndex.getLikes(filmId));
+        directorFilmography.updateLikes(filmId, popularityIndex.getDirectorIds(filmId));
+        userEventWriter.addEvent(userId, EventType.LIKE, EventOperation.REMOVE, filmId);
     }
 
     public List<FilmDto> getPopularFilms(int count, Integer genreId, Integer year) {
         log.info("Получение {} самых популярных фильмов, фильтрация: genreId={}, year={}", count, genreId, year);
 
-        FilmValidator.validateGenreIdForFilter(genreId, genreStorage);
+        FilmValidator.validateGenreIdForFilter(genreId, dictionaryCache);
         FilmValidator.validateYearForFilter(year);
 
-        List<Film> popularFilms = filmStorage.getPopularFilms(count, genreId, year);
+        List<Film> popularFilms = popularityIndex.getTopFilms(count, genreId, year);
 
         return mapFilmListToDto(popularFilms);
     }
 
+    public void rebuildPopularity() {
+        log.info("Пересчет счетчиков лайков и перестроение индекса популярности");
+        popularityIndex.rebuild();
+    }
+
     public List<FilmDto> findCommonFilms(int userId, int friendId) {
         log.info("Поиск общих фильмов для пользователей {} и {}", userId, friendId);
 
         checkUserById(userId);
         checkUserById(friendId);
 
-        List<Film> commonFilms = filmStorage.findCommonFilms(userId, friendId);
+        // Пересечение лайков считается по битовым картам, порядок - по индексу популярности,
+        // из БД читаются только найденные фильмы
+        List<Integer> commonFilmIds = popularityIndex.sortByPopularity(likeIndex.findCommonFilmIds(userId, friendId));
 
-        return mapFilmListToDto(commonFilms);
+        return getFilmsInOrder(commonFilmIds);
     }
 
     public void checkGenreCount(Integer count) {
-        log.info("Проверка количества жанров в БД. Ожидается: {}", count);
-        if (allMpaRatings.size() != count) {
-            log.warn("Количество MPA в памяти ({}) не совпадает с ожидаемым ({})", allMpaRatings.size(), count);
-            if (!genreStorage.checkGenreCount(count)) {
-                throw new NotFoundException("В справочнике жанров неверное количество жанров");
-            }
-        } else {
-            log.info("Проверка количества жанров пройдена успешно (по памяти).");
-            return;
+        log.info("Проверка количества жанров в справочнике. Ожидается: {}", count);
+        if (dictionaryCache.findAllGenres().size() != count) {
+            throw new NotFoundException("В справочнике жанров неверное количество жанров");
         }
-        log.info("Проверка количества жанров пройдена успешно (по БД).");
+        log.info("Проверка количества жанров пройдена успешно.");
     }
 
     public void checkMpaCount(Integer count) {
-        log.info("Проверка количества рейтингов MPA в БД. Ожидается: {}", count);
-        if (allMpaRatings.size() != count) {
-            log.warn("Количество MPA в памяти ({}) не совпадает с ожидаемым ({})", allMpaRatings.size(), count);
-            if (!mpaStorage.checkMpaCount(count)) {
-                throw new NotFoundException("В справочнике возрастных рейтингов неверное количество рейтингов");
-            }
-        } else {
-            log.info("Проверка количества рейтингов MPA пройдена успешно (по памяти).");
-            return;
+        log.info("Проверка количества рейтингов MPA в справочнике. Ожидается: {}", count);
+        if (dictionaryCache.findAllMpa().size() != count) {
+            throw new NotFoundException("В справочнике возрастных рейтингов неверное количество рейтингов");
         }
-        log.info("Проверка количества рейтингов MPA пройдена успешно (по БД).");
+        log.info("Проверка количества рейтингов MPA пройдена успешно.");
     }
 
 
     public List<FilmDto> getFilmsByDirectorSorted(int directorId, String sortBy) {
         log.info("Получение фильмов режиссера {} с сортировкой {}", directorId, sortBy);
+        DirectorFilmSort sort = DirectorFilmSort.of(sortBy);
         checkDirectorById(directorId);
 
-        List<Film> films = filmStorage.getFilmsByDirector(directorId);
+        List<Film> films = findFilmsByDirector(directorId, sort, null, Integer.MAX_VALUE);
+        log.info("Возвращено {} фильмов для режиссера {} отсортированных по {}", films.size(), directorId, sortBy);
 
-        if (films.isEmpty()) {
-            log.info("Не найдено фильмов для режиссера {} с сортировкой {}", directorId, sortBy);
-            return Collections.emptyList();
-        }
+        return mapFilmListToDto(films);
+    }
 
-        if ("year".equalsIgnoreCase(sortBy)) {
-            films.sort(Comparator.comparing(Film::getReleaseDate));
-        } else if ("likes".equalsIgnoreCase(sortBy)) {
-            films.sort((f1, f2) -> {
-                int likes2 = filmStorage.countLikes(f2.getId());
-                int likes1 = filmStorage.countLikes(f1.getId());
-                return Integer.compare(likes2, likes1);
-            });
-        } else {
-            throw new IllegalArgumentException("Неподдерживаемый параметр сортировки: " + sortBy);
+    /**
+     * Страница фильмов режиссера. Курсор хранит id и ключ сортировки (лайки, дату выхода или название)
+     * последнего фильма страницы, поэтому вставки и удаления не сдвигают следующую страницу.
+     */
+    public PageDto<FilmDto> findPageByDirector(int directorId, String sortBy, String cursor, Integer size) {
+        log.info("Получение страницы фильмов режиссера {} с сортировкой {}: cursor = {}, size = {}",
+                directorId, sortBy, cursor, size);
+        DirectorFilmSort sort = DirectorFilmSort.of(sortBy);
+        int pageSize = PageValidator.validatePageSize(size, maxPageSize);
+        Film after = cursor == null ? null : mapToDirectorFilmKey(cursor, sort);
+        checkDirectorById(directorId);
+
+        // Лишняя запись показывает, есть ли следующая страница
+        List<Film> films = findFilmsByDirector(directorId, sort, after, pageSize + 1);
+
+        String nextCursor = null;
+        if (films.size() > pageSize) {
+            films = films.subList(0, pageSize);
+            nextCursor = mapToDirectorCursor(films.get(pageSize - 1), sort);
         }
-        log.info("Возвращено {} фильмов для режиссера {} отсортированных по {}", films.size(), directorId, sortBy);
+        return new PageDto<>(mapFilmListToDto(films), nextCursor);
+    }
 
-        return mapFilmListToDto(films);
+    private List<Film> findFilmsByDirector(int directorId, DirectorFilmSort sort, Film after, int count) {
+        return directorFilmography.findPage(directorId, sort, after, count)
+                .orElseGet(() -> filmStorage.getFilmsByDirector(directorId, sort, after, count));
     }
 
+    private static String mapToDirectorCursor(Film film, DirectorFilmSort sort) {
+        String key = switch (sort) {
+            case LIKES -> String.valueOf(film.getLikesCount());
+            case YEAR -> film.getReleaseDate().toString();
+            case TITLE -> film.getName();
+        };
+        return CursorMapper.mapToCursor(film.getId(), key);
+    }
+
+    /**
+     * Фильм-ключ с id и полем сортировки из курсора.
+     */
+    private static Film mapToDirectorFilmKey(String cursor, DirectorFilmSort sort) {
+        String[] keys = CursorMapper.mapToStringKeys(cursor, 2);
+        Film key = new Film();
+        try {
+            key.setId(Integer.parseInt(keys[0]));
+            switch (sort) {
+                case LIKES -> key.setLikesCount(Integer.parseInt(keys[1]));
+                case YEAR -> key.setReleaseDate(LocalDate.parse(keys[1]));
+                case TITLE -> key.setName(keys[1]);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new ValidationException("Некорректный курсор страницы: " + cursor);
+        }
+        return key;
+    }
+
+    /**
+     * Все результаты поиска в порядке популярности.
+     */
     public List<FilmDto> searchFilms(String query, List<String> by) {
         log.info("Поиск фильмов по запросу '{}' с параметрами by={}", query, by);
+        List<Integer> filmIds = findSearchMatches(query, by).stream()
+                .map(SearchIndex.Match::filmId)
+                .toList();
+        return getFilmsInOrder(filmIds);
+    }
+
+    /**
+     * Страница результатов поиска в порядке популярности. Курсор хранит число лайков и id последнего фильма
+     * страницы - те же ключи, по которым индекс упорядочил результаты; из БД читаются только фильмы страницы.
+     */
+    public PageDto<FilmDto> searchFilms(String query, List<String> by, String cursor, Integer size) {
+        log.info("Поиск фильмов по запросу '{}' с параметрами by={}, cursor={}, size={}", query, by, cursor, size);
+        int pageSize = PageValidator.validatePageSize(size, maxPageSize);
+        int[] afterKeys = cursor == null ? null : CursorMapper.mapToKeys(cursor, 2);
+
+        // Лишняя запись показывает, есть ли следующая страница
+        List<SearchIndex.Match> page = new ArrayList<>(pageSize + 1);
+        for (SearchIndex.Match match : findSearchMatches(query, by)) {
+            if (page.size() > pageSize) {
+                break;
+            }
+            if (afterKeys == null || match.likes() < afterKeys[0]
+                    || (match.likes() == afterKeys[0] && match.filmId() > afterKeys[1])) {
+                page.add(match);
+            }
+        }
+
+        String nextCursor = null;
+        if (page.size() > pageSize) {
+            page = page.subList(0, pageSize);
+            nextCursor = CursorMapper.mapToCursor(page.getLast().likes(), page.getLast().filmId());
+        }
+        return new PageDto<>(getFilmsInOrder(page.stream().map(SearchIndex.Match::filmId).toList()), nextCursor);
+    }
 
+    private List<SearchIndex.Match> findSearchMatches(String query, List<String> by) {
         boolean searchByTitle = by != null && by.contains("title");
         boolean searchByDirector = by != null && by.contains("director");
 
         if (!searchByTitle && !searchByDirector) {
             throw new ValidationException("Параметр 'by' должен содержать 'title' и/или 'director'");
         }
+        return searchIndex.findFilms(query, searchByTitle, searchByDirector);
+    }
 
-        List<Film> films = filmStorage.searchFilms(query.toLowerCase(), searchByTitle, searchByDirector);
+    private List<FilmDto> getFilmsInOrder(List<Integer> filmIds) {
+        if (filmIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Integer, Film> filmsById = filmStorage.findFilmsByIds(filmIds).stream()
+                .collect(Collectors.toMap(Film::getId, film -> film));
+        List<Film> films = filmIds.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList();
 
         return mapFilmListToDto(films);
     }
 
+    public List<SuggestionDto> suggest(String query, int limit) {
+        log.debug("Подсказки для запроса '{}', не более {}", query, limit);
+        return suggestIndex.suggest(query, limit).stream()
+                .map(suggestion -> new SuggestionDto(suggestion.type(), suggestion.id(), suggestion.text()))
+                .toList();
+    }
+
     public void removeFilm(int filmId) {
         log.info("Удаление фильма с id: {}", filmId);
-        getFilmById(filmId);
+        Film film = getFilmById(filmId);
+        // События о фильме удаляются вместе с ним, поэтому из очереди они в БД уже не пишутся
+        Set<Integer> reviewIds = Set.copyOf(filmStorage.findReviewIds(filmId));
+        userEventWriter.discard(event -> event.getEventType() == EventType.LIKE && event.getEntityId() == filmId
+                || event.getEventType() == EventType.REVIEW && reviewIds.contains(event.getEntityId()));
+        // Ленты с событиями о фильме ищутся до удаления событий
+        Set<Integer> feedUserIds = filmStorage.findEventUserIds(filmId);
         filmStorage.deleteFilm(filmId);
+        popularityIndex.removeFilm(filmId);
+        likeIndex.removeFilm(filmId);
+        searchIndex.removeFilm(filmId);
+        suggestIndex.removeFilm(filmId);
+        directorFilmography.invalidateDirectors(film.getDirectors());
+        feedUserIds.forEach(userFeedBuffer::removeUser);
         log.info("Фильм с id = {} удален", filmId);
     }
 
 
-    public Set<Integer> getFilmLikesByUserId(Integer userId) {
-        log.debug("Получение списка лайков для пользователя с ID {} (делегирование в storage)", userId);
-        return filmStorage.findFilmLikesByUserId(userId);
+    /**
+     * Убирает из индексов лайки удалённого пользователя: в БД они удалены вместе с ним.
+     */
+    public void removeUserLikes(int userId) {
+        List<Integer> filmIds = likeIndex.removeUser(userId);
+        filmIds.forEach(this::removeLikeFromIndexes);
+        log.debug("Из индексов удалено {} лайков пользователя {}", filmIds.size(), userId);
+    }
+
+    /**
+     * Убирает из индексов лайки пользователя, уже удалённые из БД пачкой при фоновом удалении.
+     */
+    public void removeUserLikes(int userId, Collection<Integer> filmIds) {
+        int removed = 0;
+        for (Integer filmId : filmIds) {
+            if (likeIndex.removeLike(userId, filmId)) {
+                removeLikeFromIndexes(filmId);
+                removed++;
+            }
+        }
+        log.debug("Из индексов удалено {} лайков пользователя {} из пачки", removed, userId);
+    }
+
+    private void removeLikeFromIndexes(int filmId) {
+        popularityIndex.changeLikes(filmId, -1);
+        suggestIndex.updateFilmLikes(filmId, popularityIndex.getLikes(filmId));
+        directorFilmography.updateLikes(filmId, popularityIndex.getDirectorIds(filmId));
     }
 
-    public Map<Integer, Set<Integer>> getAllUsersLikes() {
-        log.debug("Получение всех лайков всех пользователей (делегирование в storage)");
-        return filmStorage.findAllUsersLikes();
+    public List<FilmDto> getRecommendedFilms(Integer userId) {
+        log.debug("Получение рекомендаций для пользователя с ID {} по индексу лайков", userId);
+        return getFilmsByIds(likeIndex.findRecommendedFilmIds(userId));
     }
 
     public List<FilmDto> getFilmsByIds(List<Integer> filmIds) {
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Запись объектов в формате NDJSON: один JSON-документ на строку, поток сбрасывается после каждой пачки.
+ */
+final class NdjsonWriter {
+    private static final byte[] LINE_SEPARATOR = {'\n'};
+
+    private NdjsonWriter() {
+    }
+
+    static void writeLines(ObjectMapper objectMapper, OutputStream out, List<?> values) {
+        try {
+            for (Object value : values) {
+                out.write(objectMapper.writeValueAsBytes(value));
+                out.write(LINE_SEPARATOR);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
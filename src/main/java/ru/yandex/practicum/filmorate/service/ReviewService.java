@@ -2,37 +2,39 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.PageDto;
 import ru.yandex.practicum.filmorate.dto.ReviewDto;
 import ru.yandex.practicum.filmorate.dto.ReviewRequest;
 import ru.yandex.practicum.filmorate.enumeration.EventOperation;
 import ru.yandex.practicum.filmorate.enumeration.EventType;
+import ru.yandex.practicum.filmorate.enumeration.ReviewRating;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.mapper.CursorMapper;
 import ru.yandex.practicum.filmorate.mapper.ReviewMapper;
 import ru.yandex.practicum.filmorate.model.Review;
-import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
-import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.validation.PageValidator;
 import ru.yandex.practicum.filmorate.validation.ReviewValidator;
 
 import java.util.List;
-import java.util.Optional;
 
 @Slf4j
 @Service
 public class ReviewService {
 
     private final ReviewStorage reviewStorage;
-    private final UserStorage userStorage;
-    private final FilmStorage filmStorage;
+    private final UserEventWriter userEventWriter;
+    private final int maxPageSize;
 
     public ReviewService(@Qualifier("ReviewStorageDbImpl") ReviewStorage reviewStorage,
-                         @Qualifier("UserStorageDbImpl") UserStorage userStorage,
-                         @Qualifier("FilmStorageDbImpl") FilmStorage filmStorage) {
+                         UserEventWriter userEventWriter,
+                         @Value("${filmorate.page.max-size:1000}") int maxPageSize) {
         this.reviewStorage = reviewStorage;
-        this.userStorage = userStorage;
-        this.filmStorage = filmStorage;
+        this.userEventWriter = userEventWriter;
+        this.maxPageSize = maxPageSize;
     }
 
     private Review getReviewOrThrow(int reviewId) {
@@ -46,30 +48,42 @@ public class ReviewService {
         return ReviewMapper.mapToReviewDto(review);
     }
 
-    public List<ReviewDto> findAll(Integer filmId, Integer count) {
-        log.info("Получение списка отзывов. filmId: {}, count: {}", filmId, count);
+    /**
+     * Страница отзывов в порядке полезности. Курсор хранит полезность и id последнего отзыва страницы;
+     * выдача не является снимком: оценки, поставленные между страницами, сдвигают отзывы относительно курсора.
+     */
+    public PageDto<ReviewDto> findAll(Integer filmId, Integer count, String cursor) {
+        log.info("Получение списка отзывов. filmId: {}, count: {}, cursor: {}", filmId, count, cursor);
+        int pageSize = PageValidator.validatePageSize(count, maxPageSize);
+        // Лишняя запись показывает, есть ли следующая страница
         List<Review> reviews;
-        if (filmId != null) {
-            reviews = reviewStorage.findAllReviews(filmId, count);
+        if (cursor != null) {
+            int[] keys = CursorMapper.mapToKeys(cursor, 2);
+            reviews = reviewStorage.findAllReviews(filmId, keys[0], keys[1], pageSize + 1);
+        } else if (filmId != null) {
+            reviews = reviewStorage.findAllReviews(filmId, pageSize + 1);
         } else {
-            reviews = reviewStorage.findAllReviews(count);
+            reviews = reviewStorage.findAllReviews(pageSize + 1);
         }
-        return reviews.stream()
+
+        String nextCursor = null;
+        if (reviews.size() > pageSize) {
+            reviews = reviews.subList(0, pageSize);
+            Review last = reviews.getLast();
+            nextCursor = CursorMapper.mapToCursor(last.getUseful(), last.getId());
+        }
+        return new PageDto<>(reviews.stream()
                 .map(ReviewMapper::mapToReviewDto)
-                .toList();
+                .toList(), nextCursor);
     }
 
     public ReviewDto createReview(ReviewRequest reviewRequest) {
         log.info("Создание отзыва: {}", reviewRequest);
-        ReviewValidator.validateReviewForCreate(reviewRequest, userStorage, filmStorage);
-        for (Review value : reviewStorage.findAllReviews()) {
-            if (reviewRequest.getUserId().equals(value.getUserId()) && reviewRequest.getFilmId().equals(value.getFilmId())) {
-                throw new ValidationException(String.format("Пользователь с id: %s уже оставлял отзыв на фильм с id: %s", reviewRequest.getUserId(), reviewRequest.getFilmId()));
-            }
-        }
+        ReviewValidator.validateReviewForCreate(reviewRequest);
+        // Наличие автора и фильма и повторный отзыв проверяются самой вставкой
         Review review = ReviewMapper.mapToReview(reviewRequest);
         review = reviewStorage.createReview(review);
-        userStorage.addEvent(reviewRequest.getUserId(), EventType.REVIEW, EventOperation.ADD, review.getId());
+        userEventWriter.addEvent(reviewRequest.getUserId(), EventType.REVIEW, EventOperation.ADD, review.getId());
         log.info("Отзыв с id = {} создан", review.getId());
 
         return ReviewMapper.mapToReviewDto(review);
@@ -83,7 +97,7 @@ public class ReviewService {
         Review reviewToPersist = ReviewMapper.mapToReview(validatedReviewRequestForUpdate);
         reviewToPersist.setId(reviewId);
         Review reviewUpdated = reviewStorage.updateReview(reviewToPersist);
-        userStorage.addEvent(reviewUpdated.getUserId(), EventType.REVIEW, EventOperation.UPDATE, reviewUpdated.getId());
+        userEventWriter.addEvent(reviewUpdated.getUserId(), EventType.REVIEW, EventOperation.UPDATE, reviewUpdated.getId());
         log.info("Отзыв с id = {} обновлен", reviewId);
 
         return ReviewMapper.mapToReviewDto(reviewUpdated);
@@ -93,63 +107,44 @@ public class ReviewService {
         log.info("Удаление отзыва с id: {}", reviewId);
         Review reviewForRemove = getReviewOrThrow(reviewId);
         reviewStorage.removeReview(reviewId);
-        userStorage.addEvent(reviewForRemove.getUserId(), EventType.REVIEW, EventOperation.REMOVE, reviewForRemove.getId());
+        userEventWriter.addEvent(reviewForRemove.getUserId(), EventType.REVIEW, EventOperation.REMOVE, reviewForRemove.getId());
         log.info("Отзыв с id = {} удален", reviewId);
     }
 
     public void addLike(int reviewId, int userId) {
         log.info("Пользователь {} ставит лайк отзыву {}", userId, reviewId);
-        getReviewOrThrow(reviewId);
-        ReviewValidator.validateNewRating(true, reviewId, userId, reviewStorage, userStorage);
-
-        Optional<Boolean> userReviewRating = reviewStorage.getUserReviewRating(reviewId, userId);
-
-        if (userReviewRating.isPresent() && !userReviewRating.get()) {
-            reviewStorage.removeDislike(reviewId, userId);
+        // Дизлайк заменяется лайком в той же транзакции
+        if (reviewStorage.changeRating(reviewId, userId, null, ReviewRating.LIKE) == ReviewRating.LIKE) {
+            throw new ValidationException(String.format("Пользователь с id: %s уже поставил оценку isLike: %s отзыву с id: %s", userId, true, reviewId));
         }
-        reviewStorage.addLike(reviewId, userId);
         log.info("Лайк пользователя {} добавлен к отзыву {}", userId, reviewId);
     }
 
     public void removeLike(int reviewId, int userId) {
         log.info("Пользователь {} удаляет лайк с отзыва {}", userId, reviewId);
-        getReviewOrThrow(reviewId);
-
-        Optional<Boolean> userReviewRating = reviewStorage.getUserReviewRating(reviewId, userId);
-
-        if (userReviewRating.isEmpty()) {
+        ReviewRating previous = reviewStorage.changeRating(reviewId, userId, ReviewRating.LIKE, ReviewRating.NONE);
+        if (previous == ReviewRating.NONE) {
             throw new NotFoundException(String.format("Не найдена оценка пользователя с id: %s на отзыв с id: %s", userId, reviewId));
         }
-        if (userReviewRating.get()) {
-            reviewStorage.removeLike(reviewId, userId);
-            log.info("Лайк пользователя {} удален с отзыва {}", userId, reviewId);
-        } else {
+        if (previous != ReviewRating.LIKE) {
             throw new NotFoundException(String.format("Пользователь с id: %s не ставил лайк на отзыв с id: %s", userId, reviewId));
         }
+        log.info("Лайк пользователя {} удален с отзыва {}", userId, reviewId);
     }
 
     public void addDislike(int reviewId, int userId) {
         log.info("Пользователь {} ставит дизлайк отзыву {}", userId, reviewId);
-        getReviewOrThrow(reviewId);
-        ReviewValidator.validateNewRating(false, reviewId, userId, reviewStorage, userStorage);
-
-        Optional<Boolean> userReviewRating = reviewStorage.getUserReviewRating(reviewId, userId);
-        if (userReviewRating.isPresent() && userReviewRating.get()) {
-            reviewStorage.removeLike(reviewId, userId);
+        if (reviewStorage.changeRating(reviewId, userId, null, ReviewRating.DISLIKE) == ReviewRating.DISLIKE) {
+            throw new ValidationException(String.format("Пользователь с id: %s уже поставил оценку isLike: %s отзыву с id: %s", userId, false, reviewId));
         }
-        reviewStorage.addDislike(reviewId, userId);
         log.info("Дизлайк пользователя {} добавлен к отзыву {}", userId, reviewId);
     }
 
     public void removeDislike(int reviewId, int userId) {
         log.info("Пользователь {} удаляет дизлайк с отзыва {}", userId, reviewId);
-        getReviewOrThrow(reviewId);
-
-        Optional<Boolean> userReviewRating = reviewStorage.getUserReviewRating(reviewId, userId);
-        if (userReviewRating.isEmpty() || userReviewRating.get()) {
+        if (reviewStorage.changeRating(reviewId, userId, ReviewRating.DISLIKE, ReviewRating.NONE) != ReviewRating.DISLIKE) {
             throw new NotFoundException(String.format("Не найден дизлайк пользователя с id: %s на отзыв с id: %s", userId, reviewId));
         }
-        reviewStorage.removeDislike(reviewId, userId);
         log.info("Дизлайк пользователя {} удален с отзыва {}", userId, reviewId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,310 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.enumeration.EventOperation;
+import ru.yandex.practicum.filmorate.enumeration.EventType;
+import ru.yandex.practicum.filmorate.index.UserFeedBuffer;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Отложенная запись событий ленты. addEvent только ставит событие в очередь, фоновый поток
+ * пишет очередь в БД пачками - по заполнении пачки или по таймеру.
+ * Если очередь переполнена или запись в БД не удалась, события дописываются в локальный файл
+ * и переносятся в БД при следующей успешной записи. При остановке приложения очередь дописывается.
+ * Записанные события попадают в буферы ленты UserFeedBuffer, а до записи доступны через findPending,
+ * чтобы пользователь сразу видел в ленте свои действия.
+ */
+@Slf4j
+@Component
+public class UserEventWriter implements MeterBinder {
+    private static final String METRIC_NAME = "filmorate.events";
+
+    private final UserStorage userStorage;
+    private final UserFeedBuffer userFeedBuffer;
+    private final ObjectMapper objectMapper;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Path spoolFile;
+
+    private final Queue<UserEvent> queue = new ConcurrentLinkedQueue<>();
+    // Размер очереди: у ConcurrentLinkedQueue size() обходит все элементы
+    private final AtomicInteger queued = new AtomicInteger();
+    // События из очереди и из записываемой пачки по пользователям. Списки неизменяемые и заменяются
+    // целиком внутри compute, поэтому читаются без блокировок
+    private final Map<Integer, List<UserEvent>> pendingByUser = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean spoolPending = new AtomicBoolean();
+    private final AtomicLong spooled = new AtomicLong();
+    private final Object flushLock = new Object();
+    private final Object spoolLock = new Object();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-event-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Timer flushTimer;
+
+    public UserEventWriter(@Qualifier("UserStorageDbImpl") UserStorage userStorage, UserFeedBuffer userFeedBuffer,
+                           ObjectMapper objectMapper,
+                           @Value("${filmorate.events.queue-capacity:10000}") int capacity,
+                           @Value("${filmorate.events.batch-size:500}") int batchSize,
+                           @Value("${filmorate.events.flush-interval-ms:200}") long flushIntervalMs,
+                           @Value("${filmorate.events.spool-file:./db/user-events.spool}") String spoolFile) {
+        this.userStorage = userStorage;
+        this.userFeedBuffer = userFeedBuffer;
+        this.objectMapper = objectMapper;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.spoolFile = Path.of(spoolFile);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (Files.exists(spoolFile)) {
+            log.info("Найден файл неперенесённых событий {}, события будут перенесены в БД", spoolFile);
+            spoolPending.set(true);
+        }
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+        log.info("Запись событий остановлена, в файле неперенесённых событий: {}", spooled.get());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(METRIC_NAME + ".queue.depth", queued, AtomicInteger::get)
+                .description("События в очереди на запись в БД")
+                .register(registry);
+        Gauge.builder(METRIC_NAME + ".spool.size", spooled, AtomicLong::get)
+                .description("События в локальном файле, ожидающие переноса в БД")
+                .register(registry);
+        flushTimer = Timer.builder(METRIC_NAME + ".flush")
+                .description("Запись пачки событий в БД")
+                .register(registry);
+    }
+
+    public void addEvent(Integer userId, EventType eventType, EventOperation operation, Integer entityId) {
+        UserEvent event = new UserEvent();
+        event.setTimestamp(System.currentTimeMillis());
+        event.setUserId(userId);
+        event.setEventType(eventType);
+        event.setOperation(operation);
+        event.setEntityId(entityId);
+
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            log.warn("Очередь событий переполнена, событие пользователя {} записано в файл", userId);
+            spool(List.of(event));
+            return;
+        }
+        // До постановки в очередь: иначе событие могло бы быть записано и убрано из pendingByUser раньше,
+        // чем добавлено в него
+        pendingByUser.compute(userId, (id, events) -> append(events, event));
+        queue.offer(event);
+        if (queued.get() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * События пользователя, поставленные в очередь и ещё не записанные в БД, в порядке добавления.
+     * eventId у события появляется при записи в БД, поэтому часть событий может быть уже записана.
+     */
+    public List<UserEvent> findPending(int userId) {
+        return pendingByUser.getOrDefault(userId, List.of());
+    }
+
+    /**
+     * Убирает из очереди события, подходящие под filter, дождавшись записи текущей пачки. Вызывается перед
+     * удалением фильма или пользователя: события о нём не должны попасть в БД после удаления.
+     */
+    public void discard(Predicate<UserEvent> filter) {
+        synchronized (flushLock) {
+            List<UserEvent> discarded = new ArrayList<>();
+            queue.removeIf(event -> filter.test(event) && discarded.add(event));
+            queued.addAndGet(-discarded.size());
+            removePending(discarded);
+            log.debug("Из очереди убрано событий: {}", discarded.size());
+        }
+    }
+
+    /**
+     * Пишет в БД все события, поставленные в очередь до вызова.
+     */
+    public void flush() {
+        if (queued.get() == 0 && !spoolPending.get()) {
+            return;
+        }
+        synchronized (flushLock) {
+            flushScheduled.set(false);
+            if (spoolPending.get()) {
+                replaySpool();
+            }
+            List<UserEvent> batch = new ArrayList<>(batchSize);
+            UserEvent event;
+            while ((event = queue.poll()) != null) {
+                batch.add(event);
+                if (batch.size() >= batchSize) {
+                    writeBatch(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            writeBatch(batch);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка фоновой записи событий", e);
+        }
+    }
+
+    private void writeBatch(List<UserEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        queued.addAndGet(-batch.size());
+        long start = System.nanoTime();
+        try {
+            userStorage.addEvents(batch);
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать в БД пачку из {} событий, события записаны в файл", batch.size(), e);
+            spool(batch);
+            removePending(batch);
+            return;
+        }
+        Timer timer = flushTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        batch.forEach(userFeedBuffer::append);
+        removePending(batch);
+    }
+
+    private void removePending(List<UserEvent> batch) {
+        Map<Integer, Set<UserEvent>> writtenByUser = new HashMap<>();
+        for (UserEvent event : batch) {
+            writtenByUser.computeIfAbsent(event.getUserId(), id -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                    .add(event);
+        }
+        writtenByUser.forEach((userId, written) -> pendingByUser.computeIfPresent(userId, (id, events) -> {
+            List<UserEvent> left = events.stream().filter(event -> !written.contains(event)).toList();
+            return left.isEmpty() ? null : left;
+        }));
+    }
+
+    private static List<UserEvent> append(List<UserEvent> events, UserEvent event) {
+        if (events == null) {
+            return List.of(event);
+        }
+        List<UserEvent> result = new ArrayList<>(events.size() + 1);
+        result.addAll(events);
+        result.add(event);
+        return Collections.unmodifiableList(result);
+    }
+
+    private void spool(List<UserEvent> events) {
+        synchronized (spoolLock) {
+            try {
+                Path directory = spoolFile.toAbsolutePath().getParent();
+                if (directory != null) {
+                    Files.createDirectories(directory);
+                }
+                try (BufferedWriter writer = Files.newBufferedWriter(spoolFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (UserEvent event : events) {
+                        writer.write(objectMapper.writeValueAsString(event));
+                        writer.newLine();
+                    }
+                }
+                spooled.addAndGet(events.size());
+                spoolPending.set(true);
+            } catch (IOException e) {
+                log.error("Не удалось записать {} событий в файл {}, события потеряны", events.size(), spoolFile, e);
+            }
+        }
+    }
+
+    /**
+     * Переносит события из файла в БД и удаляет файл. Если БД по-прежнему недоступна, файл остаётся.
+     */
+    private void replaySpool() {
+        synchronized (spoolLock) {
+            if (!Files.exists(spoolFile)) {
+                spoolPending.set(false);
+                return;
+            }
+            List<UserEvent> events = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(spoolFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        events.add(objectMapper.readValue(line, UserEvent.class));
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Не удалось прочитать файл неперенесённых событий {}", spoolFile, e);
+                return;
+            }
+            try {
+                // Одной транзакцией, чтобы повторный перенос после ошибки не задвоил события
+                userStorage.addEvents(events);
+                Files.delete(spoolFile);
+            } catch (RuntimeException | IOException e) {
+                log.warn("Не удалось перенести события из файла {} в БД: {}", spoolFile, e.getMessage());
+                return;
+            }
+            spoolPending.set(false);
+            spooled.set(0);
+            log.info("Из файла {} в БД перенесено событий: {}", spoolFile, events.size());
+        }
+        // Перенесённые события старше уже буферизованных, буферы ленты загрузятся заново
+        userFeedBuffer.rebuild();
+    }
+}
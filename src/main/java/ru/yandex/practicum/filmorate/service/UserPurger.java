@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Фоновое удаление пользователей с большой историей. История удаляется пачками по batchSize строк,
+ * каждая пачка - отдельная короткая транзакция, поэтому удаление не держит долгих блокировок.
+ * Последним шагом пользователь удаляется целиком вместе с тем, что успел добавить во время удаления.
+ */
+@Slf4j
+@Component
+public class UserPurger {
+    private final UserStorage userStorage;
+    private final int batchSize;
+
+    private final Map<Integer, CompletableFuture<Void>> purgesByUser = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-purger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public UserPurger(@Qualifier("UserStorageDbImpl") UserStorage userStorage,
+                      @Value("${filmorate.purge.batch-size:1000}") int batchSize) {
+        this.userStorage = userStorage;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Прерывает текущее удаление: уже удалённые пачки остаются удалёнными, пользователь - нет.
+     */
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Запускает удаление истории пользователя и затем finalStep. После каждой пачки лайков в likesPurged
+     * передаются id фильмов, с которых они сняты, чтобы индексы не расходились с БД до конца удаления.
+     * Повторный вызов для пользователя, удаление которого ещё идёт, возвращает уже запущенное удаление.
+     */
+    public CompletableFuture<Void> purge(int userId, Consumer<List<Integer>> likesPurged, Runnable finalStep) {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> running = purgesByUser.putIfAbsent(userId, created);
+        if (running != null) {
+            return running;
+        }
+        // Удаление запускается только после регистрации: если оно завершится сразу, remove найдёт ключ
+        CompletableFuture<Void> purge;
+        try {
+            purge = CompletableFuture.runAsync(() -> purgeHistory(userId, likesPurged), executor).thenRun(finalStep);
+        } catch (RejectedExecutionException e) {
+            purge = CompletableFuture.failedFuture(e);
+        }
+        purge.whenComplete((result, e) -> {
+            purgesByUser.remove(userId, created);
+            if (e != null) {
+                log.error("Не удалось удалить пользователя {}", userId, e);
+                created.completeExceptionally(e);
+            } else {
+                created.complete(result);
+            }
+        });
+        return created;
+    }
+
+    private void purgeHistory(int userId, Consumer<List<Integer>> likesPurged) {
+        log.info("Удаление истории пользователя {} пачками по {} строк", userId, batchSize);
+        long total = 0;
+        List<Integer> filmIds;
+        do {
+            checkInterrupted(userId);
+            filmIds = userStorage.purgeUserLikes(userId, batchSize);
+            likesPurged.accept(filmIds);
+            total += filmIds.size();
+        } while (!filmIds.isEmpty());
+        int deleted;
+        do {
+            checkInterrupted(userId);
+            deleted = userStorage.purgeUserHistory(userId, batchSize);
+            total += deleted;
+        } while (deleted > 0);
+        log.info("История пользователя {} удалена, строк: {}", userId, total);
+    }
+
+    private void checkInterrupted(int userId) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new IllegalStateException(String.format("Удаление пользователя %d прервано", userId));
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dto.*;
 import ru.yandex.practicum.filmorate.enumeration.EventOperation;
@@ -10,25 +12,51 @@ import ru.yandex.practicum.filmorate.enumeration.EventType;
 import ru.yandex.practicum.filmorate.exception.NonCriticalException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.index.UserFeedBuffer;
+import ru.yandex.practicum.filmorate.mapper.CursorMapper;
 import ru.yandex.practicum.filmorate.mapper.UserEventMapper;
 import ru.yandex.practicum.filmorate.mapper.UserMapper;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserEvent;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.validation.PageValidator;
 import ru.yandex.practicum.filmorate.validation.UserValidator;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class UserService {
+    private static final int EXPORT_CHUNK_SIZE = 1000;
 
     private final UserStorage userStorage;
     private final FilmService filmService;
+    private final FriendshipGraph friendshipGraph;
+    private final UserFeedBuffer userFeedBuffer;
+    private final UserEventWriter userEventWriter;
+    private final UserPurger userPurger;
+    private final ObjectMapper objectMapper;
+    private final int maxPageSize;
 
     @Autowired
-    public UserService(@Qualifier("UserStorageDbImpl") UserStorage userStorage, FilmService filmService) {
+    public UserService(@Qualifier("UserStorageDbImpl") UserStorage userStorage, FilmService filmService,
+                       FriendshipGraph friendshipGraph, UserFeedBuffer userFeedBuffer, UserEventWriter userEventWriter,
+                       UserPurger userPurger, ObjectMapper objectMapper,
+                       @Value("${filmorate.page.max-size:1000}") int maxPageSize) {
         this.userStorage = userStorage;
         this.filmService = filmService;
+        this.friendshipGraph = friendshipGraph;
+        this.userFeedBuffer = userFeedBuffer;
+        this.userEventWriter = userEventWriter;
+        this.userPurger = userPurger;
+        this.objectMapper = objectMapper;
+        this.maxPageSize = maxPageSize;
     }
 
     public UserDto findUserById(Integer userId) {
@@ -43,12 +71,32 @@ public class UserService {
                 .toList();
     }
 
+    public PageDto<UserDto> findPage(String cursor, Integer size) {
+        int pageSize = PageValidator.validatePageSize(size, maxPageSize);
+        int afterId = cursor == null ? 0 : CursorMapper.mapToKeys(cursor, 1)[0];
+        List<User> users = userStorage.findAllUsers(afterId, pageSize + 1);
+
+        String nextCursor = null;
+        if (users.size() > pageSize) {
+            users = users.subList(0, pageSize);
+            nextCursor = CursorMapper.mapToCursor(users.getLast().getId());
+        }
+        return new PageDto<>(users.stream().map(UserMapper::mapToUserDto).toList(), nextCursor);
+    }
+
+    public void exportUsers(OutputStream out) throws IOException {
+        try {
+            userStorage.forEachUserChunk(EXPORT_CHUNK_SIZE, users -> NdjsonWriter.writeLines(objectMapper, out,
+                    users.stream().map(UserMapper::mapToUserDto).toList()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     public UserDto createUser(UserRequest userRequest) {
         UserValidator.validateUserForCreate(userRequest);
-        for (User value : userStorage.findAllUsers()) {
-            if (userRequest.getLogin().equals(value.getLogin()) || userRequest.getEmail().equals(value.getEmail())) {
-                throw new ValidationException("Пользователь с таким login или email уже существует");
-            }
+        if (!userStorage.findUsersByLoginOrEmail(userRequest.getLogin(), userRequest.getEmail()).isEmpty()) {
+            throw new ValidationException("Пользователь с таким login или email уже существует");
         }
         User user = UserMapper.mapToUser(userRequest);
         user = userStorage.createUser(user);
@@ -69,14 +117,32 @@ public class UserService {
     public void removeUser(int userId) {
         userStorage.findUserById(userId)
                 .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id: %s не найден", userId)));
+        // События пользователя и о дружбе с ним удаляются вместе с ним, поэтому из очереди они в БД уже не пишутся
+        userEventWriter.discard(event -> event.getUserId() == userId
+                || event.getEventType() == EventType.FRIEND && event.getEntityId() == userId);
+        // Ленты других пользователей с событиями о дружбе с ним ищутся до удаления событий
+        Set<Integer> feedUserIds = userStorage.findFriendEventUserIds(userId);
         userStorage.deleteUser(userId);
+        filmService.removeUserLikes(userId);
+        friendshipGraph.removeUser(userId);
+        userFeedBuffer.removeUser(userId);
+        feedUserIds.forEach(userFeedBuffer::removeUser);
+    }
+
+    /**
+     * Удаляет пользователя в фоне: сначала история пачками, затем сам пользователь, как в removeUser.
+     * Для пользователей с большой историей, удаление которой одной транзакцией надолго заблокировало бы таблицы.
+     */
+    public CompletableFuture<Void> removeUserAsync(int userId) {
+        userStorage.findUserById(userId)
+                .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id: %s не найден", userId)));
+        log.info("Запущено фоновое удаление пользователя {}", userId);
+        return userPurger.purge(userId, filmIds -> filmService.removeUserLikes(userId, filmIds), () -> removeUser(userId));
     }
 
     public void addFriendRequest(int userId, int userFriendId) {
-        for (UserFriendDto value : userStorage.findFriendsByUserId(userId)) {
-            if (userFriendId == value.getId()) {
-                throw new ValidationException(String.format("Пользователь с id: %s уже является другом пользователя с id: %s", userFriendId, userId));
-            }
+        if (friendshipGraph.isFriend(userId, userFriendId)) {
+            throw new ValidationException(String.format("Пользователь с id: %s уже является другом пользователя с id: %s", userFriendId, userId));
         }
         if (userId == userFriendId) {
             throw new ValidationException("Невозможно добавить пользователя в друзья самому себе");
@@ -85,7 +151,8 @@ public class UserService {
             throw new NotFoundException("Один из пользователей не найден");
         }
         userStorage.addFriendRequest(userId, userFriendId);
-        userStorage.addEvent(userId, EventType.FRIEND, EventOperation.ADD, userFriendId);
+        friendshipGraph.addFriend(userId, userFriendId);
+        userEventWriter.addEvent(userId, EventType.FRIEND, EventOperation.ADD, userFriendId);
         log.debug("Пользователь {} добавил в друзья пользователя {}", userId, userFriendId);
     }
 
@@ -93,11 +160,12 @@ public class UserService {
         if (userStorage.findUserById(userId).isEmpty() || userStorage.findUserById(userFriendId).isEmpty()) {
             throw new NotFoundException("Один из пользователей не найден");
         }
-        if (userStorage.findFriendsByUserId(userId).isEmpty()) {
+        if (friendshipGraph.countFriends(userId) == 0) {
             throw new NonCriticalException("Нет друзей для удаления");
         }
         userStorage.deleteFriend(userId, userFriendId);
-        userStorage.addEvent(userId, EventType.FRIEND, EventOperation.REMOVE, userFriendId);
+        friendshipGraph.removeFriend(userId, userFriendId);
+        userEventWriter.addEvent(userId, EventType.FRIEND, EventOperation.REMOVE, userFriendId);
         log.debug("Пользователь {} удалил из друзей пользователя {}", userId, userFriendId);
 
     }
@@ -115,9 +183,12 @@ public class UserService {
 //        if (userStorage.findUserById(userId).isEmpty() || userStorage.findUserById(otherUserId).isEmpty()) {
 //            throw new NotFoundException("Один из пользователей не найден");
 //        }
-        List<UserFriendDto> friends1 = userStorage.findFriendsByUserId(userId);
-        List<UserFriendDto> friends2 = userStorage.findFriendsByUserId(otherUserId);
-        friends1.removeIf(value -> !friends2.contains(value));
+        int[] commonFriendIds = friendshipGraph.findCommonFriends(userId, otherUserId);
+        if (commonFriendIds.length == 0) {
+            return Collections.emptyList();
+        }
+        List<UserFriendDto> friends1 = userStorage.findFriendsByIds(userId,
+                Arrays.stream(commonFriendIds).boxed().toList());
         //Оказалась лишняя проверка на существование пользователей, не даёт пройти тест постмана
 //        if (friends1.isEmpty()) {
 //            throw new NotFoundException("Нет общих друзей");
@@ -126,75 +197,120 @@ public class UserService {
         return friends1;
     }
 
-    public List<UserEventDto> findEventsByUserId(int userId) {
-        userStorage.findUserById(userId)
-                .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id: %s не найден", userId)));
+    public List<FriendSuggestionDto> findFriendSuggestions(int userId, int limit) {
+        if (userStorage.findUserById(userId).isEmpty()) {
+            throw new NotFoundException(String.format("Пользователь с id: %s не найден", userId));
+        }
+        List<FriendshipGraph.FriendSuggestion> suggestions = friendshipGraph.findFriendSuggestions(userId, limit);
+        if (suggestions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Integer, User> usersById = new HashMap<>();
+        userStorage.findUsersByIds(suggestions.stream().map(FriendshipGraph.FriendSuggestion::userId).toList())
+                .forEach(user -> usersById.put(user.getId(), user));
+
+        // Порядок рекомендаций задаёт граф, пользователи из БД только дополняют данные
+        List<FriendSuggestionDto> result = new ArrayList<>(suggestions.size());
+        for (FriendshipGraph.FriendSuggestion suggestion : suggestions) {
+            User user = usersById.get(suggestion.userId());
+            if (user != null) {
+                result.add(UserMapper.mapToFriendSuggestionDto(user, suggestion.mutualFriends()));
+            }
+        }
+        log.debug("Найдено {} рекомендаций друзей для пользователя с id {}", result.size(), userId);
+        return result;
+    }
 
-        return userStorage.findEventsByUserId(userId).stream()
+    /**
+     * Лента без параметров - вся история пользователя. Если буфер в памяти содержит всю историю, она
+     * отдаётся из буфера, иначе читается из БД страницами по filmorate.page.max-size событий по индексу.
+     */
+    public List<UserEventDto> findEventsByUserId(int userId) {
+        checkFeedUser(userId);
+        List<UserEvent> pending = userEventWriter.findPending(userId);
+        List<UserEvent> events = userFeedBuffer.findLatest(userId, null, Integer.MAX_VALUE)
+                .orElseGet(() -> findAllEvents(userId));
+        return addPending(events, pending, null, null, Integer.MAX_VALUE).stream()
                 .map(UserEventMapper::mapToUserEventDto)
                 .toList();
     }
 
-    public List<FilmDto> findRecommendedFilms(Integer userId) {
-        userStorage.findUserById(userId)
-                .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id: %s не найден", userId)));
-
-        Set<Integer> currentUserLikes = filmService.getFilmLikesByUserId(userId);
-
-        if (currentUserLikes.isEmpty()) {
-            log.info("У пользователя с ID {} нет лайков, рекомендации отсутствуют.", userId);
-            return Collections.emptyList();
+    /**
+     * Страница ленты: не более limit последних событий с timestamp строго между since и before.
+     * Последняя страница без before отдаётся из буфера в памяти, если он её покрывает.
+     * События пользователя, ещё не записанные в БД, добавляются из очереди UserEventWriter.
+     */
+    public List<UserEventDto> findEventsByUserId(int userId, Long since, Long before, Integer limit) {
+        int pageSize = PageValidator.validatePageSize(limit, maxPageSize);
+        checkFeedUser(userId);
+
+        // До чтения записанных: событие, записанное между двумя чтениями, попадёт хотя бы в одно из них
+        List<UserEvent> pending = userEventWriter.findPending(userId);
+        List<UserEvent> events = null;
+        if (before == null) {
+            events = userFeedBuffer.findLatest(userId, since, pageSize).orElse(null);
         }
-
-        Map<Integer, Set<Integer>> allUsersLikes = filmService.getAllUsersLikes();
-
-        allUsersLikes.remove(userId);
-
-        int maxIntersectionSize = 0;
-        Set<Integer> usersWithMaxIntersection = new HashSet<>();
-
-        for (Map.Entry<Integer, Set<Integer>> entry : allUsersLikes.entrySet()) {
-            Integer otherUserId = entry.getKey();
-            Set<Integer> otherUserLikes = entry.getValue();
-
-            Set<Integer> intersection = new HashSet<>(currentUserLikes);
-            intersection.retainAll(otherUserLikes);
-
-            int currentIntersectionSize = intersection.size();
-
-            if (currentIntersectionSize > maxIntersectionSize) {
-                maxIntersectionSize = currentIntersectionSize;
-                usersWithMaxIntersection.clear();
-                usersWithMaxIntersection.add(otherUserId);
-            } else if (currentIntersectionSize > 0 && currentIntersectionSize == maxIntersectionSize) {
-                usersWithMaxIntersection.add(otherUserId);
-            }
+        if (events == null) {
+            events = userStorage.findEventsByUserId(userId, since, before, pageSize);
         }
+        return addPending(events, pending, since, before, pageSize).stream()
+                .map(UserEventMapper::mapToUserEventDto)
+                .toList();
+    }
 
-        if (maxIntersectionSize == 0) {
-            log.info("Не найдено пользователей с общими лайками для пользователя с ID {}", userId);
-            return Collections.emptyList();
+    private void checkFeedUser(int userId) {
+        if (!userFeedBuffer.isBuffered(userId)) {
+            userStorage.findUserById(userId)
+                    .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id: %s не найден", userId)));
         }
+    }
 
-        Set<Integer> recommendedFilmIds = new HashSet<>();
-        for (Integer similarUserId : usersWithMaxIntersection) {
-            Set<Integer> similarUserLikes = allUsersLikes.get(similarUserId);
-            if (similarUserLikes != null) {
-                for (Integer filmId : similarUserLikes) {
-                    if (!currentUserLikes.contains(filmId)) {
-                        recommendedFilmIds.add(filmId);
-                    }
-                }
+    /**
+     * Вся записанная история пользователя: страницы читаются от самого старого события по (timestamp, id),
+     * поэтому события с одинаковым временем на границе страниц не теряются.
+     */
+    private List<UserEvent> findAllEvents(int userId) {
+        List<UserEvent> events = new ArrayList<>();
+        List<UserEvent> page;
+        do {
+            UserEvent last = events.isEmpty() ? null : events.getLast();
+            page = userStorage.findEventsByUserIdAfter(userId,
+                    last == null ? Long.MIN_VALUE : last.getTimestamp(),
+                    last == null ? 0 : last.getEventId(),
+                    maxPageSize);
+            events.addAll(page);
+        } while (page.size() == maxPageSize);
+        log.debug("Прочитана вся лента пользователя {}: {} событий", userId, events.size());
+        return events;
+    }
+
+    /**
+     * Дополняет страницу незаписанными событиями из интервала и оставляет limit последних.
+     * Событие, записанное после чтения очереди, уже получило eventId и пропускается, если попало в страницу.
+     */
+    private static List<UserEvent> addPending(List<UserEvent> events, List<UserEvent> pending,
+                                              Long since, Long before, int limit) {
+        if (pending.isEmpty()) {
+            return events;
+        }
+        Set<Integer> storedIds = events.stream().map(UserEvent::getEventId).collect(Collectors.toSet());
+        List<UserEvent> result = new ArrayList<>(events);
+        for (UserEvent event : pending) {
+            boolean inRange = (since == null || event.getTimestamp() > since)
+                    && (before == null || event.getTimestamp() < before);
+            if (inRange && (event.getEventId() == null || !storedIds.contains(event.getEventId()))) {
+                result.add(event);
             }
         }
+        result.sort(Comparator.comparing(UserEvent::getTimestamp));
+        return result.size() > limit ? result.subList(result.size() - limit, result.size()) : result;
+    }
 
-        if (recommendedFilmIds.isEmpty()) {
-            log.info("Не найдено фильмов для рекомендации по лайкам похожих пользователей для пользователя с ID {}", userId);
-            return Collections.emptyList();
-        }
+    public List<FilmDto> findRecommendedFilms(Integer userId) {
+        userStorage.findUserById(userId)
+                .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id: %s не найден", userId)));
 
-        List<Integer> recommendedFilmIdList = new ArrayList<>(recommendedFilmIds);
-        List<FilmDto> recommendedFilms = filmService.getFilmsByIds(recommendedFilmIdList);
+        List<FilmDto> recommendedFilms = filmService.getRecommendedFilms(userId);
 
         log.debug("Найдено {} рекомендованных фильмов для пользователя с ID {}", recommendedFilms.size(), userId);
 
@@ -2,15 +2,22 @@ package ru.yandex.practicum.filmorate.storage;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @RequiredArgsConstructor
 public abstract class BaseStorage<T> {
@@ -25,6 +32,32 @@ public abstract class BaseStorage<T> {
         return jdbc.query(query, mapper, params);
     }
 
+    /**
+     * Читает результат запроса однонаправленным курсором с fetch size = chunkSize
+     * и передает строки пачками, не собирая весь результат в памяти.
+     */
+    protected void streamMany(String query, int chunkSize, Consumer<List<T>> chunkConsumer, Object... params) {
+        List<T> chunk = new ArrayList<>(chunkSize);
+        int[] rowNum = {0};
+        jdbc.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(chunkSize);
+            for (int idx = 0; idx < params.length; idx++) {
+                ps.setObject(idx + 1, params[idx]);
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            chunk.add(mapper.mapRow(rs, rowNum[0]++));
+            if (chunk.size() >= chunkSize) {
+                chunkConsumer.accept(new ArrayList<>(chunk));
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            chunkConsumer.accept(chunk);
+        }
+    }
+
     protected List<T> findManyById(String query, int id) {
         return jdbc.query(query, mapper, id);
     }
@@ -49,6 +82,56 @@ public abstract class BaseStorage<T> {
         }
     }
 
+    /**
+     * Пакетная вставка без получения сгенерированных ключей: один подготовленный запрос на всю пачку.
+     */
+    protected int[] batchInsert(String query, List<Object[]> batchArgs) {
+        return batchUpdate(query, batchArgs);
+    }
+
+    /**
+     * Пакетная вставка с получением сгенерированных id в порядке строк пачки.
+     */
+    protected List<Integer> batchInsertReturningKeys(String query, List<Object[]> batchArgs) {
+        if (batchArgs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(
+                connection -> connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Object[] params = batchArgs.get(i);
+                        for (int idx = 0; idx < params.length; idx++) {
+                            ps.setObject(idx + 1, params[idx]);
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return batchArgs.size();
+                    }
+                },
+                keyHolder);
+
+        List<Integer> ids = new ArrayList<>(batchArgs.size());
+        for (Map<String, Object> keys : keyHolder.getKeyList()) {
+            ids.add(((Number) keys.values().iterator().next()).intValue());
+        }
+        if (ids.size() != batchArgs.size()) {
+            throw new InternalServerException("Failed to retrieve generated IDs after batch insert operation.");
+        }
+        return ids;
+    }
+
+    protected int[] batchUpdate(String query, List<Object[]> batchArgs) {
+        if (batchArgs.isEmpty()) {
+            return new int[0];
+        }
+        return jdbc.batchUpdate(query, batchArgs);
+    }
+
     protected void update(String query, Object... params) {
         jdbc.update(query, params);
     }
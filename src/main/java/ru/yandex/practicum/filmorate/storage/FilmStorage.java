@@ -1,44 +1,77 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.enumeration.DirectorFilmSort;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Optional<Film> findFilmById(int filmId);
 
     List<Film> findAllFilms();
 
-    Film createFilm(Film film);
+    List<Film> findAllFilms(int afterId, int count);
 
-    Film updateFilm(Film filmForUpdate);
+    /**
+     * Передает в consumer все фильмы в порядке id пачками по chunkSize, со связями, не собирая каталог в памяти.
+     */
+    void forEachFilmChunk(int chunkSize, Consumer<List<Film>> chunkConsumer);
 
-    void addLikeToFilm(Integer filmId, Integer userId);
+    Film createFilm(Film film);
 
-    void removeLikeFromFilm(Integer filmId, Integer userId);
+    /**
+     * Создает фильмы пачкой и проставляет им id.
+     */
+    List<Film> createFilms(List<Film> films);
+
+    Film updateFilm(Film filmForUpdate);
 
-    List<Film> getPopularFilms(int count, Integer genreId, Integer year);
+    /**
+     * Ставит лайк, если его ещё нет. Возвращает true, если лайк добавлен, и false, если он уже стоял.
+     */
+    boolean addLikeToFilm(Integer filmId, Integer userId);
 
-    List<Film> findCommonFilms(int userId, int friendId);
+    /**
+     * Снимает лайк. Возвращает true, если лайк был и снят, и false, если его не было.
+     */
+    boolean removeLikeFromFilm(Integer filmId, Integer userId);
 
-    List<Film> getFilmsByDirector(int directorId);
+    /**
+     * Не более count фильмов режиссёра, идущих в порядке sort после фильма after (null - с начала).
+     * От after нужны только id и поле сортировки.
+     */
+    List<Film> getFilmsByDirector(int directorId, DirectorFilmSort sort, Film after, int count);
 
     int countLikes(int filmId);
 
+    int rebuildLikesCount();
+
     void deleteDirectorsFromFilm(int filmId);
 
     void addDirectorToFilm(int filmId, int directorId);
 
-    List<Film> searchFilms(String query, boolean searchByTitle, boolean searchByDirector);
-
     void deleteFilm(int filmId);
 
+    /**
+     * id отзывов на фильм: события о них удаляются вместе с фильмом.
+     */
+    List<Integer> findReviewIds(int filmId);
+
+    /**
+     * Пользователи, в лентах которых есть события о фильме - лайки и отзывы на него.
+     */
+    Set<Integer> findEventUserIds(int filmId);
+
     Set<Integer> findFilmLikesByUserId(Integer userId);
 
-    Map<Integer, Set<Integer>> findAllUsersLikes();
+    /**
+     * Передает в consumer все лайки в виде пар (userId, filmId), не собирая их в коллекцию.
+     */
+    void forEachLike(BiConsumer<Integer, Integer> userFilmConsumer);
 
     List<Film> findFilmsByIds(List<Integer> filmIds);
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.enumeration.ReviewRating;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.util.List;
@@ -16,19 +17,23 @@ public interface ReviewStorage {
 
     List<Review> findAllReviews(Integer filmId, Integer count);
 
+    /**
+     * Отзывы после отзыва с ключом (afterUseful, afterId) в порядке useful DESC, id.
+     * Полезность меняется при каждой оценке, поэтому отзыв, оценённый между запросами страниц,
+     * может переместиться через курсор: попасть в выдачу дважды или не попасть ни разу.
+     */
+    List<Review> findAllReviews(Integer filmId, int afterUseful, int afterId, int count);
+
     Review createReview(Review review);
 
     Review updateReview(Review reviewForUpdate);
 
     void removeReview(int reviewId);
 
-    void addLike(int reviewId, int userId);
-
-    void removeLike(int reviewId, int userId);
-
-    void addDislike(int reviewId, int userId);
-
-    void removeDislike(int reviewId, int userId);
-
-    Optional<Boolean> getUserReviewRating(int reviewId, int userId);
+    /**
+     * Переводит оценку отзыва пользователем в состояние target и изменяет полезность отзыва на разницу
+     * вкладов в одной транзакции. Если expected задан, оценка меняется, только когда текущая оценка равна ему.
+     * Возвращает оценку до вызова; если она равна target или не равна expected, ничего не меняется.
+     */
+    ReviewRating changeRating(int reviewId, int userId, ReviewRating expected, ReviewRating target);
 }
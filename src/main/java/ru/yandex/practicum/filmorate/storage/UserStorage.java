@@ -7,29 +7,96 @@ import ru.yandex.practicum.filmorate.enumeration.EventType;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.UserEvent;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
     List<User> findAllUsers();
 
+    List<User> findAllUsers(int afterId, int count);
+
+    /**
+     * Передает в consumer всех пользователей в порядке id пачками по chunkSize, не собирая их в памяти.
+     */
+    void forEachUserChunk(int chunkSize, Consumer<List<User>> chunkConsumer);
+
     void addFriendRequest(int userId, int friendId);
 
     User createUser(User user);
 
     Optional<User> findUserById(int userId);
 
+    /**
+     * Пользователи с id из userIds, упорядоченные по id.
+     */
+    List<User> findUsersByIds(Collection<Integer> userIds);
+
+    /**
+     * Пользователи, у которых логин равен login или email равен email (не больше двух).
+     */
+    List<User> findUsersByLoginOrEmail(String login, String email);
+
     User updateUser(User user);
 
+    /**
+     * Удаляет пользователя со всей историей одной транзакцией. Из счетчиков лайков фильмов
+     * и полезности отзывов вычитается вклад пользователя.
+     */
     void deleteUser(int userId);
 
+    /**
+     * Удаляет не больше batchSize лайков пользователя отдельной короткой транзакцией и уменьшает
+     * счетчики лайков фильмов. Возвращает id фильмов, с которых сняты лайки, пустой список - лайков не осталось.
+     */
+    List<Integer> purgeUserLikes(int userId, int batchSize);
+
+    /**
+     * Удаляет не больше batchSize строк остальной истории пользователя (оценки, отзывы, события, дружба)
+     * отдельной короткой транзакцией. Возвращает число удалённых строк, 0 - история удалена.
+     */
+    int purgeUserHistory(int userId, int batchSize);
+
+    /**
+     * Пользователи, в лентах которых есть события о дружбе с userId.
+     */
+    Set<Integer> findFriendEventUserIds(int userId);
+
     void deleteFriend(int userId, int friendId);
 
     List<UserFriendDto> findFriendsByUserId(int userId);
 
-    List<UserEvent> findEventsByUserId(int userId);
+    /**
+     * Друзья пользователя с id из friendIds, упорядоченные по id.
+     */
+    List<UserFriendDto> findFriendsByIds(int userId, Collection<Integer> friendIds);
+
+    /**
+     * Передает в consumer все связи дружбы в виде пар (userId, friendId), не собирая их в коллекцию.
+     */
+    void forEachFriendship(BiConsumer<Integer, Integer> userFriendConsumer);
+
+    /**
+     * Не более count последних событий пользователя с timestamp строго между since и before
+     * (границы необязательны) в порядке возрастания времени.
+     */
+    List<UserEvent> findEventsByUserId(int userId, Long since, Long before, int count);
+
+    /**
+     * Не более count событий пользователя, идущих после события (afterTimestamp, afterEventId)
+     * в порядке возрастания времени, при равенстве - id. Первая страница - от Long.MIN_VALUE и 0.
+     */
+    List<UserEvent> findEventsByUserIdAfter(int userId, long afterTimestamp, int afterEventId, int count);
+
+    UserEvent addEvent(Integer userId, EventType eventType, EventOperation operation, Integer entityId);
 
-    void addEvent(Integer userId, EventType eventType, EventOperation operation, Integer entityId);
+    /**
+     * Записывает события одной пачкой и проставляет им id.
+     */
+    void addEvents(List<UserEvent> events);
 
 }
\ No newline at end of file
@@ -2,60 +2,120 @@ package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.enumeration.DirectorFilmSort;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.BaseStorage;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component("FilmStorageDbImpl")
 public class FilmStorageDbImpl extends BaseStorage<Film> implements FilmStorage {
     private static final String FIND_BY_ID_QUERY = " SELECT * FROM _film WHERE id = ?";
     private static final String FIND_ALL_QUERY = "SELECT * FROM _film";
+    private static final String FIND_ALL_ORDERED_QUERY = "SELECT * FROM _film ORDER BY id";
+    private static final String FIND_PAGE_QUERY = "SELECT * FROM _film WHERE id > ? ORDER BY id LIMIT ?";
     private static final String INSERT_QUERY = "INSERT INTO _film (name,description,duration,release_dt,mpa_id) VALUES (?,?,?,?,?)";
     private static final String INSERT_FILM_GENRE_QUERY = "INSERT INTO _film_genre (film_id, genre_id) VALUES (?,?)";
-    private static final String CLEAR_FILM_GENRE_QUERY = "DELETE FROM _film_genre WHERE film_id = ?";
+    private static final String FIND_FILM_GENRE_IDS_QUERY = "SELECT genre_id FROM _film_genre WHERE film_id = ?";
+    private static final String DELETE_FILM_GENRE_QUERY = "DELETE FROM _film_genre WHERE film_id = ? AND genre_id = ?";
     private static final String UPDATE_QUERY = "UPDATE _film SET name = ?, description = ?, duration = ?, release_dt = ?, mpa_id = ? WHERE id = ?";
-    private static final String INSERT_LIKE_QUERY = "INSERT INTO _like (user_id, film_id) VALUES (?,?)";
+    // Строка-источник есть, только если существуют и пользователь, и фильм; вставка - только если лайка ещё нет
+    private static final String ADD_LIKE_QUERY = """
+                MERGE INTO _like l
+                USING (SELECT u.id AS user_id, f.id AS film_id FROM _user u, _film f WHERE u.id = ? AND f.id = ?) s
+                ON l.user_id = s.user_id AND l.film_id = s.film_id
+                WHEN NOT MATCHED THEN INSERT (user_id, film_id) VALUES (s.user_id, s.film_id)
+            """;
+    private static final String FIND_LIKE_TARGETS_QUERY =
+            "SELECT EXISTS (SELECT 1 FROM _film WHERE id = ?), EXISTS (SELECT 1 FROM _user WHERE id = ?)";
     private static final String DELETE_LIKE_QUERY = "DELETE FROM _like WHERE user_id = ? AND film_id = ?";
+    private static final String UPDATE_LIKES_COUNT_QUERY = "UPDATE _film SET likes_count = likes_count + ? WHERE id = ?";
+    private static final String RESET_LIKES_COUNT_QUERY = "UPDATE _film SET likes_count = 0 WHERE likes_count <> 0";
+    private static final String REBUILD_LIKES_COUNT_QUERY = """
+                MERGE INTO _film f
+                USING (SELECT film_id, COUNT(*) AS cnt FROM _like GROUP BY film_id) l
+                ON f.id = l.film_id
+                WHEN MATCHED THEN UPDATE SET f.likes_count = l.cnt
+            """;
 
 
-    private static final String GET_FILMS_BY_DIRECTOR_SQL = " SELECT f.* FROM _film f JOIN _film_director fd ON f.id = fd.film_id WHERE fd.director_id = ? ";
-    private static final String COUNT_LIKES_SQL = "SELECT COUNT(*) FROM _like WHERE film_id = ?";
-    private static final String FIND_COMMON_FILMS_QUERY = """
+    private static final String GET_FILMS_BY_DIRECTOR_BY_LIKES_SQL = """
                 SELECT f.*
-                FROM _film f
-                JOIN _like l1 ON f.id = l1.film_id AND l1.user_id = ?
-                JOIN _like l2 ON f.id = l2.film_id AND l2.user_id = ?
-                LEFT JOIN _like all_likes ON f.id = all_likes.film_id
-                GROUP BY f.id
-                ORDER BY COUNT(all_likes.user_id) DESC
+                FROM _film_director fd
+                JOIN _film f ON f.id = fd.film_id
+                WHERE fd.director_id = ?
+                  AND (f.likes_count < ? OR f.likes_count = ? AND f.id > ?)
+                ORDER BY f.likes_count DESC, f.id
+                LIMIT ?
             """;
-
+    private static final String GET_FILMS_BY_DIRECTOR_BY_YEAR_SQL = """
+                SELECT f.*
+                FROM _film_director fd
+                JOIN _film f ON f.id = fd.film_id
+                WHERE fd.director_id = ?
+                  AND (f.release_dt > ? OR f.release_dt = ? AND f.id > ?)
+                ORDER BY f.release_dt, f.id
+                LIMIT ?
+            """;
+    private static final String GET_FILMS_BY_DIRECTOR_BY_TITLE_SQL = """
+                SELECT f.*
+                FROM _film_director fd
+                JOIN _film f ON f.id = fd.film_id
+                WHERE fd.director_id = ?
+                  AND (f.name > ? OR f.name = ? AND f.id > ?)
+                ORDER BY f.name, f.id
+                LIMIT ?
+            """;
+    // Раньше любой даты выхода фильма
+    private static final LocalDate FIRST_PAGE_RELEASE_DATE = LocalDate.of(1, 1, 1);
+    private static final String COUNT_LIKES_SQL = "SELECT likes_count FROM _film WHERE id = ?";
     private static final String DELETE_DIRECTORS_FROM_FILM = "DELETE FROM _film_director WHERE film_id = ?";
     private static final String INSERT_DIRECTOR_TO_FILM = "INSERT INTO _film_director (film_id, director_id) VALUES (?, ?)";
+    private static final String FIND_FILM_DIRECTOR_IDS_QUERY = "SELECT director_id FROM _film_director WHERE film_id = ?";
+    private static final String DELETE_FILM_DIRECTOR_QUERY = "DELETE FROM _film_director WHERE film_id = ? AND director_id = ?";
 
-    private static final String BASE_POPULAR_QUERY = """
-            SELECT f.*
-            FROM _film f
-            LEFT JOIN _like l ON f.id = l.film_id
-            """;
-
+    // Жанры, режиссёры, лайки, отзывы и оценки отзывов удаляются каскадно по внешним ключам
     private static final String DELETE_FILM_QUERY = "DELETE FROM _film WHERE id = ?";
-    private static final String DELETE_FILM_GENRES_QUERY = "DELETE FROM _film_genre WHERE film_id = ?";
-    private static final String DELETE_FILM_LIKES_QUERY = "DELETE FROM _like WHERE film_id = ?";
-    private static final String DELETE_FILM_DIRECTORS_QUERY = "DELETE FROM _film_director WHERE film_id = ?";
+    private static final String DELETE_FILM_LIKE_EVENTS_QUERY =
+            "DELETE FROM _user_event WHERE entity_id = ? AND event_type = 'LIKE'";
+    private static final String DELETE_FILM_REVIEW_EVENTS_QUERY = """
+                DELETE FROM _user_event
+                WHERE entity_id IN (SELECT id FROM _review WHERE film_id = ?) AND event_type = 'REVIEW'
+            """;
+    private static final String FIND_FILM_REVIEW_IDS_QUERY = "SELECT id FROM _review WHERE film_id = ?";
+    private static final String FIND_FILM_EVENT_USER_IDS_QUERY = """
+                SELECT user_id FROM _user_event WHERE entity_id = ? AND event_type = 'LIKE'
+                UNION
+                SELECT e.user_id
+                FROM _review r
+                JOIN _user_event e ON e.entity_id = r.id AND e.event_type = 'REVIEW'
+                WHERE r.film_id = ?
+            """;
 
     private static final String FIND_FILM_LIKES_BY_USER_ID_SQL = "SELECT film_id FROM _like WHERE user_id = ?";
     private static final String FIND_ALL_USERS_LIKES_SQL = "SELECT user_id, film_id FROM _like";
 
+    // HYDRATION
+    // Размер пачки id для IN-списков при догрузке связей фильмов
+    private static final int HYDRATION_CHUNK_SIZE = 1000;
+    private static final String FIND_MPA_BY_IDS_SQL = "SELECT id, name FROM _mpa WHERE id IN (:ids)";
+    private static final String FIND_GENRE_IDS_BY_FILM_IDS_SQL = "SELECT film_id, genre_id FROM _film_genre WHERE film_id IN (:filmIds) ORDER BY film_id, genre_id";
+    private static final String FIND_DIRECTOR_IDS_BY_FILM_IDS_SQL = "SELECT film_id, director_id FROM _film_director WHERE film_id IN (:filmIds) ORDER BY film_id, director_id";
+
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
 
@@ -68,7 +128,9 @@ public class FilmStorageDbImpl extends BaseStorage<Film> implements FilmStorage
     @Override
     public Optional<Film> findFilmById(int filmId) {
         log.debug("Поиск фильма в БД по id: {}", filmId);
-        return findOne(FIND_BY_ID_QUERY, filmId);
+        Optional<Film> film = findOne(FIND_BY_ID_QUERY, filmId);
+        film.ifPresent(value -> hydrate(List.of(value)));
+        return film;
     }
 
     @Override
@@ -78,6 +140,23 @@ public class FilmStorageDbImpl extends BaseStorage<Film> implements FilmStorage
     }
 
     @Override
+    public List<Film> findAllFilms(int afterId, int count) {
+        log.debug("Получение {} фильмов из БД после id {}", count, afterId);
+        return findMany(FIND_PAGE_QUERY, afterId, count);
+    }
+
+    /**
+     * Связи догружаются по каждой пачке отдельно; транзакция держит одно соединение для курсора и догрузки.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachFilmChunk(int chunkSize, Consumer<List<Film>> chunkConsumer) {
+        log.debug("Потоковое чтение всех фильмов из БД пачками по {}", chunkSize);
+        streamMany(FIND_ALL_ORDERED_QUERY, chunkSize, films -> chunkConsumer.accept(hydrate(films)));
+    }
+
+    @Override
+    @Transactional
     public Film createFilm(Film film) {
         log.debug("Попытка создать фильм в БД: {}", film);
         int filmId = insert(
@@ -89,22 +168,43 @@ public class FilmStorageDbImpl extends BaseStorage<Film> implements FilmStorage
                 film.getMpa().getId());
         film.setId(filmId);
 
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            film.getGenres().forEach(genreId -> {
-                        insert(INSERT_FILM_GENRE_QUERY, filmId, genreId);
-                    }
-            );
-        }
-        if (film.getDirectors() != null && !film.getDirectors().isEmpty()) {
-            film.getDirectors().forEach(directorId -> {
-                insert(INSERT_DIRECTOR_TO_FILM, filmId, directorId);
-            });
-        }
+        batchInsert(INSERT_FILM_GENRE_QUERY, linkRows(filmId, uniqueIds(film.getGenres())));
+        batchInsert(INSERT_DIRECTOR_TO_FILM, linkRows(filmId, uniqueIds(film.getDirectors())));
         log.info("Фильм с id = {} - добавлен в БД", film.getId());
         return film;
     }
 
     @Override
+    @Transactional
+    public List<Film> createFilms(List<Film> films) {
+        log.debug("Пакетное создание {} фильмов в БД", films.size());
+        List<Object[]> filmRows = new ArrayList<>(films.size());
+        for (Film film : films) {
+            filmRows.add(new Object[]{
+                    film.getName(),
+                    film.getDescription(),
+                    film.getDuration(),
+                    film.getReleaseDate(),
+                    film.getMpa() == null ? null : film.getMpa().getId()});
+        }
+        List<Integer> ids = batchInsertReturningKeys(INSERT_QUERY, filmRows);
+
+        List<Object[]> genreRows = new ArrayList<>();
+        List<Object[]> directorRows = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(ids.get(i));
+            genreRows.addAll(linkRows(film.getId(), uniqueIds(film.getGenres())));
+            directorRows.addAll(linkRows(film.getId(), uniqueIds(film.getDirectors())));
+        }
+        batchInsert(INSERT_FILM_GENRE_QUERY, genreRows);
+        batchInsert(INSERT_DIRECTOR_TO_FILM, directorRows);
+        log.info("Пакетно добавлено {} фильмов в БД", films.size());
+        return films;
+    }
+
+    @Override
+    @Transactional
     public Film updateFilm(Film film) {
         log.debug("Попытка обновить фильм в БД с id: {}", film.getId());
         int filmId = film.getId();
@@ -117,105 +217,129 @@ public class FilmStorageDbImpl extends BaseStorage<Film> implements FilmStorage
                 film.getMpa().getId(),
                 filmId);
 
-        delete(CLEAR_FILM_GENRE_QUERY, filmId);
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            film.getGenres().forEach(genreId -> {
-                        insert(INSERT_FILM_GENRE_QUERY, filmId, genreId);
-                    }
-            );
-        }
-
-        delete(DELETE_DIRECTORS_FROM_FILM, filmId);
-        if (film.getDirectors() != null && !film.getDirectors().isEmpty()) {
-            film.getDirectors().forEach(directorId -> {
-                insert(INSERT_DIRECTOR_TO_FILM, filmId, directorId);
-            });
-        }
-
+        syncLinks(filmId, film.getGenres(), FIND_FILM_GENRE_IDS_QUERY, DELETE_FILM_GENRE_QUERY, INSERT_FILM_GENRE_QUERY);
+        syncLinks(filmId, film.getDirectors(), FIND_FILM_DIRECTOR_IDS_QUERY, DELETE_FILM_DIRECTOR_QUERY, INSERT_DIRECTOR_TO_FILM);
 
         log.info("Фильм с id = {} - обновлён в БД", film.getId());
         return film;
     }
 
+    /**
+     * Приводит связи фильма (жанры или режиссёры) к новому списку:
+     * удаляются только исчезнувшие связи и вставляются только новые.
+     */
+    private void syncLinks(int filmId, List<Integer> newIds, String findQuery, String deleteQuery, String insertQuery) {
+        Set<Integer> currentIds = new HashSet<>(jdbc.queryForList(findQuery, Integer.class, filmId));
+        Set<Integer> targetIds = uniqueIds(newIds);
+
+        Set<Integer> removedIds = new LinkedHashSet<>(currentIds);
+        removedIds.removeAll(targetIds);
+        Set<Integer> addedIds = new LinkedHashSet<>(targetIds);
+        addedIds.removeAll(currentIds);
+
+        batchUpdate(deleteQuery, linkRows(filmId, removedIds));
+        batchInsert(insertQuery, linkRows(filmId, addedIds));
+        log.debug("Связи фильма {} обновлены: удалено {}, добавлено {}", filmId, removedIds.size(), addedIds.size());
+    }
+
+    private Set<Integer> uniqueIds(List<Integer> ids) {
+        return ids == null ? new LinkedHashSet<>() : new LinkedHashSet<>(ids);
+    }
+
+    private List<Object[]> linkRows(int filmId, Collection<Integer> linkedIds) {
+        List<Object[]> rows = new ArrayList<>(linkedIds.size());
+        for (Integer linkedId : linkedIds) {
+            rows.add(new Object[]{filmId, linkedId});
+        }
+        return rows;
+    }
+
     @Override
-    public void addLikeToFilm(Integer filmId, Integer userId) {
+    @Transactional
+    public boolean addLikeToFilm(Integer filmId, Integer userId) {
         log.debug("Пользователь {} ставит лайк фильму {}", userId, filmId);
+        int affectedRows;
         try {
-            insert(INSERT_LIKE_QUERY, userId, filmId);
-            log.info("Лайк пользователя {} добавлен к фильму {}", userId, filmId);
-        } catch (Exception e) {
-            log.warn("Ошибка при добавлении лайка пользователем {} фильму {}: {}", userId, filmId, e.getMessage());
+            affectedRows = jdbc.update(ADD_LIKE_QUERY, userId, filmId);
+        } catch (DuplicateKeyException e) {
+            // Тот же лайк одновременно вставлен другим запросом
+            affectedRows = 0;
+        }
+        if (affectedRows == 0) {
+            checkLikeTargets(filmId, userId);
+            log.debug("Лайк пользователя {} фильму {} уже стоит", userId, filmId);
+            return false;
         }
+        jdbc.update(UPDATE_LIKES_COUNT_QUERY, 1, filmId);
+        log.info("Лайк пользователя {} добавлен к фильму {}", userId, filmId);
+        return true;
     }
 
     @Override
-    public void removeLikeFromFilm(Integer filmId, Integer userId) {
+    @Transactional
+    public boolean removeLikeFromFilm(Integer filmId, Integer userId) {
         log.debug("Пользователь {} удаляет лайк с фильма {}", userId, filmId);
         int affectedRows = jdbc.update(DELETE_LIKE_QUERY, userId, filmId);
-        if (affectedRows > 0) {
-            log.info("Лайк пользователя {} удален с фильма {}", userId, filmId);
-        } else {
+        if (affectedRows == 0) {
+            checkLikeTargets(filmId, userId);
             log.warn("Лайк пользователя {} для фильма {} не найден для удаления", userId, filmId);
+            return false;
         }
+        jdbc.update(UPDATE_LIKES_COUNT_QUERY, -affectedRows, filmId);
+        log.info("Лайк пользователя {} удален с фильма {}", userId, filmId);
+        return true;
     }
 
-    @Override
-    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
-        log.debug("Получение {} самых популярных фильмов из БД, фильтрация: genreId={}, year={}", count, genreId, year);
-
-        StringBuilder sqlBuilder = new StringBuilder(BASE_POPULAR_QUERY);
-        List<Object> params = new ArrayList<>();
-        List<String> whereClauses = new ArrayList<>();
-
-        if (genreId != null) {
-            sqlBuilder.append(" JOIN _film_genre fg ON f.id = fg.film_id");
-            whereClauses.add("fg.genre_id = ?");
-            params.add(genreId);
-        }
-
-        if (year != null) {
-            whereClauses.add("EXTRACT(YEAR FROM f.release_dt) = ?");
-            params.add(year);
-        }
-
-        if (!whereClauses.isEmpty()) {
-            sqlBuilder.append(" WHERE ").append(String.join(" AND ", whereClauses));
-        }
-
-        sqlBuilder.append(" GROUP BY f.id");
-
-        sqlBuilder.append(" ORDER BY COUNT(l.user_id) DESC");
-
-        sqlBuilder.append(" LIMIT ?");
-        params.add(count);
-
-        String finalSql = sqlBuilder.toString();
-        log.debug("Executing popular films query: {}", finalSql);
-        log.debug("With parameters: {}", params);
-
-        return findMany(finalSql, params.toArray());
+    /**
+     * Лайк не изменился: отличает отсутствие фильма или пользователя от уже стоящего (снятого) лайка.
+     */
+    private void checkLikeTargets(int filmId, int userId) {
+        jdbc.query(FIND_LIKE_TARGETS_QUERY, rs -> {
+            if (!rs.getBoolean(1)) {
+                throw new NotFoundException(String.format("Фильм с id = %d не найден", filmId));
+            }
+            if (!rs.getBoolean(2)) {
+                throw new NotFoundException(String.format("Пользователь с id: %s не найден", userId));
+            }
+        }, filmId, userId);
     }
 
 
     @Override
-    public List<Film> getFilmsByDirector(int directorId) {
-        log.debug("Получение фильмов режиссера {} из БД", directorId);
-        return findMany(GET_FILMS_BY_DIRECTOR_SQL, directorId);
+    public List<Film> getFilmsByDirector(int directorId, DirectorFilmSort sort, Film after, int count) {
+        log.debug("Получение фильмов режиссера {} из БД: sort={}, after={}, count={}",
+                directorId, sort, after == null ? null : after.getId(), count);
+        // Лайки берутся из счетчика likes_count, поэтому сортировка не требует подсчета по _like.
+        // Первая страница читается от ключа, который идёт раньше любого фильма
+        String query = switch (sort) {
+            case LIKES -> GET_FILMS_BY_DIRECTOR_BY_LIKES_SQL;
+            case YEAR -> GET_FILMS_BY_DIRECTOR_BY_YEAR_SQL;
+            case TITLE -> GET_FILMS_BY_DIRECTOR_BY_TITLE_SQL;
+        };
+        Object key = switch (sort) {
+            case LIKES -> after == null ? Integer.MAX_VALUE : after.getLikesCount();
+            case YEAR -> after == null ? FIRST_PAGE_RELEASE_DATE : after.getReleaseDate();
+            case TITLE -> after == null ? "" : after.getName();
+        };
+        int afterId = after == null ? 0 : after.getId();
+        return findMany(query, directorId, key, key, afterId, count);
     }
 
     @Override
     public int countLikes(int filmId) {
         log.debug("Подсчет лайков для фильма с id {}", filmId);
-        Integer likeCount = jdbc.queryForObject(COUNT_LIKES_SQL, Integer.class, filmId);
-        return likeCount != null ? likeCount : 0;
+        List<Integer> likeCount = jdbc.queryForList(COUNT_LIKES_SQL, Integer.class, filmId);
+        return likeCount.isEmpty() ? 0 : likeCount.getFirst();
     }
 
     @Override
-    public List<Film> findCommonFilms(int userId, int friendId) {
-        log.debug("Поиск общих фильмов в БД для пользователей {} и {}", userId, friendId);
-        List<Film> commonFilms = findMany(FIND_COMMON_FILMS_QUERY, userId, friendId);
-        log.info("Найдено {} общих фильмов для пользователей {} и {}", commonFilms.size(), userId, friendId);
-        return commonFilms;
+    @Transactional
+    public int rebuildLikesCount() {
+        log.debug("Пересчет счетчиков лайков по таблице _like");
+        jdbc.update(RESET_LIKES_COUNT_QUERY);
+        int updatedFilms = jdbc.update(REBUILD_LIKES_COUNT_QUERY);
+        log.info("Счетчики лайков пересчитаны для {} фильмов", updatedFilms);
+        return updatedFilms;
     }
 
     @Override
@@ -233,60 +357,11 @@ public class FilmStorageDbImpl extends BaseStorage<Film> implements FilmStorage
     }
 
     @Override
-    public List<Film> searchFilms(String query, boolean searchByTitle, boolean searchByDirector) {
-        log.debug("Поиск фильмов в БД по запросу '{}' с параметрами by={}", query, List.of(searchByTitle ? "title" : "", searchByDirector ? "director" : "").stream().filter(s -> !s.isEmpty()).collect(Collectors.joining(",")));
-        StringBuilder sqlBuilder = new StringBuilder(
-                "SELECT f.*, COUNT(l.user_id) AS likes_count FROM _film f ");
-
-        if (searchByDirector) {
-            sqlBuilder.append("LEFT JOIN _film_director fd ON f.id = fd.film_id ");
-            sqlBuilder.append("LEFT JOIN _director d ON fd.director_id = d.id ");
-        }
-
-        sqlBuilder.append("LEFT JOIN _like l ON f.id = l.film_id ");
-        sqlBuilder.append("WHERE ");
-
-        List<String> conditions = new ArrayList<>();
-        MapSqlParameterSource parameters = new MapSqlParameterSource();
-
-        if (searchByTitle) {
-            conditions.add("LOWER(f.name) LIKE :query");
-            parameters.addValue("query", "%" + query.toLowerCase() + "%");
-        }
-
-        // вот здесь был косяк с формированием условий поиска, выдавало ошибку sql
-        // поправил пока так, но наверное можно сделать по-хорошему
-        // ------------------------------------------
-        if (searchByDirector) {
-            conditions.add("LOWER(d.name) LIKE :query");
-            parameters.addValue("query", "%" + query.toLowerCase() + "%");
-        }
-
-        sqlBuilder.append("(");
-
-        if (searchByTitle && searchByDirector) {
-            sqlBuilder.append(String.join(" OR ", conditions));
-        } else if (searchByTitle || searchByDirector) {
-            sqlBuilder.append(conditions.getFirst());
-        }
-
-        sqlBuilder.append(")");
-        // ------------------------------------------
-
-        sqlBuilder.append(" GROUP BY f.id ORDER BY likes_count DESC");
-
-        log.debug("Executing search films query: {}", sqlBuilder.toString());
-        log.debug("With parameters: {}", parameters.getValues());
-
-        return namedParameterJdbcTemplate.query(sqlBuilder.toString(), parameters, getMapper());
-    }
-
-    @Override
+    @Transactional
     public void deleteFilm(int filmId) {
         log.info("Удаление фильма с id: {}", filmId);
-        jdbc.update(DELETE_FILM_GENRES_QUERY, filmId);
-        jdbc.update(DELETE_FILM_LIKES_QUERY, filmId);
-        jdbc.update(DELETE_FILM_DIRECTORS_QUERY, filmId);
+        jdbc.update(DELETE_FILM_REVIEW_EVENTS_QUERY, filmId);
+        jdbc.update(DELETE_FILM_LIKE_EVENTS_QUERY, filmId);
 
         int affectedRows = jdbc.update(DELETE_FILM_QUERY, filmId);
 
@@ -297,6 +372,16 @@ public class FilmStorageDbImpl extends BaseStorage<Film> implements FilmStorage
         }
     }
 
+    @Override
+    public List<Integer> findReviewIds(int filmId) {
+        return jdbc.queryForList(FIND_FILM_REVIEW_IDS_QUERY, Integer.class, filmId);
+    }
+
+    @Override
+    public Set<Integer> findEventUserIds(int filmId) {
+        return new HashSet<>(jdbc.queryForList(FIND_FILM_EVENT_USER_IDS_QUERY, Integer.class, filmId, filmId));
+    }
+
     @Override
     public Set<Integer> findFilmLikesByUserId(Integer userId) {
         log.debug("Поиск лайков для пользователя {} в БД", userId);
@@ -306,19 +391,11 @@ public class FilmStorageDbImpl extends BaseStorage<Film> implements FilmStorage
     }
 
     @Override
-    public Map<Integer, Set<Integer>> findAllUsersLikes() {
-        log.debug("Поиск всех лайков всех пользователей в БД");
-        List<Map<String, Object>> likesData = jdbc.queryForList(FIND_ALL_USERS_LIKES_SQL);
-
-        Map<Integer, Set<Integer>> usersLikes = new HashMap<>();
-        for (Map<String, Object> row : likesData) {
-            Integer userId = (Integer) row.get("user_id");
-            Integer filmId = (Integer) row.get("film_id");
-
-            usersLikes.computeIfAbsent(userId, k -> new HashSet<>()).add(filmId);
-        }
-        log.debug("Собрана карта лайков для {} пользователей", usersLikes.size());
-        return usersLikes;
+    public void forEachLike(BiConsumer<Integer, Integer> userFilmConsumer) {
+        log.debug("Чтение всех лайков всех пользователей из БД");
+        jdbc.query(FIND_ALL_USERS_LIKES_SQL, rs -> {
+            userFilmConsumer.accept(rs.getInt("user_id"), rs.getInt("film_id"));
+        });
     }
 
     @Override
@@ -334,9 +411,74 @@ public class FilmStorageDbImpl extends BaseStorage<Film> implements FilmStorage
         MapSqlParameterSource parameters = new MapSqlParameterSource();
         parameters.addValue("filmIds", filmIds);
 
-        List<Film> films = namedParameterJdbcTemplate.query(sql, parameters, getMapper());
+        List<Film> films = hydrate(namedParameterJdbcTemplate.query(sql, parameters, getMapper()));
 
         log.debug("Найдено {} фильмов по списку ID", films.size());
         return films;
     }
-}
\ No newline at end of file
+
+    @Override
+    protected List<Film> findMany(String query, Object... params) {
+        return hydrate(super.findMany(query, params));
+    }
+
+    /**
+     * Догружает МПА, жанры и режиссёров сразу для всего списка фильмов:
+     * по одному запросу на каждую связь (с разбиением на пачки), вместо трёх запросов на каждый фильм.
+     */
+    private List<Film> hydrate(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Integer, Film> filmsById = new LinkedHashMap<>();
+        Set<Integer> mpaIds = new HashSet<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+            film.setGenres(new ArrayList<>());
+            film.setDirectors(new ArrayList<>());
+            if (film.getMpa() != null) {
+                mpaIds.add(film.getMpa().getId());
+            }
+        }
+
+        Map<Integer, Mpa> mpaById = findMpaByIds(mpaIds);
+        for (Film film : films) {
+            if (film.getMpa() != null) {
+                int mpaId = film.getMpa().getId();
+                Mpa mpa = mpaById.get(mpaId);
+                if (mpa == null) {
+                    throw new NotFoundException("MPA рейтинг не найден по id: " + mpaId);
+                }
+                film.setMpa(mpa);
+            }
+        }
+
+        List<Integer> filmIds = new ArrayList<>(filmsById.keySet());
+        for (int from = 0; from < filmIds.size(); from += HYDRATION_CHUNK_SIZE) {
+            List<Integer> chunk = filmIds.subList(from, Math.min(from + HYDRATION_CHUNK_SIZE, filmIds.size()));
+            MapSqlParameterSource parameters = new MapSqlParameterSource("filmIds", chunk);
+            namedParameterJdbcTemplate.query(FIND_GENRE_IDS_BY_FILM_IDS_SQL, parameters, rs -> {
+                filmsById.get(rs.getInt("film_id")).getGenres().add(rs.getInt("genre_id"));
+            });
+            namedParameterJdbcTemplate.query(FIND_DIRECTOR_IDS_BY_FILM_IDS_SQL, parameters, rs -> {
+                filmsById.get(rs.getInt("film_id")).getDirectors().add(rs.getInt("director_id"));
+            });
+        }
+        log.debug("Догружены связи для {} фильмов", filmsById.size());
+        return films;
+    }
+
+    private Map<Integer, Mpa> findMpaByIds(Set<Integer> mpaIds) {
+        Map<Integer, Mpa> mpaById = new HashMap<>();
+        if (mpaIds.isEmpty()) {
+            return mpaById;
+        }
+        namedParameterJdbcTemplate.query(FIND_MPA_BY_IDS_SQL, new MapSqlParameterSource("ids", mpaIds), rs -> {
+            Mpa mpa = new Mpa();
+            mpa.setId(rs.getInt("id"));
+            mpa.setName(rs.getString("name"));
+            mpaById.put(mpa.getId(), mpa);
+        });
+        return mpaById;
+    }
+}
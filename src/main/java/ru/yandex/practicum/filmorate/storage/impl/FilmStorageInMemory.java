@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.storage.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.enumeration.DirectorFilmSort;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -10,6 +11,8 @@ import ru.yandex.practicum.filmorate.storage.DirectorStorage;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -49,6 +52,12 @@ public class FilmStorageInMemory implements FilmStorage {
         return film;
     }
 
+    @Override
+    public List<Film> createFilms(List<Film> films) {
+        films.forEach(this::createFilm);
+        return films;
+    }
+
     @Override
     public Film updateFilm(Film updatedFilm) {
         log.debug("Попытка обновить фильм в памяти с id: {}", updatedFilm.getId());
@@ -88,14 +97,18 @@ public class FilmStorageInMemory implements FilmStorage {
     }
 
     @Override
-    public void addLikeToFilm(Integer filmId, Integer userId) {
+    public boolean addLikeToFilm(Integer filmId, Integer userId) {
         log.debug("Пользователь {} ставит лайк фильму {} в памяти", userId, filmId);
-        filmLikes.computeIfAbsent(filmId, k -> new HashSet<>()).add(userId);
+        if (!films.containsKey(filmId)) {
+            throw new NotFoundException(String.format("Фильм с id = %d не найден", filmId));
+        }
+        boolean added = filmLikes.computeIfAbsent(filmId, k -> new HashSet<>()).add(userId);
         log.info("Лайк пользователя {} добавлен к фильму {}", userId, filmId);
+        return added;
     }
 
     @Override
-    public void removeLikeFromFilm(Integer filmId, Integer userId) {
+    public boolean removeLikeFromFilm(Integer filmId, Integer userId) {
         log.debug("Пользователь {} удаляет лайк с фильма {} в памяти", userId, filmId);
         Set<Integer> likes = filmLikes.get(filmId);
         if (likes != null) {
@@ -108,50 +121,35 @@ public class FilmStorageInMemory implements FilmStorage {
             if (likes.isEmpty()) {
                 filmLikes.remove(filmId);
             }
-        } else {
-            log.warn("Попытка удалить лайк пользователя {} с фильма {} в памяти, но лайков для фильма не найдено", userId, filmId);
+            return removed;
         }
+        log.warn("Попытка удалить лайк пользователя {} с фильма {} в памяти, но лайков для фильма не найдено", userId, filmId);
+        return false;
     }
 
     @Override
-    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
-        log.debug("Получение {} самых популярных фильмов из памяти, фильтрация: genreId={}, year={}", count, genreId, year);
-
-        List<Film> filteredFilms = films.values().stream()
-                .filter(film -> {
-                    boolean matchesGenre = true;
-                    if (genreId != null) {
-                        matchesGenre = film.getGenres() != null && !film.getGenres().isEmpty() && film.getGenres().contains(genreId);
-                    }
-
-                    boolean matchesYear = true;
-                    if (year != null) {
-                        matchesYear = film.getReleaseDate() != null && film.getReleaseDate().getYear() == year;
-                    }
-
-                    return matchesGenre && matchesYear;
-                })
-                .collect(Collectors.toList());
-
-        filteredFilms.sort((f1, f2) -> {
-            int likes1 = filmLikes.getOrDefault(f1.getId(), Collections.emptySet()).size();
-            int likes2 = filmLikes.getOrDefault(f2.getId(), Collections.emptySet()).size();
-            return Integer.compare(likes2, likes1);
-        });
+    public List<Film> findAllFilms() {
+        log.debug("Получение всех фильмов из памяти");
+        return new ArrayList<>(films.values());
+    }
 
-        List<Film> result = filteredFilms.stream()
+    @Override
+    public List<Film> findAllFilms(int afterId, int count) {
+        return films.values().stream()
+                .filter(film -> film.getId() > afterId)
+                .sorted(Comparator.comparingInt(Film::getId))
                 .limit(count)
-                .collect(Collectors.toList());
-
-        log.info("Найдено {} популярных фильмов в памяти с фильтрацией", result.size());
-        return result;
+                .toList();
     }
 
-
     @Override
-    public List<Film> findAllFilms() {
-        log.debug("Получение всех фильмов из памяти");
-        return new ArrayList<>(films.values());
+    public void forEachFilmChunk(int chunkSize, Consumer<List<Film>> chunkConsumer) {
+        List<Film> sorted = films.values().stream()
+                .sorted(Comparator.comparingInt(Film::getId))
+                .toList();
+        for (int from = 0; from < sorted.size(); from += chunkSize) {
+            chunkConsumer.accept(sorted.subList(from, Math.min(from + chunkSize, sorted.size())));
+        }
     }
 
     private int getNextId() {
@@ -162,16 +160,16 @@ public class FilmStorageInMemory implements FilmStorage {
     }
 
     @Override
-    public List<Film> findCommonFilms(int userId, int friendId) {
-        log.warn("In-memory FilmStorage does not fully support common films logic. Returning empty list.");
-        return new ArrayList<>();
-    }
-
-    @Override
-    public List<Film> getFilmsByDirector(int directorId) {
-        log.debug("Получение фильмов режиссера {} из памяти", directorId);
+    public List<Film> getFilmsByDirector(int directorId, DirectorFilmSort sort, Film after, int count) {
+        log.debug("Получение фильмов режиссера {} из памяти: sort={}, after={}, count={}",
+                directorId, sort, after == null ? null : after.getId(), count);
+        Comparator<Film> comparator = sort.comparator();
         return films.values().stream()
                 .filter(film -> filmDirectors.getOrDefault(film.getId(), Collections.emptySet()).contains(directorId))
+                .peek(film -> film.setLikesCount(countLikes(film.getId())))
+                .filter(film -> after == null || comparator.compare(film, after) > 0)
+                .sorted(comparator)
+                .limit(count)
                 .collect(Collectors.toList());
     }
 
@@ -181,6 +179,12 @@ public class FilmStorageInMemory implements FilmStorage {
         return filmLikes.getOrDefault(filmId, Collections.emptySet()).size();
     }
 
+    @Override
+    public int rebuildLikesCount() {
+        log.debug("Счетчики лайков в памяти вычисляются на лету, пересчет не требуется");
+        return films.size();
+    }
+
     @Override
     public void deleteDirectorsFromFilm(int filmId) {
         log.debug("Удаление всех режиссеров для фильма с id {} в памяти", filmId);
@@ -195,42 +199,6 @@ public class FilmStorageInMemory implements FilmStorage {
         log.info("Режиссер {} добавлен к фильму {}", directorId, filmId);
     }
 
-    @Override
-    public List<Film> searchFilms(String query, boolean searchByTitle, boolean searchByDirector) {
-        log.debug("Поиск фильмов по запросу '{}' с параметрами by={} в памяти", query, List.of(searchByTitle ? "title" : "", searchByDirector ? "director" : "").stream().filter(s -> !s.isEmpty()).collect(Collectors.joining(",")));
-        String lowerQuery = query.toLowerCase();
-
-        List<Film> foundFilms = films.values().stream()
-                .filter(film -> {
-                    boolean matches = false;
-
-                    if (searchByTitle && film.getName().toLowerCase().contains(lowerQuery)) {
-                        matches = true;
-                    }
-
-                    if (searchByDirector && !matches) {
-                        Set<Integer> filmDirectorIds = filmDirectors.getOrDefault(film.getId(), Collections.emptySet());
-                        matches = filmDirectorIds.stream()
-                                .map(directorStorage::findDirectorById)
-                                .filter(Optional::isPresent)
-                                .map(Optional::get)
-                                .anyMatch(director -> director.getName().toLowerCase().contains(lowerQuery));
-                    }
-
-                    return matches;
-                })
-                .sorted((f1, f2) -> {
-                    int likes1 = filmLikes.getOrDefault(f1.getId(), Collections.emptySet()).size();
-                    int likes2 = filmLikes.getOrDefault(f2.getId(), Collections.emptySet()).size();
-                    return Integer.compare(likes2, likes1);
-                })
-                .collect(Collectors.toList());
-
-        log.info("Найдено {} фильмов в памяти по запросу '{}'", foundFilms.size(), query);
-        return foundFilms;
-    }
-
-
     @Override
     public void deleteFilm(int filmId) {
         log.info("Удаление фильма с id: {} из памяти", filmId);
@@ -246,6 +214,16 @@ public class FilmStorageInMemory implements FilmStorage {
     }
 
 
+    @Override
+    public List<Integer> findReviewIds(int filmId) {
+        return List.of();
+    }
+
+    @Override
+    public Set<Integer> findEventUserIds(int filmId) {
+        return Set.of();
+    }
+
     @Override
     public Set<Integer> findFilmLikesByUserId(Integer userId) {
         log.debug("Поиск лайков для пользователя {} в памяти", userId);
@@ -262,20 +240,9 @@ public class FilmStorageInMemory implements FilmStorage {
     }
 
     @Override
-    public Map<Integer, Set<Integer>> findAllUsersLikes() {
-        log.debug("Поиск всех лайков всех пользователей в памяти");
-        Map<Integer, Set<Integer>> usersLikes = new HashMap<>();
-        for (Map.Entry<Integer, Set<Integer>> entry : filmLikes.entrySet()) {
-            Integer filmId = entry.getKey();
-            Set<Integer> userIds = entry.getValue();
-            if (userIds != null) {
-                for (Integer userId : userIds) {
-                    usersLikes.computeIfAbsent(userId, k -> new HashSet<>()).add(filmId);
-                }
-            }
-        }
-        log.debug("Собрана карта лайков для {} пользователей в памяти", usersLikes.size());
-        return usersLikes;
+    public void forEachLike(BiConsumer<Integer, Integer> userFilmConsumer) {
+        log.debug("Чтение всех лайков всех пользователей в памяти");
+        filmLikes.forEach((filmId, userIds) -> userIds.forEach(userId -> userFilmConsumer.accept(userId, filmId)));
     }
 
     @Override
@@ -1,15 +1,24 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.enumeration.ReviewRating;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.storage.BaseStorage;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
 
+import java.sql.PreparedStatement;
+import java.sql.Statement;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Slf4j
@@ -17,15 +26,34 @@ import java.util.Optional;
 public class ReviewStorageDbImpl extends BaseStorage<Review> implements ReviewStorage {
     private static final String FIND_BY_ID_QUERY = "SELECT * FROM _review WHERE id = ?";
     private static final String FIND_ALL_QUERY = "SELECT * FROM _review ORDER BY useful";
-    private static final String FIND_ALL_LIMIT_QUERY = "SELECT * FROM _review ORDER BY useful DESC LIMIT ?";
-    private static final String FIND_ALL_FILMID_LIMIT_QUERY = "SELECT * FROM _review WHERE film_id = ? ORDER BY useful DESC LIMIT ?";
-    private static final String INSERT_QUERY = "INSERT INTO _review (content, is_positive, user_id, film_id) VALUES (?, ?, ?, ?)";
+    private static final String FIND_ALL_LIMIT_QUERY = "SELECT * FROM _review ORDER BY useful DESC, id LIMIT ?";
+    private static final String FIND_ALL_FILMID_LIMIT_QUERY = "SELECT * FROM _review WHERE film_id = ? ORDER BY useful DESC, id LIMIT ?";
+    // Продолжение выдачи после отзыва с ключом (useful, id) в порядке useful DESC, id.
+    // Ключ изменяемый: отзыв, оценённый между страницами, может повториться или быть пропущен
+    private static final String FIND_PAGE_QUERY = "SELECT * FROM _review " +
+            "WHERE useful < ? OR (useful = ? AND id > ?) ORDER BY useful DESC, id LIMIT ?";
+    private static final String FIND_FILMID_PAGE_QUERY = "SELECT * FROM _review " +
+            "WHERE film_id = ? AND (useful < ? OR (useful = ? AND id > ?)) ORDER BY useful DESC, id LIMIT ?";
+    // Строка вставляется, только если существуют и пользователь, и фильм; повторный отзыв отклоняет уникальный индекс
+    private static final String INSERT_QUERY = "INSERT INTO _review (content, is_positive, user_id, film_id) " +
+            "SELECT ?, ?, u.id, f.id FROM _user u, _film f WHERE u.id = ? AND f.id = ?";
+    private static final String FIND_REVIEW_TARGETS_QUERY =
+            "SELECT EXISTS (SELECT 1 FROM _user WHERE id = ?), EXISTS (SELECT 1 FROM _film WHERE id = ?)";
     private static final String UPDATE_QUERY = "UPDATE _review SET content = ?, is_positive = ?, user_id = ?, film_id = ? WHERE id = ?";
     private static final String DELETE_QUERY = "DELETE FROM _review WHERE id = ?";
-    private static final String INSERT_REVIEW_RATING_QUERY = "INSERT INTO _review_rating (review_id, user_id, is_like) VALUES (?, ?, ?)";
+    // Блокировка отзыва упорядочивает все изменения оценок этого отзыва
+    private static final String LOCK_REVIEW_QUERY = "SELECT id FROM _review WHERE id = ? FOR UPDATE";
+    private static final String GET_USER_REVIEW_RATING_QUERY = "SELECT is_like FROM _review_rating WHERE review_id = ? AND user_id = ?";
+    // Строка-источник есть, только если пользователь существует
+    private static final String MERGE_REVIEW_RATING_QUERY = """
+                MERGE INTO _review_rating rr
+                USING (SELECT id AS user_id FROM _user WHERE id = ?) u
+                ON rr.review_id = ? AND rr.user_id = u.user_id
+                WHEN MATCHED THEN UPDATE SET is_like = ?
+                WHEN NOT MATCHED THEN INSERT (review_id, user_id, is_like) VALUES (?, u.user_id, ?)
+            """;
     private static final String DELETE_REVIEW_RATING_QUERY = "DELETE FROM _review_rating WHERE review_id = ? AND user_id = ?";
     private static final String UPDATE_USEFUL_INCREMENT_QUERY = "UPDATE _review SET useful = useful + ? WHERE id = ?";
-    private static final String GET_USER_REVIEW_RATING_QUERY = "SELECT is_like FROM _review_rating WHERE review_id = ? AND user_id = ?";
 
     public ReviewStorageDbImpl(JdbcTemplate jdbc, RowMapper<Review> mapper) {
         super(jdbc, mapper);
@@ -54,19 +82,54 @@ public class ReviewStorageDbImpl extends BaseStorage<Review> implements ReviewSt
         return findMany(FIND_ALL_FILMID_LIMIT_QUERY, filmId, count);
     }
 
+    @Override
+    public List<Review> findAllReviews(Integer filmId, int afterUseful, int afterId, int count) {
+        log.debug("Вывод {} отзывов по id фильма: {} после отзыва с полезностью {} и id {}", count, filmId, afterUseful, afterId);
+        if (filmId == null) {
+            return findMany(FIND_PAGE_QUERY, afterUseful, afterUseful, afterId, count);
+        }
+        return findMany(FIND_FILMID_PAGE_QUERY, filmId, afterUseful, afterUseful, afterId, count);
+    }
+
+    @Override
     public Review createReview(Review review) {
-        int id = insert(
-                INSERT_QUERY,
-                review.getContent(),
-                review.getIsPositive(),
-                review.getUserId(),
-                review.getFilmId()
-        );
-        review.setId(id);
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        int insertedRows;
+        try {
+            insertedRows = jdbc.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(INSERT_QUERY, Statement.RETURN_GENERATED_KEYS);
+                ps.setString(1, review.getContent());
+                ps.setBoolean(2, review.getIsPositive());
+                ps.setInt(3, review.getUserId());
+                ps.setInt(4, review.getFilmId());
+                return ps;
+            }, keyHolder);
+        } catch (DuplicateKeyException e) {
+            throw new ValidationException(String.format("Пользователь с id: %s уже оставлял отзыв на фильм с id: %s",
+                    review.getUserId(), review.getFilmId()));
+        }
+        if (insertedRows == 0) {
+            checkReviewTargets(review.getUserId(), review.getFilmId());
+        }
+        review.setId(Objects.requireNonNull(keyHolder.getKeyAs(Integer.class)));
         log.debug("Отзыв с id = {} - добавлен", review.getId());
         return review;
     }
 
+    /**
+     * Отзыв не вставлен: сообщает, кого из автора и фильма нет.
+     */
+    private void checkReviewTargets(int userId, int filmId) {
+        jdbc.query(FIND_REVIEW_TARGETS_QUERY, rs -> {
+            if (!rs.getBoolean(1)) {
+                throw new NotFoundException(String.format("Пользователь с id: %s не найден", userId));
+            }
+            if (!rs.getBoolean(2)) {
+                throw new NotFoundException(String.format("Фильм с id: %s не найден", filmId));
+            }
+        }, userId, filmId);
+    }
+
     @Override
     public Review updateReview(Review review) {
         update(
@@ -87,66 +150,28 @@ public class ReviewStorageDbImpl extends BaseStorage<Review> implements ReviewSt
     }
 
     @Override
-    public void addLike(int reviewId, int userId) {
-        insert(
-                INSERT_REVIEW_RATING_QUERY,
-                reviewId,
-                userId,
-                true
-        );
-        jdbc.update(
-                UPDATE_USEFUL_INCREMENT_QUERY,
-                1,
-                reviewId
-        );
-        log.debug("Отзыв с id = {} получил лайк от пользователя с id = {}", reviewId, userId);
-    }
-
-    @Override
-    public void removeLike(int reviewId, int userId) {
-        delete(DELETE_REVIEW_RATING_QUERY, reviewId, userId);
-        jdbc.update(
-                UPDATE_USEFUL_INCREMENT_QUERY,
-                -1,
-                reviewId
-        );
-        log.debug("Отзыв с id = {} потерял лайк от пользователя с id = {}", reviewId, userId);
-    }
-
-    @Override
-    public void addDislike(int reviewId, int userId) {
-        insert(
-                INSERT_REVIEW_RATING_QUERY,
-                reviewId,
-                userId,
-                false
-        );
-        jdbc.update(
-                UPDATE_USEFUL_INCREMENT_QUERY,
-                -1,
-                reviewId
-        );
-        log.debug("Отзыв с id = {} получил дизлайк от пользователя с id = {}", reviewId, userId);
-    }
-
-    @Override
-    public void removeDislike(int reviewId, int userId) {
-        delete(DELETE_REVIEW_RATING_QUERY, reviewId, userId);
-        jdbc.update(
-                UPDATE_USEFUL_INCREMENT_QUERY,
-                1,
-                reviewId
-        );
-        log.debug("Отзыв с id = {} потерял дизлайк от пользователя с id = {}", reviewId, userId);
-    }
+    @Transactional
+    public ReviewRating changeRating(int reviewId, int userId, ReviewRating expected, ReviewRating target) {
+        if (jdbc.queryForList(LOCK_REVIEW_QUERY, Integer.class, reviewId).isEmpty()) {
+            throw new NotFoundException(String.format("Отзыв с id = %d не найден", reviewId));
+        }
+        ReviewRating current = ReviewRating.of(DataAccessUtils.singleResult(
+                jdbc.queryForList(GET_USER_REVIEW_RATING_QUERY, Boolean.class, reviewId, userId)));
+        if (current == target || (expected != null && current != expected)) {
+            return current;
+        }
 
-    @Override
-    public Optional<Boolean> getUserReviewRating(int reviewId, int userId) {
-        try {
-            return Optional.ofNullable(jdbc.queryForObject(GET_USER_REVIEW_RATING_QUERY, Boolean.class, reviewId, userId));
-        } catch (EmptyResultDataAccessException e) {
-            return Optional.empty();
+        if (target == ReviewRating.NONE) {
+            jdbc.update(DELETE_REVIEW_RATING_QUERY, reviewId, userId);
+        } else {
+            boolean isLike = target == ReviewRating.LIKE;
+            if (jdbc.update(MERGE_REVIEW_RATING_QUERY, userId, reviewId, isLike, reviewId, isLike) == 0) {
+                throw new NotFoundException(String.format("Пользователь с id: %s не найден", userId));
+            }
         }
+        jdbc.update(UPDATE_USEFUL_INCREMENT_QUERY, target.getUseful() - current.getUseful(), reviewId);
+        log.debug("Оценка отзыва с id = {} пользователем с id = {} изменена: {} -> {}", reviewId, userId, current, target);
+        return current;
     }
 
 }
@@ -1,12 +1,17 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dto.UserFriendDto;
 import ru.yandex.practicum.filmorate.enumeration.EventOperation;
 import ru.yandex.practicum.filmorate.enumeration.EventType;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.rowMapper.UserEventRowMapper;
 import ru.yandex.practicum.filmorate.rowMapper.UserFriendDtoRowMapper;
 import ru.yandex.practicum.filmorate.model.User;
@@ -15,17 +20,31 @@ import ru.yandex.practicum.filmorate.storage.BaseStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component("UserStorageDbImpl")
 public class UserStorageDbImpl extends BaseStorage<User> implements UserStorage {
     // USER
     private static final String FIND_BY_ID_QUERY = "SELECT * FROM _user WHERE id = ?";
+    // Каждая ветка читает по своему уникальному индексу
+    private static final String FIND_BY_LOGIN_OR_EMAIL_QUERY = "SELECT * FROM _user WHERE login = ? " +
+            "UNION SELECT * FROM _user WHERE email = ?";
     private static final String FIND_ALL_QUERY = "SELECT * FROM _user";
+    private static final String FIND_ALL_ORDERED_QUERY = "SELECT * FROM _user ORDER BY id";
+    private static final String FIND_BY_IDS_QUERY = "SELECT * FROM _user WHERE id IN (:userIds) ORDER BY id";
+    private static final String FIND_PAGE_QUERY = "SELECT * FROM _user WHERE id > ? ORDER BY id LIMIT ?";
     private static final String INSERT_QUERY = "INSERT INTO _user (login,email,name,birthday_dt) VALUES (?,?,?,?)";
     private static final String UPDATE_QUERY = "UPDATE _user SET login = ?, email = ?, name = ?, birthday_dt = ? WHERE id = ?";
+    // Дружба, лайки, отзывы и оценки удаляются каскадно по внешним ключам
     private static final String DELETE_QUERY = "DELETE FROM _user WHERE id = ?";
     // FRIENDSHIP
     private static final String ADD_USER_FRIEND_QUERY = "INSERT INTO _user_friend (user_id, friend_id, status_id) SELECT ?, ?, ?";
@@ -34,15 +53,62 @@ public class UserStorageDbImpl extends BaseStorage<User> implements UserStorage
             "JOIN _user_friend uf ON u.id = uf.friend_id " +
             "JOIN _friend_status fs ON uf.status_id = fs.id " +
             "WHERE uf.user_id  = ?";
+    private static final String FIND_FRIENDS_BY_IDS_QUERY = "SELECT u.*, fs.name AS friendship_status FROM _user u " +
+            "JOIN _user_friend uf ON u.id = uf.friend_id " +
+            "JOIN _friend_status fs ON uf.status_id = fs.id " +
+            "WHERE uf.user_id = :userId AND uf.friend_id IN (:friendIds) ORDER BY u.id";
+    private static final String FIND_ALL_FRIENDSHIPS_QUERY = "SELECT user_id, friend_id FROM _user_friend";
+    // Размер пачки id для IN-списка
+    private static final int IN_CHUNK_SIZE = 1000;
     // EVENT
-    private static final String FIND_EVENTS_BY_USERID_QUERY = "SELECT * FROM _user_event WHERE user_id = ? ORDER BY timestamp";
+    private static final String FIND_LATEST_EVENTS_BY_USERID_QUERY = "SELECT * FROM _user_event " +
+            "WHERE user_id = ? AND timestamp > ? AND timestamp < ? ORDER BY timestamp DESC, id DESC LIMIT ?";
+    private static final String FIND_EVENTS_AFTER_BY_USERID_QUERY = "SELECT * FROM _user_event " +
+            "WHERE user_id = ? AND timestamp >= ? AND (timestamp > ? OR id > ?) ORDER BY timestamp, id LIMIT ?";
     private static final String ADD_EVENT_QUERY = "INSERT INTO _user_event (timestamp,user_id,event_type,operation,entity_id) VALUES (?,?,?,?,?)";
 
-    private static final String DELETE_USER_FRIENDS_QUERY = "DELETE FROM _user_friend WHERE user_id = ? OR friend_id = ?";
+    // DELETE
+    private static final String DECREMENT_LIKED_FILMS_QUERY =
+            "UPDATE _film SET likes_count = likes_count - 1 WHERE id IN (SELECT film_id FROM _like WHERE user_id = ?)";
+    private static final String REVERT_USER_RATINGS_QUERY = """
+                UPDATE _review r
+                SET useful = useful - (SELECT CASE WHEN rr.is_like THEN 1 ELSE -1 END FROM _review_rating rr
+                                       WHERE rr.review_id = r.id AND rr.user_id = ?)
+                WHERE r.id IN (SELECT review_id FROM _review_rating WHERE user_id = ?)
+            """;
     private static final String DELETE_USER_EVENTS_QUERY = "DELETE FROM _user_event WHERE user_id = ?";
+    private static final String DELETE_FRIEND_EVENTS_QUERY = "DELETE FROM _user_event WHERE entity_id = ? AND event_type = 'FRIEND'";
+    private static final String FIND_FRIEND_EVENT_USER_IDS_QUERY =
+            "SELECT DISTINCT user_id FROM _user_event WHERE entity_id = ? AND event_type = 'FRIEND'";
+    // Удаление истории пачками
+    private static final String FIND_LIKED_FILMS_BATCH_QUERY =
+            "SELECT film_id FROM _like WHERE user_id = ? ORDER BY film_id LIMIT ? FOR UPDATE";
+    private static final String DECREMENT_FILMS_LIKES_QUERY = "UPDATE _film SET likes_count = likes_count - 1 WHERE id IN (:filmIds)";
+    private static final String DELETE_LIKES_BATCH_QUERY = "DELETE FROM _like WHERE user_id = :userId AND film_id IN (:filmIds)";
+    private static final String FIND_RATED_REVIEWS_BATCH_QUERY =
+            "SELECT review_id FROM _review_rating WHERE user_id = ? ORDER BY review_id LIMIT ?";
+    private static final String REVERT_RATINGS_BATCH_QUERY = """
+                UPDATE _review r
+                SET useful = useful - (SELECT CASE WHEN rr.is_like THEN 1 ELSE -1 END FROM _review_rating rr
+                                       WHERE rr.review_id = r.id AND rr.user_id = :userId)
+                WHERE r.id IN (SELECT review_id FROM _review_rating WHERE user_id = :userId AND review_id IN (:reviewIds))
+            """;
+    private static final String DELETE_RATINGS_BATCH_QUERY =
+            "DELETE FROM _review_rating WHERE user_id = :userId AND review_id IN (:reviewIds)";
+    private static final String DELETE_REVIEWS_BATCH_QUERY =
+            "DELETE FROM _review WHERE id IN (SELECT id FROM _review WHERE user_id = ? LIMIT ?)";
+    private static final String DELETE_EVENTS_BATCH_QUERY =
+            "DELETE FROM _user_event WHERE id IN (SELECT id FROM _user_event WHERE user_id = ? LIMIT ?)";
+    private static final String DELETE_FRIENDS_BATCH_QUERY =
+            "DELETE FROM _user_friend WHERE id IN (SELECT id FROM _user_friend WHERE user_id = ? LIMIT ?)";
+    private static final String DELETE_FRIEND_OF_BATCH_QUERY =
+            "DELETE FROM _user_friend WHERE id IN (SELECT id FROM _user_friend WHERE friend_id = ? LIMIT ?)";
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
     public UserStorageDbImpl(JdbcTemplate jdbc, RowMapper<User> mapper) {
         super(jdbc, mapper);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbc);
     }
 
     @Override
@@ -51,50 +117,145 @@ public class UserStorageDbImpl extends BaseStorage<User> implements UserStorage
         return findOne(FIND_BY_ID_QUERY, userId);
     }
 
+    @Override
+    public List<User> findUsersByIds(Collection<Integer> userIds) {
+        log.debug("Вывод {} пользователей по списку id", userIds.size());
+        List<Integer> ids = new ArrayList<>(userIds);
+        List<User> users = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("userIds", ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size())));
+            users.addAll(namedParameterJdbcTemplate.query(FIND_BY_IDS_QUERY, parameters, mapper));
+        }
+        return users;
+    }
+
     @Override
     public List<User> findAllUsers() {
         log.debug("Вывод всех пользователей");
         return findMany(FIND_ALL_QUERY);
     }
 
+    @Override
+    public List<User> findAllUsers(int afterId, int count) {
+        log.debug("Вывод {} пользователей после id = {}", count, afterId);
+        return findMany(FIND_PAGE_QUERY, afterId, count);
+    }
+
+    /**
+     * Курсор читается в одной транзакции только для чтения: соединение и снимок данных не меняются до конца выгрузки.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachUserChunk(int chunkSize, Consumer<List<User>> chunkConsumer) {
+        log.debug("Потоковое чтение всех пользователей из БД пачками по {}", chunkSize);
+        streamMany(FIND_ALL_ORDERED_QUERY, chunkSize, chunkConsumer);
+    }
+
     @Override
     public User createUser(User user) {
-        int id = insert(
-                INSERT_QUERY,
-                user.getLogin(),
-                user.getEmail(),
-                user.getName(),
-                user.getBirthday()
-        );
+        int id;
+        try {
+            id = insert(
+                    INSERT_QUERY,
+                    user.getLogin(),
+                    user.getEmail(),
+                    user.getName(),
+                    user.getBirthday()
+            );
+        } catch (DuplicateKeyException e) {
+            // Логин или email заняли между проверкой в сервисе и вставкой
+            throw new ValidationException("Пользователь с таким login или email уже существует");
+        }
         user.setId(id);
         log.debug("Пользователь с id = {} - добавлен", user.getId());
         return user;
     }
 
+    @Override
+    public List<User> findUsersByLoginOrEmail(String login, String email) {
+        return findMany(FIND_BY_LOGIN_OR_EMAIL_QUERY, login, email);
+    }
+
     @Override
     public User updateUser(User user) {
-        update(
-                UPDATE_QUERY,
-                user.getLogin(),
-                user.getEmail(),
-                user.getName(),
-                Date.valueOf(user.getBirthday()).toString(),
-                user.getId());
+        try {
+            update(
+                    UPDATE_QUERY,
+                    user.getLogin(),
+                    user.getEmail(),
+                    user.getName(),
+                    Date.valueOf(user.getBirthday()).toString(),
+                    user.getId());
+        } catch (DuplicateKeyException e) {
+            throw new ValidationException("Логин или email совпадает с логином или email другого пользователя");
+        }
         log.debug("Пользователь с id = {} - обновлен", user.getId());
         return user;
     }
 
     @Override
+    @Transactional
     public void deleteUser(int userId) {
-        // Удаляем дружеские связи
-        delete(DELETE_USER_FRIENDS_QUERY, userId, userId);
-        // Удаляем события
+        // Вклад пользователя вычитается до того, как каскад удалит его лайки и оценки
+        update(DECREMENT_LIKED_FILMS_QUERY, userId);
+        update(REVERT_USER_RATINGS_QUERY, userId, userId);
         delete(DELETE_USER_EVENTS_QUERY, userId);
-        // Удаляем самого пользователя
+        delete(DELETE_FRIEND_EVENTS_QUERY, userId);
         delete(DELETE_QUERY, userId);
         log.debug("Пользователь с id = {} - удален", userId);
     }
 
+    @Override
+    public Set<Integer> findFriendEventUserIds(int userId) {
+        return new HashSet<>(jdbc.queryForList(FIND_FRIEND_EVENT_USER_IDS_QUERY, Integer.class, userId));
+    }
+
+    @Override
+    @Transactional
+    public List<Integer> purgeUserLikes(int userId, int batchSize) {
+        // Лайки пачки блокируются, чтобы счетчик уменьшился ровно на удалённые строки
+        List<Integer> filmIds = jdbc.queryForList(FIND_LIKED_FILMS_BATCH_QUERY, Integer.class, userId, batchSize);
+        if (filmIds.isEmpty()) {
+            return filmIds;
+        }
+        MapSqlParameterSource parameters = new MapSqlParameterSource("userId", userId)
+                .addValue("filmIds", filmIds);
+        namedParameterJdbcTemplate.update(DECREMENT_FILMS_LIKES_QUERY, parameters);
+        namedParameterJdbcTemplate.update(DELETE_LIKES_BATCH_QUERY, parameters);
+        log.debug("У пользователя {} удалено лайков: {}", userId, filmIds.size());
+        return filmIds;
+    }
+
+    @Override
+    @Transactional
+    public int purgeUserHistory(int userId, int batchSize) {
+        int deleted = purgeRatings(userId, batchSize);
+        if (deleted == 0) {
+            deleted = jdbc.update(DELETE_REVIEWS_BATCH_QUERY, userId, batchSize);
+        }
+        if (deleted == 0) {
+            deleted = jdbc.update(DELETE_EVENTS_BATCH_QUERY, userId, batchSize);
+        }
+        if (deleted == 0) {
+            deleted = jdbc.update(DELETE_FRIENDS_BATCH_QUERY, userId, batchSize)
+                    + jdbc.update(DELETE_FRIEND_OF_BATCH_QUERY, userId, batchSize);
+        }
+        log.debug("Из истории пользователя {} удалено строк: {}", userId, deleted);
+        return deleted;
+    }
+
+    private int purgeRatings(int userId, int batchSize) {
+        List<Integer> reviewIds = jdbc.queryForList(FIND_RATED_REVIEWS_BATCH_QUERY, Integer.class, userId, batchSize);
+        if (reviewIds.isEmpty()) {
+            return 0;
+        }
+        MapSqlParameterSource parameters = new MapSqlParameterSource("userId", userId)
+                .addValue("reviewIds", reviewIds);
+        namedParameterJdbcTemplate.update(REVERT_RATINGS_BATCH_QUERY, parameters);
+        return namedParameterJdbcTemplate.update(DELETE_RATINGS_BATCH_QUERY, parameters);
+    }
+
     @Override
     public void addFriendRequest(int userId, int friendId) {
         insert(
@@ -118,22 +279,81 @@ public class UserStorageDbImpl extends BaseStorage<User> implements UserStorage
     }
 
     @Override
-    public List<UserEvent> findEventsByUserId(int userId) {
-        log.debug("Вывод событий пользователя с id = {}", userId);
-        return jdbc.query(FIND_EVENTS_BY_USERID_QUERY, new UserEventRowMapper(), userId);
+    public List<UserFriendDto> findFriendsByIds(int userId, Collection<Integer> friendIds) {
+        log.debug("Вывод {} друзей пользователя с id = {} по списку id", friendIds.size(), userId);
+        List<Integer> ids = new ArrayList<>(friendIds);
+        List<UserFriendDto> friends = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("userId", userId)
+                    .addValue("friendIds", ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size())));
+            friends.addAll(namedParameterJdbcTemplate.query(FIND_FRIENDS_BY_IDS_QUERY, parameters, new UserFriendDtoRowMapper()));
+        }
+        return friends;
     }
 
     @Override
-    public void addEvent(Integer userId, EventType eventType, EventOperation operation, Integer entityId) {
-        insert(
+    public void forEachFriendship(BiConsumer<Integer, Integer> userFriendConsumer) {
+        log.debug("Чтение всех связей дружбы из БД");
+        jdbc.query(FIND_ALL_FRIENDSHIPS_QUERY, rs -> {
+            userFriendConsumer.accept(rs.getInt("user_id"), rs.getInt("friend_id"));
+        });
+    }
+
+    @Override
+    public List<UserEvent> findEventsByUserId(int userId, Long since, Long before, int count) {
+        log.debug("Вывод {} последних событий пользователя с id = {} между {} и {}", count, userId, since, before);
+        List<UserEvent> events = new ArrayList<>(jdbc.query(FIND_LATEST_EVENTS_BY_USERID_QUERY, new UserEventRowMapper(),
+                userId,
+                since == null ? Long.MIN_VALUE : since,
+                before == null ? Long.MAX_VALUE : before,
+                count));
+        Collections.reverse(events);
+        return events;
+    }
+
+    @Override
+    public List<UserEvent> findEventsByUserIdAfter(int userId, long afterTimestamp, int afterEventId, int count) {
+        log.debug("Вывод {} событий пользователя с id = {} после события {} ({})",
+                count, userId, afterEventId, afterTimestamp);
+        return jdbc.query(FIND_EVENTS_AFTER_BY_USERID_QUERY, new UserEventRowMapper(),
+                userId, afterTimestamp, afterTimestamp, afterEventId, count);
+    }
+
+    @Override
+    @Transactional
+    public void addEvents(List<UserEvent> events) {
+        List<Object[]> batchArgs = new ArrayList<>(events.size());
+        for (UserEvent event : events) {
+            batchArgs.add(new Object[]{event.getTimestamp(), event.getUserId(), event.getEventType().toString(),
+                    event.getOperation().toString(), event.getEntityId()});
+        }
+        List<Integer> ids = batchInsertReturningKeys(ADD_EVENT_QUERY, batchArgs);
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setEventId(ids.get(i));
+        }
+        log.debug("Добавлено событий пользователей: {}", events.size());
+    }
+
+    @Override
+    public UserEvent addEvent(Integer userId, EventType eventType, EventOperation operation, Integer entityId) {
+        UserEvent event = new UserEvent();
+        event.setTimestamp(System.currentTimeMillis());
+        event.setUserId(userId);
+        event.setEventType(eventType);
+        event.setOperation(operation);
+        event.setEntityId(entityId);
+        int id = insert(
                 ADD_EVENT_QUERY,
-                System.currentTimeMillis(),
+                event.getTimestamp(),
                 userId,
                 eventType.toString(),
                 operation.toString(),
                 entityId
         );
+        event.setEventId(id);
         log.debug("Событие пользователя с id = {} - добавлено", userId);
+        return event;
     }
 }
 
@@ -13,6 +13,8 @@ import ru.yandex.practicum.filmorate.model.UserEvent;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component("UserStorageInMemory")
@@ -28,6 +30,13 @@ public class UserStorageInMemory implements UserStorage {
         return user;
     }
 
+    @Override
+    public List<User> findUsersByLoginOrEmail(String login, String email) {
+        return users.values().stream()
+                .filter(user -> user.getLogin().equals(login) || user.getEmail().equals(email))
+                .toList();
+    }
+
     @Override
     public User updateUser(User updatedUser) {
 
@@ -54,16 +63,60 @@ public class UserStorageInMemory implements UserStorage {
         users.remove(userId);
     }
 
+    @Override
+    public List<Integer> purgeUserLikes(int userId, int batchSize) {
+        return List.of();
+    }
+
+    @Override
+    public int purgeUserHistory(int userId, int batchSize) {
+        log.debug("История пользователя {} в памяти не хранится, удалять пачками нечего", userId);
+        return 0;
+    }
+
+    @Override
+    public Set<Integer> findFriendEventUserIds(int userId) {
+        return Set.of();
+    }
+
     @Override
     public Optional<User> findUserById(int userId) {
         return Optional.ofNullable(users.get(userId));
     }
 
+    @Override
+    public List<User> findUsersByIds(Collection<Integer> userIds) {
+        return userIds.stream()
+                .sorted()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
     @Override
     public List<User> findAllUsers() {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public List<User> findAllUsers(int afterId, int count) {
+        return users.values().stream()
+                .filter(user -> user.getId() > afterId)
+                .sorted(Comparator.comparingInt(User::getId))
+                .limit(count)
+                .toList();
+    }
+
+    @Override
+    public void forEachUserChunk(int chunkSize, Consumer<List<User>> chunkConsumer) {
+        List<User> sorted = users.values().stream()
+                .sorted(Comparator.comparingInt(User::getId))
+                .toList();
+        for (int from = 0; from < sorted.size(); from += chunkSize) {
+            chunkConsumer.accept(sorted.subList(from, Math.min(from + chunkSize, sorted.size())));
+        }
+    }
+
     @Override
     public void addFriendRequest(int userId, int friendId) {
 
@@ -79,13 +132,38 @@ public class UserStorageInMemory implements UserStorage {
     }
 
     @Override
-    public List<UserEvent> findEventsByUserId(int userId) {
+    public List<UserFriendDto> findFriendsByIds(int userId, Collection<Integer> friendIds) {
+        return List.of();
+    }
+
+    @Override
+    public void forEachFriendship(BiConsumer<Integer, Integer> userFriendConsumer) {
+    }
+
+    @Override
+    public List<UserEvent> findEventsByUserId(int userId, Long since, Long before, int count) {
         return List.of();
     }
 
     @Override
-    public void addEvent(Integer userId, EventType eventType, EventOperation operation, Integer entityId) {
+    public List<UserEvent> findEventsByUserIdAfter(int userId, long afterTimestamp, int afterEventId, int count) {
+        return List.of();
+    }
 
+    @Override
+    public void addEvents(List<UserEvent> events) {
+    }
+
+    @Override
+    public UserEvent addEvent(Integer userId, EventType eventType, EventOperation operation, Integer entityId) {
+        UserEvent event = new UserEvent();
+        event.setEventId(0);
+        event.setTimestamp(System.currentTimeMillis());
+        event.setUserId(userId);
+        event.setEventType(eventType);
+        event.setOperation(operation);
+        event.setEntityId(entityId);
+        return event;
     }
 
     private int getNextId() {
@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.validation;
 
 import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.cache.DictionaryCache;
 import ru.yandex.practicum.filmorate.dto.FilmRequest;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
@@ -8,16 +9,12 @@ import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
-import ru.yandex.practicum.filmorate.storage.DirectorStorage;
-import ru.yandex.practicum.filmorate.storage.GenreStorage;
-import ru.yandex.practicum.filmorate.storage.MpaStorage;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 @Slf4j
 public final class FilmValidator {
@@ -25,7 +22,7 @@ public final class FilmValidator {
     private FilmValidator() {
     }
 
-    public static FilmRequest validateFilmRequestNew(FilmRequest filmRequest, MpaStorage mpaStorage, GenreStorage genreStorage, DirectorStorage directorStorage) {
+    public static FilmRequest validateFilmRequestNew(FilmRequest filmRequest, DictionaryCache dictionaryCache) {
         if (hasNoName(filmRequest)) {
             throw new ValidationException("Название фильма не заполнено");
         }
@@ -49,28 +46,28 @@ public final class FilmValidator {
             log.warn("Для добавляемого фильма {} не указан возрастной рейтинг", filmRequest.getName());
             filmRequest.setMpa(null);
         } else {
-            filmRequest.setMpa(validateMpa(filmRequest.getMpa().getId(), mpaStorage));
+            filmRequest.setMpa(validateMpa(filmRequest.getMpa().getId(), dictionaryCache));
         }
 
         if (hasNoGenre(filmRequest)) {
             log.warn("Для добавляемого фильма {} не указан ни один жанр", filmRequest.getName());
             filmRequest.setGenres(new ArrayList<>());
         } else {
-            filmRequest.setGenres(validateGenre(filmRequest.getGenres(), genreStorage));
+            filmRequest.setGenres(validateGenre(filmRequest.getGenres(), dictionaryCache));
         }
 
         if (hasNoDirector(filmRequest)) {
             log.warn("Для фильма {} не указан ни один режиссёр", filmRequest.getName());
             filmRequest.setDirectors(new ArrayList<>());
         } else {
-            filmRequest.setDirectors(validateDirectors(filmRequest.getDirectors(), directorStorage));
+            filmRequest.setDirectors(validateDirectors(filmRequest.getDirectors(), dictionaryCache));
         }
 
 
         return filmRequest;
     }
 
-    public static FilmRequest validateFilmRequestForUpdate(Film film, FilmRequest filmRequest, MpaStorage mpaStorage, GenreStorage genreStorage, DirectorStorage directorStorage) {
+    public static FilmRequest validateFilmRequestForUpdate(Film film, FilmRequest filmRequest, DictionaryCache dictionaryCache) {
 
         if (hasNoName(filmRequest)) {
             filmRequest.setName(film.getName());
@@ -97,29 +94,24 @@ public final class FilmValidator {
         if (hasNoMpa(filmRequest)) {
             filmRequest.setMpa(film.getMpa());
         } else {
-            validateMpa(filmRequest.getMpa().getId(), mpaStorage);
+            validateMpa(filmRequest.getMpa().getId(), dictionaryCache);
         }
 
         if (filmRequest.getGenres() != null) {
             if (filmRequest.getGenres().isEmpty()) {
                 filmRequest.setGenres(new ArrayList<>());
             } else {
-                filmRequest.setGenres(validateGenre(filmRequest.getGenres(), genreStorage));
+                filmRequest.setGenres(validateGenre(filmRequest.getGenres(), dictionaryCache));
             }
         } else {
-            List<Genre> genres = film.getGenres().stream()
-                    .map(genreStorage::findGenreById)
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .collect(Collectors.toList());
-            filmRequest.setGenres(genres);
+            filmRequest.setGenres(dictionaryCache.findGenresByIds(film.getGenres()));
         }
 
         if (filmRequest.getDirectors() != null) {
             if (filmRequest.getDirectors().isEmpty()) {
                 filmRequest.setDirectors(new ArrayList<>());
             } else {
-                filmRequest.setDirectors(validateDirectors(filmRequest.getDirectors(), directorStorage));
+                filmRequest.setDirectors(validateDirectors(filmRequest.getDirectors(), dictionaryCache));
             }
         } else {
             // Здесь, получается, другая логика, отличная от жанров.
@@ -183,41 +175,56 @@ public final class FilmValidator {
         }
     }
 
-    public static Mpa validateMpa(int mpaId, MpaStorage mpaStorage) {
-        return mpaStorage.findMpaById(mpaId)
+    public static Mpa validateMpa(int mpaId, DictionaryCache dictionaryCache) {
+        return dictionaryCache.findMpaById(mpaId)
                 .orElseThrow(() -> new NotFoundException(String.format("Рейтинг МПА с id = %d не найден в справочнике", mpaId)));
     }
 
-    public static List<Genre> validateGenre(List<Genre> genres, GenreStorage genreStorage) {
+    public static List<Genre> validateGenre(List<Genre> genres, DictionaryCache dictionaryCache) {
         if (genres == null) {
             return new ArrayList<>();
         }
-        return genres.stream()
+        List<Integer> genreIds = genres.stream()
                 .filter(Objects::nonNull)
                 .map(Genre::getId)
                 .distinct()
-                .map(genreId -> genreStorage.findGenreById(genreId)
-                        .orElseThrow(() -> new NotFoundException(String.format("Жанр с id = %d не найден в справочнике", genreId))))
-                .collect(Collectors.toList());
+                .toList();
+        List<Genre> found = dictionaryCache.findGenresByIds(genreIds);
+        checkAllFound(genreIds, found, Genre::getId, "Жанр с id = %d не найден в справочнике");
+        return found;
     }
 
-    public static List<Director> validateDirectors(List<Director> directors, DirectorStorage directorStorage) {
+    public static List<Director> validateDirectors(List<Director> directors, DictionaryCache dictionaryCache) {
         if (directors == null) {
             return new ArrayList<>();
         }
-        return directors.stream()
+        List<Integer> directorIds = directors.stream()
                 .filter(Objects::nonNull)
                 .map(Director::getId)
                 .distinct()
-                .map(directorId -> directorStorage.findDirectorById(directorId)
-                        .orElseThrow(() -> new NotFoundException(String.format("Режиссёр с id = %d не найден в справочнике", directorId))))
-                .collect(Collectors.toList());
+                .toList();
+        List<Director> found = dictionaryCache.findDirectorsByIds(directorIds);
+        checkAllFound(directorIds, found, Director::getId, "Режиссёр с id = %d не найден в справочнике");
+        return found;
     }
 
-    public static void validateGenreIdForFilter(Integer genreId, GenreStorage genreStorage) {
+    private static <T> void checkAllFound(List<Integer> ids, List<T> found, Function<T, Integer> idGetter, String messageFormat) {
+        if (found.size() == ids.size()) {
+            return;
+        }
+        List<Integer> foundIds = found.stream().map(idGetter).toList();
+        ids.stream()
+                .filter(id -> !foundIds.contains(id))
+                .findFirst()
+                .ifPresent(id -> {
+                    throw new NotFoundException(String.format(messageFormat, id));
+                });
+    }
+
+    public static void validateGenreIdForFilter(Integer genreId, DictionaryCache dictionaryCache) {
         log.debug("Валидация genreId для фильтрации: {}", genreId);
         if (genreId != null) {
-            genreStorage.findGenreById(genreId)
+            dictionaryCache.findGenreById(genreId)
                     .orElseThrow(() -> new NotFoundException(String.format("Жанр с id = %d не найден в справочнике для фильтрации", genreId)));
         }
         log.debug("Валидация genreId для фильтрации пройдена.");
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.validation;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class PageValidator {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * Размер страницы по умолчанию, если он не задан; размер больше максимального урезается до максимума.
+     */
+    public static int validatePageSize(Integer size, int maxPageSize) {
+        if (size == null) {
+            return Math.min(DEFAULT_PAGE_SIZE, maxPageSize);
+        }
+        if (size <= 0) {
+            throw new ValidationException("Размер страницы должен быть положительным числом");
+        }
+        return Math.min(size, maxPageSize);
+    }
+}
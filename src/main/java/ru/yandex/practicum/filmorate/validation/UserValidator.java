@@ -58,17 +58,14 @@ public final class UserValidator {
             userRequest.setName(user.getName());
         }
 
-        for (User value : userStorage.findAllUsers()) {
-            if (!hasNoLogin(userRequest)) {
-                if (!user.getId().equals(value.getId()) && user.getLogin().equals(value.getLogin())) {
-                    throw new ValidationException("Обновлённый логин совпадает с логином другого пользователя");
-                }
+        for (User other : userStorage.findUsersByLoginOrEmail(userRequest.getLogin(), userRequest.getEmail())) {
+            if (user.getId().equals(other.getId())) {
+                continue;
             }
-            if (!hasNoEmail(userRequest)) {
-                if (!user.getId().equals(value.getId()) && user.getEmail().equals(value.getEmail())) {
-                    throw new ValidationException("Обновлённый email совпадает с email другого пользователя");
-                }
+            if (userRequest.getLogin().equals(other.getLogin())) {
+                throw new ValidationException("Обновлённый логин совпадает с логином другого пользователя");
             }
+            throw new ValidationException("Обновлённый email совпадает с email другого пользователя");
         }
 
         return userRequest;
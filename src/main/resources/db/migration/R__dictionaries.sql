@@ -0,0 +1,21 @@
+-- Справочники. Повторяемая миграция: Flyway выполняет её заново только при изменении файла,
+-- строки обновляются по id, поэтому повторное выполнение не создаёт дублей и не меняет id.
+
+MERGE INTO _genre (id, name) KEY (id) VALUES
+    (1, 'Комедия'),
+    (2, 'Драма'),
+    (3, 'Мультфильм'),
+    (4, 'Триллер'),
+    (5, 'Документальный'),
+    (6, 'Боевик');
+
+MERGE INTO _mpa (id, name) KEY (id) VALUES
+    (1, 'G'),
+    (2, 'PG'),
+    (3, 'PG-13'),
+    (4, 'R'),
+    (5, 'NC-17');
+
+MERGE INTO _friend_status (id, name) KEY (id) VALUES
+    (1, 'Запрошен'),
+    (2, 'Подтвержден');
@@ -1,18 +1,3 @@
--- Для теста
-DROP TABLE IF EXISTS _user CASCADE;
-DROP TABLE IF EXISTS _user_friend CASCADE;
-DROP TABLE IF EXISTS _friend_status CASCADE;
-DROP TABLE IF EXISTS _film CASCADE;
-DROP TABLE IF EXISTS _like CASCADE;
-DROP TABLE IF EXISTS _mpa CASCADE;
-DROP TABLE IF EXISTS _film_genre CASCADE;
-DROP TABLE IF EXISTS _genre CASCADE;
-DROP TABLE IF EXISTS _film_director CASCADE;
-DROP TABLE IF EXISTS _director CASCADE;
-DROP TABLE IF EXISTS _review CASCADE;
-DROP TABLE IF EXISTS _review_rating CASCADE;
-DROP TABLE IF EXISTS _user_event CASCADE;
-
 CREATE TABLE IF NOT EXISTS _user (
     id int PRIMARY KEY AUTO_INCREMENT,
     login varchar(50) UNIQUE,
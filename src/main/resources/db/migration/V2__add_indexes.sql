@@ -0,0 +1,37 @@
+-- Индексы под запросы storage.impl. Уникальные индексы по парам в таблицах связей
+-- заодно служат индексом по первому столбцу.
+
+-- Счётчик лайков фильма; V1 - выпущенная схема без него, поэтому столбец добавляется здесь
+-- и для базы, созданной прежней версией, заполняется по уже поставленным лайкам
+ALTER TABLE _film ADD COLUMN IF NOT EXISTS likes_count int DEFAULT 0 NOT NULL;
+UPDATE _film f SET likes_count = (SELECT COUNT(*) FROM _like l WHERE l.film_id = f.id);
+
+-- Популярные фильмы: ORDER BY likes_count DESC, id
+CREATE INDEX IF NOT EXISTS idx_film_likes_count ON _film (likes_count DESC, id);
+
+-- Лайки фильма (общие фильмы, удаление фильма) и лайки пользователя (рекомендации, удаление лайка).
+-- Повторный лайк пока добавляет строку, поэтому индекс по паре не уникальный
+CREATE INDEX IF NOT EXISTS idx_like_user_id_film_id ON _like (user_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_like_film_id_user_id ON _like (film_id, user_id);
+
+-- Жанры фильма и фильмы жанра (популярные с фильтром по жанру)
+CREATE UNIQUE INDEX IF NOT EXISTS uq_film_genre_film_id_genre_id ON _film_genre (film_id, genre_id);
+CREATE INDEX IF NOT EXISTS idx_film_genre_genre_id_film_id ON _film_genre (genre_id, film_id);
+
+-- Режиссёры фильма и фильмы режиссёра
+CREATE UNIQUE INDEX IF NOT EXISTS uq_film_director_film_id_director_id ON _film_director (film_id, director_id);
+CREATE INDEX IF NOT EXISTS idx_film_director_director_id_film_id ON _film_director (director_id, film_id);
+
+-- Друзья пользователя; при удалении пользователя связи ищутся и по friend_id
+CREATE UNIQUE INDEX IF NOT EXISTS uq_user_friend_user_id_friend_id ON _user_friend (user_id, friend_id);
+CREATE INDEX IF NOT EXISTS idx_user_friend_friend_id ON _user_friend (friend_id);
+
+-- Отзывы: ORDER BY useful DESC, id - по всем фильмам и по одному фильму
+CREATE INDEX IF NOT EXISTS idx_review_useful_id ON _review (useful DESC, id);
+CREATE INDEX IF NOT EXISTS idx_review_film_id_useful_id ON _review (film_id, useful DESC, id);
+
+-- Оценка отзыва пользователем
+CREATE UNIQUE INDEX IF NOT EXISTS uq_review_rating_review_id_user_id ON _review_rating (review_id, user_id);
+
+-- Лента пользователя читается с конца по времени
+CREATE INDEX IF NOT EXISTS idx_user_event_user_id_timestamp ON _user_event (user_id, timestamp);
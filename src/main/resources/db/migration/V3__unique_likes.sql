@@ -0,0 +1,10 @@
+-- Лайк пользователя фильму хранится не более одного раза: повторные строки удаляются,
+-- счётчики лайков пересчитываются, индекс по паре становится уникальным
+
+DELETE FROM _like l
+WHERE EXISTS (SELECT 1 FROM _like d WHERE d.user_id = l.user_id AND d.film_id = l.film_id AND d.id < l.id);
+
+UPDATE _film f SET likes_count = (SELECT COUNT(*) FROM _like l WHERE l.film_id = f.id);
+
+DROP INDEX IF EXISTS idx_like_user_id_film_id;
+CREATE UNIQUE INDEX uq_like_user_id_film_id ON _like (user_id, film_id);
@@ -0,0 +1,12 @@
+-- Пользователь оставляет не больше одного отзыва на фильм: из повторных отзывов остаётся самый ранний,
+-- остальные удаляются вместе с их оценками
+
+DELETE FROM _review_rating rr
+WHERE rr.review_id IN (SELECT r.id FROM _review r
+                       WHERE EXISTS (SELECT 1 FROM _review d
+                                     WHERE d.user_id = r.user_id AND d.film_id = r.film_id AND d.id < r.id));
+
+DELETE FROM _review r
+WHERE EXISTS (SELECT 1 FROM _review d WHERE d.user_id = r.user_id AND d.film_id = r.film_id AND d.id < r.id);
+
+CREATE UNIQUE INDEX uq_review_user_id_film_id ON _review (user_id, film_id);
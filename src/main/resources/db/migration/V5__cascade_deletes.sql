@@ -0,0 +1,62 @@
+-- Связи фильмов, пользователей, отзывов и режиссёров получают внешние ключи с ON DELETE CASCADE:
+-- удаление строки удаляет всё, что на неё ссылается. Строки-сироты, оставшиеся от прежних удалений,
+-- удаляются до создания ограничений. Счётчики likes_count пересчитываются при старте приложения.
+-- Для _user_event ключа нет: события пишутся в БД с задержкой и не должны отбрасываться из-за
+-- удалённого пользователя, их удаляют хранилища.
+
+DELETE FROM _like l
+WHERE NOT EXISTS (SELECT 1 FROM _user u WHERE u.id = l.user_id)
+   OR NOT EXISTS (SELECT 1 FROM _film f WHERE f.id = l.film_id);
+
+DELETE FROM _film_genre fg WHERE NOT EXISTS (SELECT 1 FROM _film f WHERE f.id = fg.film_id);
+
+DELETE FROM _film_director fd
+WHERE NOT EXISTS (SELECT 1 FROM _film f WHERE f.id = fd.film_id)
+   OR NOT EXISTS (SELECT 1 FROM _director d WHERE d.id = fd.director_id);
+
+DELETE FROM _user_friend uf
+WHERE NOT EXISTS (SELECT 1 FROM _user u WHERE u.id = uf.user_id)
+   OR NOT EXISTS (SELECT 1 FROM _user u WHERE u.id = uf.friend_id);
+
+DELETE FROM _review r
+WHERE NOT EXISTS (SELECT 1 FROM _user u WHERE u.id = r.user_id)
+   OR NOT EXISTS (SELECT 1 FROM _film f WHERE f.id = r.film_id);
+
+DELETE FROM _review_rating rr
+WHERE NOT EXISTS (SELECT 1 FROM _review r WHERE r.id = rr.review_id)
+   OR NOT EXISTS (SELECT 1 FROM _user u WHERE u.id = rr.user_id);
+
+-- Оценки удалённых пользователей оставались в полезности отзывов
+UPDATE _review r SET useful = (SELECT COALESCE(SUM(CASE WHEN rr.is_like THEN 1 ELSE -1 END), 0)
+                               FROM _review_rating rr WHERE rr.review_id = r.id);
+
+DELETE FROM _user_event e WHERE NOT EXISTS (SELECT 1 FROM _user u WHERE u.id = e.user_id);
+
+ALTER TABLE _like ADD CONSTRAINT fk_like_user_id FOREIGN KEY (user_id) REFERENCES _user (id) ON DELETE CASCADE;
+ALTER TABLE _like ADD CONSTRAINT fk_like_film_id FOREIGN KEY (film_id) REFERENCES _film (id) ON DELETE CASCADE;
+
+ALTER TABLE _film_genre ADD CONSTRAINT fk_film_genre_film_id FOREIGN KEY (film_id) REFERENCES _film (id) ON DELETE CASCADE;
+
+ALTER TABLE _film_director ADD CONSTRAINT fk_film_director_film_id
+    FOREIGN KEY (film_id) REFERENCES _film (id) ON DELETE CASCADE;
+ALTER TABLE _film_director ADD CONSTRAINT fk_film_director_director_id
+    FOREIGN KEY (director_id) REFERENCES _director (id) ON DELETE CASCADE;
+
+ALTER TABLE _user_friend ADD CONSTRAINT fk_user_friend_user_id
+    FOREIGN KEY (user_id) REFERENCES _user (id) ON DELETE CASCADE;
+ALTER TABLE _user_friend ADD CONSTRAINT fk_user_friend_friend_id
+    FOREIGN KEY (friend_id) REFERENCES _user (id) ON DELETE CASCADE;
+
+ALTER TABLE _review ADD CONSTRAINT fk_review_user_id FOREIGN KEY (user_id) REFERENCES _user (id) ON DELETE CASCADE;
+ALTER TABLE _review ADD CONSTRAINT fk_review_film_id FOREIGN KEY (film_id) REFERENCES _film (id) ON DELETE CASCADE;
+
+-- Оценки пользователя ищутся при его удалении
+CREATE INDEX IF NOT EXISTS idx_review_rating_user_id ON _review_rating (user_id);
+
+ALTER TABLE _review_rating ADD CONSTRAINT fk_review_rating_review_id
+    FOREIGN KEY (review_id) REFERENCES _review (id) ON DELETE CASCADE;
+ALTER TABLE _review_rating ADD CONSTRAINT fk_review_rating_user_id
+    FOREIGN KEY (user_id) REFERENCES _user (id) ON DELETE CASCADE;
+
+-- События других пользователей, ссылающиеся на удаляемый фильм, отзыв или пользователя
+CREATE INDEX IF NOT EXISTS idx_user_event_entity_id_event_type ON _user_event (entity_id, event_type);
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.rowMapper.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.rowMapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.rowMapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.impl.DirectorStorageDbImpl;
+import ru.yandex.practicum.filmorate.storage.impl.GenreStorageDbImpl;
+import ru.yandex.practicum.filmorate.storage.impl.MpaStorageDbImpl;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({DictionaryCache.class,
+        MpaStorageDbImpl.class,
+        MpaRowMapper.class,
+        GenreStorageDbImpl.class,
+        GenreRowMapper.class,
+        DirectorStorageDbImpl.class,
+        DirectorRowMapper.class})
+public class DictionaryCacheTest {
+
+    @Autowired
+    private DictionaryCache dictionaryCache;
+    @Autowired
+    private DirectorStorage directorStorage;
+
+    @BeforeEach
+    public void setUp() {
+        dictionaryCache.invalidate();
+    }
+
+    @Test
+    public void testHitAndMissCounters() {
+        long hits = dictionaryCache.getHitCount();
+        long misses = dictionaryCache.getMissCount();
+
+        assertTrue(dictionaryCache.findMpaById(1).isPresent());
+        assertTrue(dictionaryCache.findMpaById(999).isEmpty());
+        assertTrue(dictionaryCache.findMpaById(999).isEmpty());
+        assertEquals(hits + 1, dictionaryCache.getHitCount());
+        assertEquals(misses + 2, dictionaryCache.getMissCount());
+
+        List<Genre> genres = dictionaryCache.findGenresByIds(List.of(2, 1, 999, 2));
+        assertEquals(List.of(2, 1), genres.stream().map(Genre::getId).toList());
+        assertEquals(hits + 3, dictionaryCache.getHitCount());
+        assertEquals(misses + 3, dictionaryCache.getMissCount());
+    }
+
+    @Test
+    public void testLoadedDictionaryIsAuthoritative() {
+        assertTrue(dictionaryCache.findDirectorById(-1).isEmpty());
+
+        Director director = directorStorage.createDirector(director("Written around the cache"));
+
+        assertTrue(dictionaryCache.findDirectorById(director.getId()).isEmpty());
+        dictionaryCache.invalidate();
+        assertEquals("Written around the cache",
+                dictionaryCache.findDirectorById(director.getId()).orElseThrow().getName());
+    }
+
+    @Test
+    public void testPutAndEvictDirector() {
+        Director director = directorStorage.createDirector(director("Before"));
+        assertTrue(dictionaryCache.findDirectorById(director.getId()).isPresent());
+
+        director.setName("After");
+        directorStorage.updateDirector(director);
+        dictionaryCache.putDirector(director);
+        assertEquals("After", dictionaryCache.findDirectorById(director.getId()).orElseThrow().getName());
+        assertEquals(List.of(director.getId()), dictionaryCache.findDirectorsByIds(List.of(director.getId())).stream()
+                .map(Director::getId)
+                .toList());
+
+        directorStorage.deleteDirector(director.getId());
+        dictionaryCache.evictDirector(director.getId());
+        assertTrue(dictionaryCache.findDirectorById(director.getId()).isEmpty());
+        assertTrue(dictionaryCache.findDirectorsByIds(List.of(director.getId())).isEmpty());
+    }
+
+    @Test
+    public void testInvalidateDoesNotHideLoadedValues() throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread invalidator = new Thread(() -> {
+            while (!stop.get()) {
+                dictionaryCache.invalidate();
+            }
+        });
+        invalidator.start();
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                assertTrue(dictionaryCache.findMpaById(1).isPresent(), "Сброс не должен опустошать загруженный справочник");
+            }
+        } finally {
+            stop.set(true);
+            invalidator.join();
+        }
+        assertTrue(dictionaryCache.findMpaById(1).isPresent());
+    }
+
+    private Director director(String name) {
+        Director director = new Director();
+        director.setName(name);
+        return director;
+    }
+}
@@ -3,26 +3,47 @@ package ru.yandex.practicum.filmorate.controller;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.yandex.practicum.filmorate.cache.DictionaryCache;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.FilmRequest;
 import ru.yandex.practicum.filmorate.dto.FilmRequestUpdate;
+import ru.yandex.practicum.filmorate.dto.PageDto;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
+import ru.yandex.practicum.filmorate.dto.UserRequest;
+import ru.yandex.practicum.filmorate.enumeration.SuggestionType;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.DirectorFilmography;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.index.SearchIndex;
+import ru.yandex.practicum.filmorate.index.SuggestIndex;
+import ru.yandex.practicum.filmorate.index.UserFeedBuffer;
 import ru.yandex.practicum.filmorate.mapper.*;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.rowMapper.*;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserEventWriter;
+import ru.yandex.practicum.filmorate.service.UserPurger;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.*;
 import ru.yandex.practicum.filmorate.storage.impl.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Objects;
@@ -30,6 +51,7 @@ import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @JdbcTest
@@ -44,8 +66,20 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
         DirectorStorageDbImpl.class,
         DirectorRowMapper.class,
         UserRowMapper.class,
+        DictionaryCache.class,
+        PopularityIndex.class,
+        LikeIndex.class,
+        SearchIndex.class,
+        SuggestIndex.class,
+        DirectorFilmography.class,
+        FriendshipGraph.class,
+        UserFeedBuffer.class,
+        UserEventWriter.class,
         FilmService.class,
-        UserService.class
+        FilmImportService.class,
+        UserService.class,
+        UserPurger.class,
+        JacksonAutoConfiguration.class
 })
 public class FilmControllerTest {
 
@@ -58,13 +92,31 @@ public class FilmControllerTest {
     @Autowired
     private DirectorStorage directorStorage;
     @Autowired
-    private UserStorage userStorage;
-    @Autowired
     private JdbcTemplate jdbcTemplate;
     @Autowired
     private FilmService filmService;
     @Autowired
+    private FilmImportService filmImportService;
+    @Autowired
     private UserService userService;
+    @Autowired
+    private PopularityIndex popularityIndex;
+    @Autowired
+    private LikeIndex likeIndex;
+    @Autowired
+    private FriendshipGraph friendshipGraph;
+    @Autowired
+    private SearchIndex searchIndex;
+    @Autowired
+    private SuggestIndex suggestIndex;
+    @Autowired
+    private UserFeedBuffer userFeedBuffer;
+    @Autowired
+    private DirectorFilmography directorFilmography;
+    @Autowired
+    private UserEventWriter userEventWriter;
+    @Autowired
+    private DictionaryCache dictionaryCache;
 
     private FilmController filmController;
     private UserController userController;
@@ -73,12 +125,20 @@ public class FilmControllerTest {
 
     @BeforeEach
     public void setUp() {
-        JdbcTestUtils.deleteFromTables(jdbcTemplate, "_film_genre", "_like", "_film", "_user", "_film_director", "_director");
+        userEventWriter.flush();
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "_film_genre", "_like", "_film", "_user_friend", "_user", "_film_director", "_director",
+                "_user_event");
         jdbcTemplate.execute("ALTER TABLE _film ALTER COLUMN id RESTART WITH 1");
         jdbcTemplate.execute("ALTER TABLE _user ALTER COLUMN id RESTART WITH 1");
+        dictionaryCache.invalidate();
+        popularityIndex.rebuild();
+        likeIndex.rebuild();
+        friendshipGraph.rebuild();
+        userFeedBuffer.rebuild();
+        directorFilmography.rebuild();
         jdbcTemplate.execute("ALTER TABLE _director ALTER COLUMN id RESTART WITH 1");
 
-        filmController = new FilmController(filmService);
+        filmController = new FilmController(filmService, filmImportService);
         userController = new UserController(userService);
 
         Mpa mpaSetup = new Mpa();
@@ -93,6 +153,8 @@ public class FilmControllerTest {
         directorSetup.setId(1);
         directorSetup.setName("Quentin Tarantino");
         directorStorage.createDirector(directorSetup);
+        searchIndex.rebuild();
+        suggestIndex.rebuild();
 
         filmRequest = new FilmRequest(
                 "Test Film",
@@ -140,7 +202,7 @@ public class FilmControllerTest {
         Director directorUpdate = new Director();
         directorUpdate.setId(2);
         directorUpdate.setName("Christopher Nolan");
-        directorStorage.createDirector(directorUpdate);
+        dictionaryCache.putDirector(directorStorage.createDirector(directorUpdate));
 
         FilmRequestUpdate filmRequestUpdate = new FilmRequestUpdate(
                 "Test Film Updated",
@@ -186,6 +248,187 @@ public class FilmControllerTest {
                 "Ожидается исключение NotFoundException при попытке обновления несуществующего фильма");
     }
 
+    @Test
+    void testImportFilmsReportsEachItem() throws IOException {
+        String body = String.join("\n",
+                "{\"name\":\"Bulk A\",\"description\":\"A\",\"duration\":100,\"releaseDate\":\"2001-01-01\","
+                        + "\"mpa\":{\"id\":1},\"genres\":[{\"id\":1},{\"id\":1}]}",
+                "{\"name\":\"\",\"description\":\"B\",\"duration\":100,\"releaseDate\":\"2001-01-01\",\"mpa\":{\"id\":1}}",
+                "{\"name\":\"Bulk C\",\"description\":\"C\",\"duration\":90,\"releaseDate\":\"2002-02-02\","
+                        + "\"mpa\":{\"id\":2},\"directors\":[{\"id\":1}]}");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        filmImportService.importFilms(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(3, lines.size(), "Ожидается по одной строке результата на каждый фильм");
+        assertThat(lines.get(0)).contains("\"index\":0", "\"status\":\"CREATED\"", "\"id\":1");
+        assertThat(lines.get(1)).contains("\"index\":1", "\"status\":\"REJECTED\"");
+        assertThat(lines.get(2)).contains("\"index\":2", "\"status\":\"CREATED\"", "\"id\":2");
+
+        FilmDto imported = filmController.findFilmById(2);
+        assertEquals("Bulk C", imported.getName());
+        assertEquals(1, imported.getDirectors().size());
+        assertEquals(1, filmController.findFilmById(1).getGenres().size());
+    }
+
+    @Test
+    void testFindPageContinuesAfterCursor() {
+        filmController.createFilm(filmRequest);
+        filmController.createFilm(filmRequest);
+        filmController.createFilm(filmRequest);
+
+        PageDto<FilmDto> first = filmService.findPage(null, 2);
+        assertEquals(List.of(1, 2), first.getItems().stream().map(FilmDto::getId).toList());
+        assertThat(first.getNextCursor()).isNotNull();
+
+        PageDto<FilmDto> second = filmService.findPage(first.getNextCursor(), 2);
+        assertEquals(List.of(3), second.getItems().stream().map(FilmDto::getId).toList());
+        assertThat(second.getNextCursor()).isNull();
+
+        assertThrows(ValidationException.class, () -> filmService.findPage("не курсор", 2));
+    }
+
+    @Test
+    void testDirectorFilmsSortedAndPagedWithFreshLikes() {
+        filmController.createFilm(filmRequest);
+        filmController.createFilm(new FilmRequest("Another kino", "Описание", 90, LocalDate.of(2020, 1, 1),
+                filmRequest.getMpa(), List.of(), filmRequest.getDirectors()));
+        filmController.createFilm(new FilmRequest("B film", "Описание", 90, LocalDate.of(2021, 1, 1),
+                filmRequest.getMpa(), List.of(), filmRequest.getDirectors()));
+        userController.createUser(new UserRequest("login", "mail@mail.ru", "name", LocalDate.of(1990, 1, 1)));
+
+        assertEquals(List.of(2, 3, 1), directorFilmIds("year"));
+        assertEquals(List.of(2, 3, 1), directorFilmIds("title"));
+        assertEquals(List.of(1, 2, 3), directorFilmIds("likes"));
+
+        filmController.addLikeToFilm(3, 1);
+        assertEquals(List.of(3, 1, 2), directorFilmIds("likes"), "Лайк должен сбросить кэшированный порядок");
+
+        PageDto<FilmDto> first = filmService.findPageByDirector(1, "likes", null, 2);
+        assertEquals(List.of(3, 1), first.getItems().stream().map(FilmDto::getId).toList());
+        PageDto<FilmDto> second = filmService.findPageByDirector(1, "likes", first.getNextCursor(), 2);
+        assertEquals(List.of(2), second.getItems().stream().map(FilmDto::getId).toList());
+        assertThat(second.getNextCursor()).isNull();
+
+        filmController.createFilm(new FilmRequest("A: first", "Описание", 90, LocalDate.of(2022, 1, 1),
+                filmRequest.getMpa(), List.of(), filmRequest.getDirectors()));
+        PageDto<FilmDto> byTitle = filmService.findPageByDirector(1, "title", null, 2);
+        assertEquals(List.of(4, 2), byTitle.getItems().stream().map(FilmDto::getId).toList());
+        filmService.removeFilm(4);
+        assertEquals(List.of(3, 1), filmService.findPageByDirector(1, "title", byTitle.getNextCursor(), 2)
+                .getItems().stream().map(FilmDto::getId).toList(), "Курсор не сдвигается после удаления фильма до него");
+        assertThrows(ValidationException.class, () -> filmService.findPageByDirector(1, "year",
+                CursorMapper.mapToCursor(1, "not a date"), 2));
+
+        assertEquals(List.of(3, 1, 2), directorFilmIds("likes"));
+        filmController.removeLikeFromFilm(3, 1);
+        assertEquals(List.of(1, 2, 3), directorFilmIds("likes"), "Порядок по лайкам пересортировывается в памяти");
+
+        filmService.removeFilm(3);
+        assertEquals(List.of(2, 1), directorFilmIds("year"));
+        assertThrows(ValidationException.class, () -> filmService.getFilmsByDirectorSorted(1, "rating"));
+        assertThrows(NotFoundException.class, () -> filmService.getFilmsByDirectorSorted(99, "likes"));
+    }
+
+    @Test
+    void testExportFilmsWritesOneLinePerFilm() throws IOException {
+        filmController.createFilm(filmRequest);
+        filmController.createFilm(filmRequest);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        filmService.exportFilms(out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(2, lines.size(), "Ожидается по одной строке на каждый фильм");
+        assertThat(lines.get(0)).contains("\"id\":1", "\"name\":\"Комедия\"", "\"name\":\"Quentin Tarantino\"");
+        assertThat(lines.get(1)).contains("\"id\":2");
+    }
+
+    @Test
+    void testSearchFilmsMatchesTitleAndDirectorSubstrings() {
+        filmController.createFilm(filmRequest);
+        FilmRequest otherRequest = new FilmRequest("Another kino", "Описание", 90, LocalDate.of(2020, 1, 1),
+                filmRequest.getMpa(), List.of(), List.of());
+        filmController.createFilm(otherRequest);
+        filmController.addLikeToFilm(2, userController.createUser(new UserRequest("login", "mail@mail.ru", "name",
+                LocalDate.of(1990, 1, 1))).getId());
+
+        assertEquals(List.of(1), searchFilmIds("ST FI", List.of("title")));
+        assertEquals(List.of(1), searchFilmIds("tarant", List.of("director")));
+        assertEquals(List.of(2, 1), searchFilmIds("O", List.of("title", "director")));
+        assertThat(searchFilmIds("kino", List.of("director"))).isEmpty();
+
+        PageDto<FilmDto> first = filmService.searchFilms("O", List.of("title", "director"), null, 1);
+        assertEquals(List.of(2), first.getItems().stream().map(FilmDto::getId).toList());
+        PageDto<FilmDto> second = filmService.searchFilms("O", List.of("title", "director"), first.getNextCursor(), 1);
+        assertEquals(List.of(1), second.getItems().stream().map(FilmDto::getId).toList());
+        assertNull(second.getNextCursor());
+        assertThrows(ValidationException.class, () -> filmService.searchFilms("O", List.of("title"), "не курсор", 1));
+    }
+
+    @Test
+    void testSuggestToleratesTyposAndPrefixes() {
+        filmController.createFilm(filmRequest);
+        FilmRequest otherRequest = new FilmRequest("Testament", "Описание", 90, LocalDate.of(2020, 1, 1),
+                filmRequest.getMpa(), List.of(), List.of());
+        filmController.createFilm(otherRequest);
+
+        List<SuggestionDto> prefix = filmController.suggest("tes", 10);
+        assertEquals(List.of("Test Film", "Testament"), prefix.stream().map(SuggestionDto::getText).toList());
+
+        List<SuggestionDto> typo = filmController.suggest("tset fil", 10);
+        assertEquals(List.of("Test Film"), typo.stream().map(SuggestionDto::getText).toList());
+
+        List<SuggestionDto> director = filmController.suggest("tarantin", 10);
+        assertEquals(SuggestionType.DIRECTOR, director.getFirst().getType());
+        assertEquals(1, director.getFirst().getId());
+    }
+
+    @Test
+    void testCommonFilmsOrderedByLikes() {
+        for (int i = 0; i < 3; i++) {
+            filmController.createFilm(filmRequest);
+        }
+        for (int i = 1; i <= 3; i++) {
+            userController.createUser(new UserRequest("login" + i, "mail" + i + "@mail.ru", "name", LocalDate.of(1990, 1, 1)));
+        }
+        for (int filmId = 1; filmId <= 3; filmId++) {
+            filmController.addLikeToFilm(filmId, 1);
+        }
+        filmController.addLikeToFilm(1, 2);
+        filmController.addLikeToFilm(3, 2);
+        filmController.addLikeToFilm(3, 3);
+
+        assertEquals(List.of(3, 1), filmController.getCommonFilms(1, 2).stream().map(FilmDto::getId).toList());
+
+        filmController.removeLikeFromFilm(3, 2);
+        assertEquals(List.of(1), filmController.getCommonFilms(1, 2).stream().map(FilmDto::getId).toList());
+        assertThat(filmController.getCommonFilms(2, 3)).isEmpty();
+        assertThrows(NotFoundException.class, () -> filmController.getCommonFilms(1, 99));
+    }
+
+    @Test
+    void testRepeatedLikeChangesNothing() {
+        filmController.createFilm(filmRequest);
+        userController.createUser(new UserRequest("login", "mail@mail.ru", "name", LocalDate.of(1990, 1, 1)));
+
+        filmController.addLikeToFilm(1, 1);
+        filmController.addLikeToFilm(1, 1);
+        assertEquals(1, filmStorage.countLikes(1));
+        assertEquals(1, JdbcTestUtils.countRowsInTable(jdbcTemplate, "_like"));
+        assertEquals(1, userController.getFeed(1, null, null, 10).size(), "Повторный лайк не создаёт событие");
+
+        filmController.removeLikeFromFilm(1, 1);
+        filmController.removeLikeFromFilm(1, 1);
+        assertEquals(0, filmStorage.countLikes(1));
+        assertEquals(2, userController.getFeed(1, null, null, 10).size());
+
+        assertThrows(NotFoundException.class, () -> filmController.addLikeToFilm(1, 99));
+        assertThrows(NotFoundException.class, () -> filmController.addLikeToFilm(99, 1));
+        assertThrows(NotFoundException.class, () -> filmController.removeLikeFromFilm(99, 1));
+    }
+
     private Mpa getMpaByFilm(Film film) {
         Optional<Mpa> mpa = mpaStorage.findMpaById(film.getMpa().getId());
         return mpa.orElse(null);
@@ -205,5 +448,11 @@ public class FilmControllerTest {
                 .toList();
     }
 
+    private List<Integer> directorFilmIds(String sortBy) {
+        return filmService.getFilmsByDirectorSorted(1, sortBy).stream().map(FilmDto::getId).toList();
+    }
 
-}
\ No newline at end of file
+    private List<Integer> searchFilmIds(String query, List<String> by) {
+        return filmService.searchFilms(query, by).stream().map(FilmDto::getId).toList();
+    }
+}
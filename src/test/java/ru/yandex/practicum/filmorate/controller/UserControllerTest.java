@@ -0,0 +1,332 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.yandex.practicum.filmorate.cache.DictionaryCache;
+import ru.yandex.practicum.filmorate.dto.FilmRequest;
+import ru.yandex.practicum.filmorate.dto.FriendSuggestionDto;
+import ru.yandex.practicum.filmorate.dto.UserEventDto;
+import ru.yandex.practicum.filmorate.dto.UserFriendDto;
+import ru.yandex.practicum.filmorate.dto.UserRequest;
+import ru.yandex.practicum.filmorate.dto.UserRequestUpdate;
+import ru.yandex.practicum.filmorate.enumeration.EventType;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.DirectorFilmography;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.index.SearchIndex;
+import ru.yandex.practicum.filmorate.index.SuggestIndex;
+import ru.yandex.practicum.filmorate.index.UserFeedBuffer;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.rowMapper.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserEventWriter;
+import ru.yandex.practicum.filmorate.service.UserPurger;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.impl.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Пользователи, дружба и лента событий. UserService удаляет лайки пользователя через FilmService,
+ * поэтому контекст включает и индексы фильмов. Фоновая запись событий отключена длинным интервалом:
+ * события попадают в БД только при явном flush.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@TestPropertySource(properties = "filmorate.events.flush-interval-ms=3600000")
+@Import({FilmStorageDbImpl.class,
+        FilmRowMapper.class,
+        MpaStorageDbImpl.class,
+        MpaRowMapper.class,
+        GenreStorageDbImpl.class,
+        GenreRowMapper.class,
+        UserStorageDbImpl.class,
+        UserRowMapper.class,
+        DirectorStorageDbImpl.class,
+        DirectorRowMapper.class,
+        DictionaryCache.class,
+        PopularityIndex.class,
+        LikeIndex.class,
+        SearchIndex.class,
+        SuggestIndex.class,
+        DirectorFilmography.class,
+        FriendshipGraph.class,
+        UserFeedBuffer.class,
+        UserEventWriter.class,
+        FilmService.class,
+        UserService.class,
+        UserPurger.class,
+        JacksonAutoConfiguration.class
+})
+public class UserControllerTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PopularityIndex popularityIndex;
+    @Autowired
+    private LikeIndex likeIndex;
+    @Autowired
+    private FriendshipGraph friendshipGraph;
+    @Autowired
+    private UserFeedBuffer userFeedBuffer;
+    @Autowired
+    private UserEventWriter userEventWriter;
+
+    private UserController userController;
+
+    @BeforeEach
+    public void setUp() {
+        userEventWriter.flush();
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "_film_genre", "_like", "_film", "_user_friend", "_user", "_film_director",
+                "_user_event");
+        jdbcTemplate.execute("ALTER TABLE _film ALTER COLUMN id RESTART WITH 1");
+        jdbcTemplate.execute("ALTER TABLE _user ALTER COLUMN id RESTART WITH 1");
+        popularityIndex.rebuild();
+        likeIndex.rebuild();
+        friendshipGraph.rebuild();
+        userFeedBuffer.rebuild();
+
+        userController = new UserController(userService);
+    }
+
+    @Test
+    void testCommonFriendsUseFriendshipGraph() {
+        createUsers(4);
+        userController.addFriendRequest(1, 3);
+        userController.addFriendRequest(1, 4);
+        userController.addFriendRequest(2, 4);
+        userController.addFriendRequest(2, 3);
+
+        assertThrows(ValidationException.class, () -> userController.addFriendRequest(1, 3),
+                "Повторная заявка в друзья должна отклоняться");
+        assertEquals(List.of(3, 4), userController.findCommonFriends(1, 2).stream().map(UserFriendDto::getId).toList());
+
+        userController.removeFromFriends(2, 3);
+        assertEquals(List.of(4), userController.findCommonFriends(1, 2).stream().map(UserFriendDto::getId).toList());
+
+        userController.removeUser(4);
+        assertThat(userController.findCommonFriends(1, 2)).isEmpty();
+    }
+
+    @Test
+    void testFriendSuggestionsRankedByMutualFriends() {
+        createUsers(5);
+        userController.addFriendRequest(1, 2);
+        userController.addFriendRequest(1, 3);
+        userController.addFriendRequest(2, 4);
+        userController.addFriendRequest(3, 4);
+        userController.addFriendRequest(3, 5);
+        userController.addFriendRequest(2, 1);
+
+        List<FriendSuggestionDto> suggestions = userController.findFriendSuggestions(1, 10);
+        assertEquals(List.of(4, 5), suggestions.stream().map(FriendSuggestionDto::getId).toList());
+        assertEquals(2, suggestions.getFirst().getMutualFriends());
+        assertEquals(List.of(4), userController.findFriendSuggestions(1, 1).stream()
+                .map(FriendSuggestionDto::getId).toList());
+
+        userController.addFriendRequest(1, 5);
+        assertEquals(List.of(4), userController.findFriendSuggestions(1, 10).stream()
+                .map(FriendSuggestionDto::getId).toList(), "Новый друг должен пропасть из закешированных рекомендаций");
+
+        userController.addFriendRequest(4, 2);
+        userController.removeFromFriends(3, 4);
+        suggestions = userController.findFriendSuggestions(1, 10);
+        assertEquals(List.of(4), suggestions.stream().map(FriendSuggestionDto::getId).toList());
+        assertEquals(1, suggestions.getFirst().getMutualFriends());
+    }
+
+    @Test
+    void testFeedPageServedFromBuffer() {
+        createUsers(2);
+        for (long timestamp = 1000; timestamp <= 3000; timestamp += 1000) {
+            jdbcTemplate.update("INSERT INTO _user_event (timestamp, user_id, event_type, operation, entity_id) " +
+                    "VALUES (?, 1, 'LIKE', 'ADD', 1)", timestamp);
+        }
+
+        assertEquals(List.of(2000L, 3000L), timestamps(userController.getFeed(1, null, null, 2)));
+        userController.addFriendRequest(1, 2);
+        List<UserEventDto> latest = userController.getFeed(1, null, null, 2);
+        assertEquals(3000L, latest.getFirst().getTimestamp());
+        assertEquals(EventType.FRIEND, latest.getLast().getEventType());
+        assertEquals(List.of(1000L, 2000L), timestamps(userController.getFeed(1, null, 3000L, 5)));
+        assertEquals(3, userController.getFeed(1, 1000L, null, 10).size());
+
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "_user_event");
+        assertEquals(List.of(EventType.FRIEND), userController.getFeed(1, null, null, 1).stream()
+                .map(UserEventDto::getEventType).toList(), "Последняя страница должна отдаваться из буфера");
+        assertThat(userController.getFeed(1, null, 3000L, 5)).isEmpty();
+        assertEquals(4, userController.getFeed(1, null, null, null).size(),
+                "Лента без параметров должна отдаваться из буфера, если в нём вся история");
+    }
+
+    @Test
+    void testPlainFeedReturnsWholeHistoryBeyondPageSize() {
+        createUsers(1);
+        // По три события на каждый timestamp: страницы не должны терять события с одинаковым временем
+        jdbcTemplate.update("INSERT INTO _user_event (timestamp, user_id, event_type, operation, entity_id) " +
+                "SELECT X / 3, 1, 'LIKE', 'ADD', X FROM SYSTEM_RANGE(1, 2500)");
+
+        List<UserEventDto> feed = userController.getFeed(1, null, null, null);
+
+        assertEquals(2500, feed.size());
+        assertEquals(2500, feed.stream().map(UserEventDto::getEventId).distinct().count());
+        assertThat(timestamps(feed)).isSorted();
+    }
+
+    @Test
+    void testOwnEventsVisibleBeforeTheyAreWritten() {
+        createUsers(2);
+        userController.addFriendRequest(1, 2);
+
+        List<UserEventDto> queued = userController.getFeed(1, null, null, null);
+        assertEquals(List.of(EventType.FRIEND), queued.stream().map(UserEventDto::getEventType).toList());
+        assertNull(queued.getFirst().getEventId(), "Событие ещё в очереди и не записано в БД");
+        assertEquals(0, JdbcTestUtils.countRowsInTable(jdbcTemplate, "_user_event"), "Чтение ленты не пишет очередь в БД");
+
+        userEventWriter.flush();
+        List<UserEventDto> written = userController.getFeed(1, null, null, 10);
+        assertEquals(1, written.size(), "Записанное событие не должно задваиваться");
+        assertNotNull(written.getFirst().getEventId());
+    }
+
+    @Test
+    void testFeedBufferEvictsLeastRecentlyUsed() {
+        createUsers(3);
+        UserFeedBuffer buffer = new UserFeedBuffer(userStorage, 10, 2);
+
+        buffer.findLatest(1, null, 10);
+        buffer.findLatest(2, null, 10);
+        buffer.findLatest(1, null, 10);
+        buffer.findLatest(3, null, 10);
+
+        assertThat(buffer.isBuffered(1)).isTrue();
+        assertThat(buffer.isBuffered(2)).isFalse();
+        assertThat(buffer.isBuffered(3)).isTrue();
+    }
+
+    @Test
+    void testUserLoginAndEmailMustBeUnique() {
+        createUsers(2);
+
+        assertThrows(ValidationException.class, () -> userController.createUser(
+                new UserRequest("login1", "other@mail.ru", "name", LocalDate.of(1990, 1, 1))));
+        assertThrows(ValidationException.class, () -> userController.createUser(
+                new UserRequest("other", "mail1@mail.ru", "name", LocalDate.of(1990, 1, 1))));
+        assertThrows(ValidationException.class, () -> userController.updateUser(
+                new UserRequestUpdate(2, "login1", "mail2@mail.ru", "name2", LocalDate.of(1990, 1, 2))));
+        assertThrows(ValidationException.class, () -> userController.updateUser(
+                new UserRequestUpdate(2, "login2", "mail1@mail.ru", "name2", LocalDate.of(1990, 1, 2))));
+
+        assertEquals("renamed", userController.updateUser(
+                new UserRequestUpdate(2, "login2", "mail2@mail.ru", "renamed", LocalDate.of(1990, 1, 2))).getName());
+    }
+
+    @Test
+    void testDeleteCascadesAndKeepsCounters() {
+        createFilms(2);
+        createUsers(3);
+        filmService.addLikeToFilm(1, 1);
+        filmService.addLikeToFilm(2, 1);
+        filmService.addLikeToFilm(1, 2);
+        userController.addFriendRequest(1, 2);
+        userController.addFriendRequest(2, 1);
+        jdbcTemplate.update("INSERT INTO _review (content, is_positive, user_id, film_id, useful) VALUES ('r', TRUE, 2, 1, 1)");
+        jdbcTemplate.update("INSERT INTO _review (content, is_positive, user_id, film_id, useful) VALUES ('r', TRUE, 1, 2, -1)");
+        jdbcTemplate.update("INSERT INTO _review_rating (review_id, user_id, is_like) " +
+                "SELECT id, 1, TRUE FROM _review WHERE user_id = 2");
+        jdbcTemplate.update("INSERT INTO _review_rating (review_id, user_id, is_like) " +
+                "SELECT id, 2, FALSE FROM _review WHERE user_id = 1");
+        userEventWriter.flush();
+        userController.getFeed(2, null, null, 10);
+        userController.getFeed(3, null, null, 10);
+
+        userService.removeUser(1);
+
+        assertThat(userFeedBuffer.isBuffered(2)).as("В ленте было событие о дружбе с удалённым").isFalse();
+        assertThat(userFeedBuffer.isBuffered(3)).as("Остальные ленты остаются в памяти").isTrue();
+
+        assertEquals(List.of(1, 0), jdbcTemplate.queryForList("SELECT likes_count FROM _film ORDER BY id", Integer.class));
+        assertEquals(1, popularityIndex.getLikes(1));
+        assertEquals(0, popularityIndex.getLikes(2));
+        assertEquals(List.of(0), jdbcTemplate.queryForList("SELECT useful FROM _review", Integer.class),
+                "Оценка удалённого пользователя вычитается из полезности, его отзыв удаляется с оценками");
+        assertEquals(0, JdbcTestUtils.countRowsInTable(jdbcTemplate, "_review_rating"));
+        assertEquals(0, JdbcTestUtils.countRowsInTable(jdbcTemplate, "_user_friend"));
+        userEventWriter.flush();
+        assertEquals(0, JdbcTestUtils.countRowsInTableWhere(jdbcTemplate, "_user_event", "user_id = 1 OR event_type = 'FRIEND'"));
+
+        // Пачками по одной строке: лайк, затем отзыв и событие лайка
+        List<Integer> filmIds = userStorage.purgeUserLikes(2, 1);
+        assertEquals(List.of(1), filmIds);
+        filmService.removeUserLikes(2, filmIds);
+        assertEquals(0, popularityIndex.getLikes(1), "Индекс обновляется после каждой пачки лайков");
+        assertEquals(0, filmStorage.countLikes(1));
+        filmService.removeUserLikes(2, filmIds);
+        assertEquals(0, popularityIndex.getLikes(1), "Лайк, которого нет в индексе, второй раз не вычитается");
+        assertEquals(List.of(), userStorage.purgeUserLikes(2, 1));
+        int batches = 0;
+        while (userStorage.purgeUserHistory(2, 1) > 0) {
+            batches++;
+        }
+        assertEquals(2, batches);
+        assertEquals(0, JdbcTestUtils.countRowsInTable(jdbcTemplate, "_review"));
+        assertThat(userStorage.findUserById(2)).isPresent();
+
+        filmService.addLikeToFilm(1, 2);
+        userEventWriter.flush();
+        userController.getFeed(2, null, null, 10);
+        filmService.removeFilm(1);
+        assertThat(userFeedBuffer.isBuffered(2)).isFalse();
+        assertThat(userFeedBuffer.isBuffered(3)).isTrue();
+        assertEquals(0, JdbcTestUtils.countRowsInTable(jdbcTemplate, "_like"));
+        assertEquals(0, JdbcTestUtils.countRowsInTableWhere(jdbcTemplate, "_user_event", "entity_id = 1 AND event_type = 'LIKE'"));
+    }
+
+    private static List<Long> timestamps(List<UserEventDto> events) {
+        return events.stream().map(UserEventDto::getTimestamp).toList();
+    }
+
+    private void createFilms(int count) {
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        for (int i = 1; i <= count; i++) {
+            filmService.createFilm(new FilmRequest("Film " + i, "Описание", 100, LocalDate.of(2000, 1, i),
+                    mpa, List.of(), List.of()));
+        }
+    }
+
+    private void createUsers(int count) {
+        for (int i = 1; i <= count; i++) {
+            userController.createUser(new UserRequest("login" + i, "mail" + i + "@mail.ru", "name" + i,
+                    LocalDate.of(1990, 1, i)));
+        }
+    }
+}
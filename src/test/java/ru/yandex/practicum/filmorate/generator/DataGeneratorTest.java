@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.generator;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.yandex.practicum.filmorate.cache.DictionaryCache;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.rowMapper.*;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.impl.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({DataGenerator.class,
+        FilmStorageDbImpl.class,
+        FilmRowMapper.class,
+        MpaStorageDbImpl.class,
+        MpaRowMapper.class,
+        GenreStorageDbImpl.class,
+        GenreRowMapper.class,
+        DirectorStorageDbImpl.class,
+        DirectorRowMapper.class,
+        UserStorageDbImpl.class,
+        UserRowMapper.class,
+        DictionaryCache.class,
+        PopularityIndex.class,
+        LikeIndex.class})
+public class DataGeneratorTest {
+
+    @Autowired
+    private DataGenerator dataGenerator;
+    @Autowired
+    private PopularityIndex popularityIndex;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testGenerateLoadsAllTablesWithConsistentLikeCounts() {
+        int usersBefore = JdbcTestUtils.countRowsInTable(jdbcTemplate, "_user");
+        int filmsBefore = JdbcTestUtils.countRowsInTable(jdbcTemplate, "_film");
+        int reviewsBefore = JdbcTestUtils.countRowsInTable(jdbcTemplate, "_review");
+
+        DatasetSize size = DatasetSize.ofUsers(2_000);
+        dataGenerator.generate(size, 7L);
+
+        assertEquals(usersBefore + size.users(), JdbcTestUtils.countRowsInTable(jdbcTemplate, "_user"));
+        assertEquals(filmsBefore + size.films(), JdbcTestUtils.countRowsInTable(jdbcTemplate, "_film"));
+        assertEquals(reviewsBefore + size.reviews(), JdbcTestUtils.countRowsInTable(jdbcTemplate, "_review"));
+        for (String table : List.of("_like", "_user_friend", "_film_genre", "_film_director", "_review_rating", "_user_event")) {
+            assertTrue(JdbcTestUtils.countRowsInTable(jdbcTemplate, table) > 0, "Таблица " + table + " не заполнена");
+        }
+        assertEquals(0, JdbcTestUtils.countRowsInTableWhere(jdbcTemplate, "_film f",
+                "f.likes_count <> (SELECT COUNT(*) FROM _like l WHERE l.film_id = f.id)"));
+
+        List<Film> top = popularityIndex.getTopFilms(1, null, null);
+        Integer maxLikes = jdbcTemplate.queryForObject("SELECT MAX(likes_count) FROM _film", Integer.class);
+        assertEquals(maxLikes, top.getFirst().getLikesCount());
+    }
+
+    @Test
+    public void testRegularInsertsWorkAfterGeneration() {
+        dataGenerator.generate(DatasetSize.ofUsers(100), 7L);
+
+        User user = new User();
+        user.setLogin("after_generation");
+        user.setEmail("after@generation.ru");
+        user.setName("After");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        User created = userStorage.createUser(user);
+
+        Integer maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM _user", Integer.class);
+        assertEquals(maxId, created.getId());
+    }
+}
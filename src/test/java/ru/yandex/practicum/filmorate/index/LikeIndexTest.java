@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.yandex.practicum.filmorate.rowMapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.impl.FilmStorageDbImpl;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({LikeIndex.class,
+        FilmStorageDbImpl.class,
+        FilmRowMapper.class})
+public class LikeIndexTest {
+    // Рекомендации в том виде, в каком они считались до индекса: фильмы пользователей с максимальным
+    // числом общих лайков, кроме уже лайкнутых самим пользователем
+    private static final String RECOMMENDED_FILMS_SQL = """
+            WITH overlap AS (
+                SELECT other.user_id, COUNT(*) AS common_likes
+                FROM _like own
+                JOIN _like other ON other.film_id = own.film_id AND other.user_id <> own.user_id
+                WHERE own.user_id = ?
+                GROUP BY other.user_id
+            )
+            SELECT DISTINCT l.film_id
+            FROM overlap o
+            JOIN _like l ON l.user_id = o.user_id
+            WHERE o.common_likes = (SELECT MAX(common_likes) FROM overlap)
+              AND l.film_id NOT IN (SELECT film_id FROM _like WHERE user_id = ?)
+            ORDER BY l.film_id
+            """;
+    private static final int USERS = 7;
+    private static final int FILMS = 8;
+
+    @Autowired
+    private LikeIndex likeIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "_like", "_film_genre", "_film_director", "_film", "_user");
+        for (int id = 1; id <= USERS; id++) {
+            jdbcTemplate.update("INSERT INTO _user (id, login, email, name, birthday_dt) VALUES (?, ?, ?, ?, ?)",
+                    id, "user" + id, "user" + id + "@mail.ru", "User " + id, Date.valueOf("2000-01-01"));
+        }
+        for (int id = 1; id <= FILMS; id++) {
+            jdbcTemplate.update("INSERT INTO _film (id, name, description, duration, release_dt, mpa_id) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)", id, "Film " + id, "Description", 100, Date.valueOf("2000-01-01"), 1);
+        }
+        // Пользователь 1 делит по два лайка с пользователями 2 и 3, пользователь 4 - по одному с 1, 2 и 6,
+        // у пользователя 5 общих лайков нет, у пользователя 7 лайков нет вовсе
+        like(1, 1, 2, 3);
+        like(2, 1, 2, 4);
+        like(3, 2, 3, 5);
+        like(4, 1, 6);
+        like(5, 7);
+        like(6, 6, 8);
+        likeIndex.rebuild();
+    }
+
+    @Test
+    public void testRecommendationsMatchSqlWithTies() {
+        assertEquals(List.of(4, 5), likeIndex.findRecommendedFilmIds(1));
+        assertEquals(List.of(2, 3, 4, 8), likeIndex.findRecommendedFilmIds(4));
+        assertEquals(List.of(), likeIndex.findRecommendedFilmIds(5));
+        assertEquals(List.of(), likeIndex.findRecommendedFilmIds(7));
+        assertAllMatchSql();
+    }
+
+    @Test
+    public void testRecommendationsMatchSqlAfterLikeChanges() {
+        addLike(5, 1);
+        addLike(6, 2);
+        removeLike(3, 3);
+        assertAllMatchSql();
+
+        jdbcTemplate.update("DELETE FROM _like WHERE film_id = ?", 2);
+        likeIndex.removeFilm(2);
+        assertAllMatchSql();
+    }
+
+    private void assertAllMatchSql() {
+        for (int userId = 1; userId <= USERS; userId++) {
+            List<Integer> expected = jdbcTemplate.queryForList(RECOMMENDED_FILMS_SQL, Integer.class, userId, userId);
+            assertEquals(expected, likeIndex.findRecommendedFilmIds(userId), "Рекомендации пользователя " + userId);
+        }
+    }
+
+    private void like(int userId, int... filmIds) {
+        IntStream.of(filmIds).forEach(filmId ->
+                jdbcTemplate.update("INSERT INTO _like (user_id, film_id) VALUES (?, ?)", userId, filmId));
+    }
+
+    private void addLike(int userId, int filmId) {
+        like(userId, filmId);
+        likeIndex.addLike(userId, filmId);
+    }
+
+    private void removeLike(int userId, int filmId) {
+        jdbcTemplate.update("DELETE FROM _like WHERE user_id = ? AND film_id = ?", userId, filmId);
+        likeIndex.removeLike(userId, filmId);
+    }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.rowMapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.impl.FilmStorageDbImpl;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({PopularityIndex.class,
+        FilmStorageDbImpl.class,
+        FilmRowMapper.class})
+public class PopularityIndexTest {
+
+    @Autowired
+    private PopularityIndex popularityIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "_film_genre", "_film_director", "_like", "_film");
+        popularityIndex.rebuild();
+        popularityIndex.upsertFilm(film(1, 5, 2000, 1, 2));
+        popularityIndex.upsertFilm(film(2, 7, 2001, 2));
+        popularityIndex.upsertFilm(film(3, 5, 2000, 2));
+        popularityIndex.upsertFilm(film(4, 0, 2001));
+        popularityIndex.upsertFilm(film(5, 9, 2000, 1));
+    }
+
+    @Test
+    public void testTopFilmsOrderedByLikesThenId() {
+        assertEquals(List.of(5, 2, 1, 3, 4), topIds(10, null, null));
+        assertEquals(List.of(5, 2), topIds(2, null, null));
+
+        popularityIndex.changeLikes(4, 6);
+        popularityIndex.changeLikes(5, -9);
+        assertEquals(List.of(2, 4, 1, 3, 5), topIds(10, null, null));
+        assertEquals(6, popularityIndex.getLikes(4));
+        assertEquals(List.of(2, 4, 1, 3, 5), popularityIndex.sortByPopularity(List.of(5, 3, 1, 4, 2)));
+    }
+
+    @Test
+    public void testGenreAndYearPartitions() {
+        assertEquals(List.of(5, 1), topIds(10, 1, null));
+        assertEquals(List.of(2, 1, 3), topIds(10, 2, null));
+        assertEquals(List.of(5, 1, 3), topIds(10, null, 2000));
+        assertEquals(List.of(2, 4), topIds(10, null, 2001));
+        assertEquals(List.of(1, 3), topIds(10, 2, 2000));
+        assertEquals(List.of(), topIds(10, 3, null));
+        assertEquals(List.of(), topIds(10, 1, 2001));
+
+        popularityIndex.upsertFilm(film(3, 5, 2001, 1));
+        assertEquals(List.of(5, 1, 3), topIds(10, 1, null));
+        assertEquals(List.of(2, 3, 4), topIds(10, null, 2001));
+        assertEquals(List.of(2, 1), topIds(10, 2, null));
+
+        popularityIndex.removeFilm(1);
+        assertEquals(List.of(5, 3), topIds(10, 1, null));
+        assertEquals(List.of(5), topIds(10, null, 2000));
+    }
+
+    @Test
+    public void testTopFilmsAreSnapshots() {
+        Film upserted = film(6, 8, 2002, 3);
+        popularityIndex.upsertFilm(upserted);
+        upserted.setLikesCount(100);
+        upserted.getGenres().add(1);
+
+        Film returned = popularityIndex.getTopFilms(1, null, null).getFirst();
+        returned.setLikesCount(0);
+        returned.getGenres().clear();
+        returned.setReleaseDate(LocalDate.of(1990, 1, 1));
+
+        assertEquals(List.of(5, 6, 2, 1, 3, 4), topIds(10, null, null));
+        assertEquals(List.of(6), topIds(10, 3, 2002));
+        assertEquals(List.of(5, 1), topIds(10, 1, null));
+        assertEquals(8, popularityIndex.getTopFilms(2, null, null).getLast().getLikesCount());
+    }
+
+    private List<Integer> topIds(int count, Integer genreId, Integer year) {
+        return popularityIndex.getTopFilms(count, genreId, year).stream()
+                .map(Film::getId)
+                .toList();
+    }
+
+    private Film film(int id, int likes, int year, Integer... genres) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName("Film " + id);
+        film.setReleaseDate(LocalDate.of(year, 1, 1));
+        film.getGenres().addAll(List.of(genres));
+        film.setLikesCount(likes);
+        return film;
+    }
+}
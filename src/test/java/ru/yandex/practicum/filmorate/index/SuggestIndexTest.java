@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.rowMapper.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.rowMapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.impl.DirectorStorageDbImpl;
+import ru.yandex.practicum.filmorate.storage.impl.FilmStorageDbImpl;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({SuggestIndex.class,
+        FilmStorageDbImpl.class,
+        FilmRowMapper.class,
+        DirectorStorageDbImpl.class,
+        DirectorRowMapper.class})
+public class SuggestIndexTest {
+    private static final List<String> PREFIXES = List.of("st", "sta", "star", "sto", "m", "moon", "1", "sta 1", "st m");
+
+    @Autowired
+    private SuggestIndex suggestIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Random random = new Random(7);
+    private final Map<Integer, String> nameById = new HashMap<>();
+    private final Map<Integer, Integer> likesById = new HashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "_film_genre", "_film_director", "_like", "_film", "_director");
+        suggestIndex.rebuild();
+        List<String> words = List.of("Star", "Stop", "Storm", "Moon", "Starling");
+        for (int id = 1; id <= 300; id++) {
+            String name = words.get(random.nextInt(words.size())) + " " + id
+                    + (random.nextInt(4) == 0 ? " " + words.get(random.nextInt(words.size())) : "");
+            upsert(id, name, random.nextInt(20));
+        }
+    }
+
+    @Test
+    public void testPrefixTopMatchesFullScanAcrossLargeSubtrees() {
+        assertAllPrefixesMatchFullScan();
+        assertEquals(SuggestIndex.MAX_LIMIT, suggestIndex.suggest("s", 100).size());
+    }
+
+    @Test
+    public void testLikeChangesReorderAndRefillTop() {
+        for (int i = 0; i < 500; i++) {
+            int id = 1 + random.nextInt(nameById.size());
+            int likes = random.nextInt(3) == 0 ? 0 : random.nextInt(40);
+            likesById.put(id, likes);
+            suggestIndex.updateFilmLikes(id, likes);
+        }
+        assertAllPrefixesMatchFullScan();
+    }
+
+    @Test
+    public void testRemoveAndRenameKeepTopConsistent() {
+        for (int id = 1; id <= 300; id += 2) {
+            suggestIndex.removeFilm(id);
+            nameById.remove(id);
+            likesById.remove(id);
+        }
+        for (int id = 2; id <= 300; id += 6) {
+            upsert(id, "Moonlight " + id, likesById.get(id));
+        }
+        assertAllPrefixesMatchFullScan();
+
+        nameById.keySet().stream().toList().forEach(id -> {
+            suggestIndex.removeFilm(id);
+            nameById.remove(id);
+        });
+        for (String prefix : PREFIXES) {
+            assertEquals(List.of(), suggestIndex.suggest(prefix, 50));
+        }
+    }
+
+    @Test
+    public void testTyposStillMatch() {
+        upsert(1000, "Interstellar", 0);
+        assertEquals(List.of(1000), ids(suggestIndex.suggest("interstelar", 10)));
+        assertEquals(List.of(1000), ids(suggestIndex.suggest("intesrtel", 10)));
+    }
+
+    private void assertAllPrefixesMatchFullScan() {
+        for (String prefix : PREFIXES) {
+            for (int limit : List.of(1, 10, SuggestIndex.MAX_LIMIT)) {
+                assertEquals(fullScan(prefix, limit), ids(suggestIndex.suggest(prefix, limit)),
+                        "Подсказки для '" + prefix + "', limit=" + limit);
+            }
+        }
+    }
+
+    /**
+     * Все запросы в проверках без опечаток: каждое слово запроса должно быть началом одного из слов названия.
+     */
+    private List<Integer> fullScan(String query, int limit) {
+        List<String> queryWords = List.of(query.split(" "));
+        return nameById.entrySet().stream()
+                .filter(entry -> {
+                    List<String> nameWords = List.of(entry.getValue().toLowerCase(Locale.ROOT).split(" "));
+                    return queryWords.stream().allMatch(word -> nameWords.stream().anyMatch(name -> name.startsWith(word)));
+                })
+                .sorted(Comparator.comparing((Map.Entry<Integer, String> entry) -> likesById.get(entry.getKey())).reversed()
+                        .thenComparing(Map.Entry::getValue)
+                        .thenComparing(Map.Entry::getKey))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private List<Integer> ids(List<SuggestIndex.Suggestion> suggestions) {
+        return suggestions.stream().map(SuggestIndex.Suggestion::id).toList();
+    }
+
+    private void upsert(int id, String name, int likes) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setLikesCount(likes);
+        suggestIndex.upsertFilm(film);
+        nameById.put(id, name);
+        likesById.put(id, likes);
+    }
+}
@@ -3,18 +3,27 @@ package ru.yandex.practicum.filmorate.model;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.yandex.practicum.filmorate.cache.DictionaryCache;
 import ru.yandex.practicum.filmorate.controller.FilmController;
 import ru.yandex.practicum.filmorate.dto.FilmRequest;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.DirectorFilmography;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.index.SearchIndex;
+import ru.yandex.practicum.filmorate.index.SuggestIndex;
+import ru.yandex.practicum.filmorate.index.UserFeedBuffer;
 import ru.yandex.practicum.filmorate.rowMapper.*;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
 import ru.yandex.practicum.filmorate.service.FilmService;
-import ru.yandex.practicum.filmorate.storage.*;
+import ru.yandex.practicum.filmorate.service.UserEventWriter;
 import ru.yandex.practicum.filmorate.storage.impl.*;
 
 import java.time.LocalDate;
@@ -34,23 +43,25 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
         UserStorageDbImpl.class,
         DirectorStorageDbImpl.class,
         DirectorRowMapper.class,
-        UserRowMapper.class})
+        UserRowMapper.class,
+        DictionaryCache.class,
+        PopularityIndex.class,
+        LikeIndex.class,
+        SearchIndex.class,
+        SuggestIndex.class,
+        DirectorFilmography.class,
+        UserFeedBuffer.class,
+        UserEventWriter.class,
+        FilmService.class,
+        FilmImportService.class,
+        JacksonAutoConfiguration.class})
 public class FilmTest {
 
     @Autowired
-    private FilmStorage filmStorage;
+    private FilmService filmService;
 
     @Autowired
-    private MpaStorage mpaStorage;
-
-    @Autowired
-    private GenreStorage genreStorage;
-
-    @Autowired
-    private DirectorStorage directorStorage;
-
-    @Autowired
-    private UserStorage userStorage;
+    private FilmImportService filmImportService;
 
     @Autowired
     private JdbcTemplate jdbcTemplate;
@@ -62,7 +73,7 @@ public class FilmTest {
     public void setUp() {
         JdbcTestUtils.deleteFromTables(jdbcTemplate, "_user");
         jdbcTemplate.execute("ALTER TABLE _user ALTER COLUMN id RESTART WITH 1");
-        filmController = new FilmController(new FilmService(filmStorage, mpaStorage, genreStorage, directorStorage, userStorage));
+        filmController = new FilmController(filmService, filmImportService);
         filmRequest = new FilmRequest("Test Film", "Description of Test Film",
                 120, LocalDate.of(2022, 1, 1), new Mpa(), List.of(new Genre()), List.of(new Director()));
     }
@@ -0,0 +1,173 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.rowMapper.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.rowMapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.impl.DirectorStorageDbImpl;
+import ru.yandex.practicum.filmorate.storage.impl.FilmStorageDbImpl;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmStorageDbImpl.class,
+        FilmRowMapper.class,
+        DirectorStorageDbImpl.class,
+        DirectorRowMapper.class})
+public class FilmStorageDbImplTest {
+
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private DirectorStorage directorStorage;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+
+    private final AtomicInteger statementCount = new AtomicInteger();
+    private FilmStorage countingFilmStorage;
+    private Director director;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "_film_genre", "_like", "_film", "_film_director", "_director");
+
+        director = new Director();
+        director.setName("Quentin Tarantino");
+        directorStorage.createDirector(director);
+
+        JdbcTemplate countingJdbc = new JdbcTemplate(new StatementCountingDataSource(
+                new TransactionAwareDataSourceProxy(dataSource), statementCount));
+        countingFilmStorage = new FilmStorageDbImpl(countingJdbc, new FilmRowMapper());
+    }
+
+    @Test
+    public void testFindAllFilmsStatementCountDoesNotDependOnFilmCount() {
+        createFilms(3);
+        int statementsForFewFilms = countStatements(() -> countingFilmStorage.findAllFilms());
+
+        createFilms(40);
+        List<Film> films = countingFilmStorage.findAllFilms();
+        int statementsForManyFilms = countStatements(() -> countingFilmStorage.findAllFilms());
+
+        assertEquals(43, films.size());
+        assertEquals(statementsForFewFilms, statementsForManyFilms,
+                "Ожидается, что количество запросов не зависит от количества фильмов");
+    }
+
+    @Test
+    public void testByIdsStatementCountDoesNotDependOnFilmCount() {
+        createFilms(2);
+        int byIdsForFewFilms = countStatements(() -> countingFilmStorage.findFilmsByIds(allFilmIds()));
+
+        createFilms(30);
+        int byIdsForManyFilms = countStatements(() -> countingFilmStorage.findFilmsByIds(allFilmIds()));
+
+        assertEquals(byIdsForFewFilms, byIdsForManyFilms);
+    }
+
+    @Test
+    public void testHydratedFilmHasMpaGenresAndDirectors() {
+        createFilms(1);
+
+        Film film = countingFilmStorage.findAllFilms().getFirst();
+
+        assertEquals("PG", film.getMpa().getName());
+        assertEquals(List.of(1, 2), film.getGenres());
+        assertEquals(List.of(director.getId()), film.getDirectors());
+    }
+
+    @Test
+    public void testUpdateFilmChangesOnlyDifferingLinks() {
+        createFilms(1);
+        Film film = filmStorage.findAllFilms().getFirst();
+        Integer keptGenreRowId = jdbcTemplate.queryForObject(
+                "SELECT id FROM _film_genre WHERE film_id = ? AND genre_id = 2", Integer.class, film.getId());
+
+        film.setGenres(List.of(2, 3, 3));
+        film.setDirectors(null);
+        filmStorage.updateFilm(film);
+
+        Film updated = filmStorage.findFilmById(film.getId()).orElseThrow();
+        assertEquals(List.of(2, 3), updated.getGenres());
+        assertEquals(List.of(), updated.getDirectors());
+        assertEquals(keptGenreRowId, jdbcTemplate.queryForObject(
+                "SELECT id FROM _film_genre WHERE film_id = ? AND genre_id = 2", Integer.class, film.getId()));
+    }
+
+    private List<Integer> allFilmIds() {
+        return jdbcTemplate.queryForList("SELECT id FROM _film ORDER BY id", Integer.class);
+    }
+
+    private int countStatements(Supplier<List<Film>> action) {
+        statementCount.set(0);
+        action.get();
+        return statementCount.get();
+    }
+
+    private void createFilms(int count) {
+        Mpa mpa = new Mpa();
+        mpa.setId(2);
+        for (int i = 0; i < count; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("Description " + i);
+            film.setDuration(100 + i);
+            film.setReleaseDate(LocalDate.of(2000, 1, 1).plusDays(i));
+            film.setMpa(mpa);
+            film.setGenres(List.of(1, 2));
+            film.setDirectors(List.of(director.getId()));
+            filmStorage.createFilm(film);
+        }
+    }
+
+    private static class StatementCountingDataSource extends DelegatingDataSource {
+        private final AtomicInteger counter;
+
+        StatementCountingDataSource(DataSource target, AtomicInteger counter) {
+            super(target);
+            this.counter = counter;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection target = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")) {
+                            counter.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.impl.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет планы всех SQL-констант из storage.impl: запрос, которого нет в списке разрешённых,
+ * не должен читать таблицу целиком.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+public class QueryPlanTest {
+    private static final List<Class<?>> STORAGES = List.of(
+            FilmStorageDbImpl.class,
+            UserStorageDbImpl.class,
+            ReviewStorageDbImpl.class,
+            DirectorStorageDbImpl.class,
+            GenreStorageDbImpl.class,
+            MpaStorageDbImpl.class);
+
+    // Полный просмотр нужен по смыслу запроса: выгрузка всей таблицы, перестроение индексов в памяти,
+    // небольшие справочники или начало запроса, к которому фильтры добавляются в коде
+    private static final Set<String> FULL_SCAN_ALLOWED = Set.of(
+            "FilmStorageDbImpl.FIND_ALL_QUERY",
+            "FilmStorageDbImpl.RESET_LIKES_COUNT_QUERY",
+            "FilmStorageDbImpl.REBUILD_LIKES_COUNT_QUERY",
+            "FilmStorageDbImpl.FIND_ALL_USERS_LIKES_SQL",
+            "UserStorageDbImpl.FIND_ALL_QUERY",
+            "UserStorageDbImpl.FIND_ALL_FRIENDSHIPS_QUERY",
+            "ReviewStorageDbImpl.FIND_ALL_QUERY",
+            "DirectorStorageDbImpl.FIND_ALL_QUERY",
+            "DirectorStorageDbImpl.COUNT_QUERY",
+            "GenreStorageDbImpl.FIND_ALL_QUERY",
+            "GenreStorageDbImpl.COUNT_QUERY",
+            "MpaStorageDbImpl.FIND_ALL_QUERY",
+            "MpaStorageDbImpl.COUNT_QUERY");
+
+    private static final int ROWS = 2000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * На пустых таблицах оптимизатор выбирает полный просмотр как самый дешёвый,
+     * поэтому таблицы заполняются и для них собирается статистика.
+     */
+    @BeforeEach
+    public void setUp() {
+        fill("INSERT INTO _user (login, email, name, birthday_dt) " +
+                "SELECT 'login' || X, 'mail' || X || '@mail.ru', 'name' || X, DATE '1990-01-01' FROM SYSTEM_RANGE(1, ?)");
+        fill("INSERT INTO _film (name, description, duration, release_dt, mpa_id, likes_count) " +
+                "SELECT 'film' || X, 'description', 100, DATE '2000-01-01', 1 + MOD(X, 5), MOD(X, 50) FROM SYSTEM_RANGE(1, ?)");
+        fill("INSERT INTO _director (name) SELECT 'director' || X FROM SYSTEM_RANGE(1, ?)");
+        fill("INSERT INTO _like (user_id, film_id) SELECT X, 1 + MOD(X * 7, ?1) FROM SYSTEM_RANGE(1, ?1)");
+        fill("INSERT INTO _film_genre (film_id, genre_id) SELECT X, 1 + MOD(X, 6) FROM SYSTEM_RANGE(1, ?)");
+        fill("INSERT INTO _film_director (film_id, director_id) SELECT X, X FROM SYSTEM_RANGE(1, ?)");
+        fill("INSERT INTO _user_friend (user_id, friend_id, status_id) SELECT X, 1 + MOD(X, ?1), 1 FROM SYSTEM_RANGE(1, ?1)");
+        fill("INSERT INTO _review (content, is_positive, user_id, film_id, useful) " +
+                "SELECT 'review', TRUE, X, X, MOD(X, 10) FROM SYSTEM_RANGE(1, ?)");
+        fill("INSERT INTO _review_rating (review_id, user_id, is_like) SELECT X, X, TRUE FROM SYSTEM_RANGE(1, ?)");
+        fill("INSERT INTO _user_event (timestamp, user_id, event_type, operation, entity_id) " +
+                "SELECT X, X, 'LIKE', 'ADD', X FROM SYSTEM_RANGE(1, ?)");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void hotQueriesDoNotScanTables() throws IllegalAccessException {
+        Map<String, String> queries = findQueryConstants();
+        assertThat(queries.keySet()).containsAll(FULL_SCAN_ALLOWED);
+
+        List<String> scans = new ArrayList<>();
+        for (Map.Entry<String, String> query : queries.entrySet()) {
+            String plan = explain(query.getValue());
+            if (plan.contains(".tableScan") && !FULL_SCAN_ALLOWED.contains(query.getKey())) {
+                scans.add(query.getKey() + ":\n" + plan);
+            }
+        }
+        assertThat(scans).as("Запросы с полным просмотром таблицы").isEmpty();
+    }
+
+    private void fill(String insert) {
+        jdbcTemplate.update(insert, ROWS);
+    }
+
+    private String explain(String query) {
+        // Именованные параметры NamedParameterJdbcTemplate заменяются позиционными
+        String sql = "EXPLAIN " + query.strip().replaceAll(":\\w+", "?");
+        int parameterCount = (int) sql.chars().filter(c -> c == '?').count();
+        return String.join("\n", jdbcTemplate.query(sql, ps -> {
+            for (int i = 1; i <= parameterCount; i++) {
+                ps.setObject(i, 1);
+            }
+        }, (rs, rowNum) -> rs.getString(1)));
+    }
+
+    private static Map<String, String> findQueryConstants() throws IllegalAccessException {
+        Map<String, String> queries = new TreeMap<>();
+        for (Class<?> storage : STORAGES) {
+            for (Field field : storage.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) || !Modifier.isFinal(modifiers) || field.getType() != String.class) {
+                    continue;
+                }
+                field.setAccessible(true);
+                String value = (String) field.get(null);
+                if (value.strip().matches("(?is)^(SELECT|INSERT|UPDATE|DELETE|MERGE)\\b.*")) {
+                    queries.put(storage.getSimpleName() + "." + field.getName(), value);
+                }
+            }
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,152 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.enumeration.ReviewRating;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.rowMapper.ReviewRowMapper;
+import ru.yandex.practicum.filmorate.storage.impl.ReviewStorageDbImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Оценки меняются параллельными транзакциями, поэтому тест работает без общей тестовой транзакции
+ * и сам очищает таблицы.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ReviewStorageDbImpl.class,
+        ReviewRowMapper.class})
+public class ReviewStorageDbImplTest {
+    private static final int USERS = 20;
+    private static final int THREADS = 8;
+    private static final int VOTES_PER_THREAD = 500;
+    private static final ReviewRating[] TARGETS = ReviewRating.values();
+
+    @Autowired
+    private ReviewStorage reviewStorage;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int reviewId;
+
+    @BeforeEach
+    public void setUp() {
+        cleanUp();
+        for (int i = 1; i <= USERS; i++) {
+            jdbcTemplate.update("INSERT INTO _user (login, email, name, birthday_dt) VALUES (?, ?, ?, DATE '1990-01-01')",
+                    "login" + i, "mail" + i + "@mail.ru", "name" + i);
+        }
+        jdbcTemplate.update("INSERT INTO _film (name, description, duration, release_dt, mpa_id) " +
+                "VALUES ('Film', 'Description', 100, DATE '2000-01-01', 1)");
+        Review review = new Review();
+        review.setContent("Review");
+        review.setIsPositive(true);
+        review.setUserId(firstUserId());
+        review.setFilmId(jdbcTemplate.queryForObject("SELECT MIN(id) FROM _film", Integer.class));
+        reviewId = reviewStorage.createReview(review).getId();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "_review_rating", "_review", "_film", "_user");
+    }
+
+    @Test
+    public void testRatingTransitionsChangeUsefulByDelta() {
+        int userId = firstUserId();
+
+        assertEquals(ReviewRating.NONE, reviewStorage.changeRating(reviewId, userId, null, ReviewRating.LIKE));
+        assertEquals(1, useful());
+        assertEquals(ReviewRating.LIKE, reviewStorage.changeRating(reviewId, userId, null, ReviewRating.DISLIKE));
+        assertEquals(-1, useful());
+        assertEquals(ReviewRating.DISLIKE, reviewStorage.changeRating(reviewId, userId, ReviewRating.LIKE, ReviewRating.NONE));
+        assertEquals(-1, useful(), "Дизлайк не снимается как лайк");
+        assertEquals(ReviewRating.DISLIKE, reviewStorage.changeRating(reviewId, userId, ReviewRating.DISLIKE, ReviewRating.NONE));
+        assertEquals(0, useful());
+        assertEquals(0, JdbcTestUtils.countRowsInTable(jdbcTemplate, "_review_rating"));
+
+        assertThrows(NotFoundException.class, () -> reviewStorage.changeRating(reviewId, -1, null, ReviewRating.LIKE));
+        assertThrows(NotFoundException.class, () -> reviewStorage.changeRating(-1, userId, null, ReviewRating.LIKE));
+        assertEquals(0, useful());
+    }
+
+    @Test
+    public void testCreateReviewRejectsSecondReviewAndMissingTargets() {
+        Review existing = reviewStorage.findReviewById(reviewId).orElseThrow();
+        Review review = new Review();
+        review.setContent("Second review");
+        review.setIsPositive(false);
+        review.setUserId(existing.getUserId());
+        review.setFilmId(existing.getFilmId());
+
+        assertThrows(ValidationException.class, () -> reviewStorage.createReview(review));
+        review.setUserId(-1);
+        assertThrows(NotFoundException.class, () -> reviewStorage.createReview(review));
+        review.setUserId(existing.getUserId());
+        review.setFilmId(-1);
+        assertThrows(NotFoundException.class, () -> reviewStorage.createReview(review));
+        assertEquals(1, JdbcTestUtils.countRowsInTable(jdbcTemplate, "_review"));
+    }
+
+    @Test
+    public void testUsefulMatchesRatingsUnderParallelVoting() throws Exception {
+        List<Integer> userIds = jdbcTemplate.queryForList("SELECT id FROM _user ORDER BY id", Integer.class);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int vote = 0; vote < VOTES_PER_THREAD; vote++) {
+                        int userId = userIds.get(random.nextInt(userIds.size()));
+                        ReviewRating target = TARGETS[random.nextInt(TARGETS.length)];
+                        ReviewRating expected = target == ReviewRating.NONE
+                                ? TARGETS[random.nextInt(2)]
+                                : null;
+                        reviewStorage.changeRating(reviewId, userId, expected, target);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Integer ratingSum = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(CASE WHEN is_like THEN 1 ELSE -1 END), 0) FROM _review_rating WHERE review_id = ?",
+                Integer.class, reviewId);
+        assertEquals(ratingSum, useful(), "Полезность должна совпадать с суммой оценок");
+    }
+
+    private int useful() {
+        return jdbcTemplate.queryForObject("SELECT useful FROM _review WHERE id = ?", Integer.class, reviewId);
+    }
+
+    private int firstUserId() {
+        return jdbcTemplate.queryForObject("SELECT MIN(id) FROM _user", Integer.class);
+    }
+}